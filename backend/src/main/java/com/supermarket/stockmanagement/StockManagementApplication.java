@@ -2,8 +2,10 @@ package com.supermarket.stockmanagement;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 public class StockManagementApplication {
     public static void main(String[] args) {
         SpringApplication.run(StockManagementApplication.class, args);
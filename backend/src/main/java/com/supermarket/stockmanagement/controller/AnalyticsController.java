@@ -3,10 +3,14 @@ package com.supermarket.stockmanagement.controller;
 import com.supermarket.stockmanagement.dto.*;
 import com.supermarket.stockmanagement.service.AnalyticsService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/analytics")
@@ -22,6 +26,12 @@ public class AnalyticsController {
         return ResponseEntity.ok(analyticsService.getSalesFrequency(days));
     }
 
+    @PostMapping("/sales-frequency/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildSalesRollups() {
+        long days = analyticsService.rebuildSalesRollups();
+        return ResponseEntity.ok(Map.of("rebuiltDays", days));
+    }
+
     @GetMapping("/product-trends")
     public ResponseEntity<List<ProductSalesTrendDTO>> getProductSalesTrends() {
         return ResponseEntity.ok(analyticsService.getProductSalesTrends());
@@ -29,12 +39,47 @@ public class AnalyticsController {
 
     @GetMapping("/top-products")
     public ResponseEntity<List<TopProductDTO>> getTopProducts(
-            @RequestParam(defaultValue = "10") int limit) {
-        return ResponseEntity.ok(analyticsService.getTopProducts(limit));
+            @RequestParam(defaultValue = "10") int limit,
+            @RequestParam(required = false) Integer days,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(defaultValue = "false") boolean approx) {
+        if (approx) {
+            // Sketches summarize all-time sales, so window parameters do not apply
+            return ResponseEntity.ok()
+                    .header("X-Approximate-Revenue-Error-Bound",
+                            String.valueOf(analyticsService.getApproximateRevenueErrorBound()))
+                    .body(analyticsService.getApproximateTopProducts(limit));
+        }
+        if (days != null && (from != null || to != null)) {
+            throw new IllegalArgumentException("Pass either days or from/to, not both");
+        }
+        LocalDateTime windowStart = from != null ? from.atStartOfDay() : null;
+        LocalDateTime windowEnd = to != null ? to.plusDays(1).atStartOfDay() : null;
+        if (days != null) {
+            windowStart = LocalDate.now().minusDays(days).atStartOfDay();
+            windowEnd = null;
+        }
+        return ResponseEntity.ok(analyticsService.getTopProducts(limit, windowStart, windowEnd));
+    }
+
+    @GetMapping("/approx/summary")
+    public ResponseEntity<ApproxSalesSummaryDTO> getApproximateSummary() {
+        return ResponseEntity.ok(analyticsService.getApproximateSummary());
     }
 
     @GetMapping("/revenue")
     public ResponseEntity<RevenueAnalyticsDTO> getRevenueAnalytics() {
         return ResponseEntity.ok(analyticsService.getRevenueAnalytics());
     }
+
+    @GetMapping("/cache/stats")
+    public ResponseEntity<Map<String, Object>> getCacheStats() {
+        return ResponseEntity.ok(analyticsService.getCacheStats());
+    }
+
+    @GetMapping("/single-flight/stats")
+    public ResponseEntity<Map<String, Object>> getSingleFlightStats() {
+        return ResponseEntity.ok(analyticsService.getSingleFlightStats());
+    }
 }
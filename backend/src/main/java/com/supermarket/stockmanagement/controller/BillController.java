@@ -1,12 +1,21 @@
 package com.supermarket.stockmanagement.controller;
 
 import com.supermarket.stockmanagement.dto.BillDTO;
+import com.supermarket.stockmanagement.dto.BillPageDTO;
+import com.supermarket.stockmanagement.dto.CheckoutRequest;
 import com.supermarket.stockmanagement.service.BillService;
+import com.supermarket.stockmanagement.service.IdempotencyService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/bills")
@@ -16,16 +25,74 @@ public class BillController {
     @Autowired
     private BillService billService;
     
+    @Autowired
+    private IdempotencyService idempotencyService;
+    
     @GetMapping
     public ResponseEntity<List<BillDTO>> getAllBills() {
         return ResponseEntity.ok(billService.getAllBills());
     }
     
+    /**
+     * Keyset-paginated bills. {@code to} is inclusive; pass the returned nextCursor to get
+     * the following page.
+     */
+    @GetMapping("/page")
+    public ResponseEntity<BillPageDTO> getBillPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int limit,
+            @RequestParam(defaultValue = "desc") String sort,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Double minAmount,
+            @RequestParam(required = false) Double maxAmount) {
+        return ResponseEntity.ok(billService.getBillPage(
+            cursor,
+            limit,
+            sort,
+            from != null ? from.atStartOfDay() : null,
+            to != null ? to.plusDays(1).atStartOfDay() : null,
+            minAmount,
+            maxAmount
+        ));
+    }
+    
+    @PostMapping
+    public ResponseEntity<BillDTO> checkout(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestBody CheckoutRequest request) {
+        IdempotencyService.Outcome<BillDTO> bill = idempotencyService.execute(
+            "bills", idempotencyKey, request, BillDTO.class, () -> billService.checkout(request));
+        return ResponseEntity.status(HttpStatus.CREATED)
+            .header("Idempotent-Replayed", String.valueOf(bill.replayed()))
+            .body(bill.response());
+    }
+    
+    @PostMapping("/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildBillSummaries() {
+        long bills = billService.rebuildBillSummaries();
+        return ResponseEntity.ok(Map.of("rebuiltBills", bills));
+    }
+    
+    /**
+     * Bill details with a strong ETag. Clients may keep a copy but revalidate it on every use
+     * with If-None-Match, since deleting a transaction removes its line from the bill; an
+     * unchanged bill costs a 304 without the details being loaded.
+     */
     @GetMapping("/{billId}")
-    public ResponseEntity<BillDTO> getBillDetails(@PathVariable String billId) {
+    public ResponseEntity<BillDTO> getBillDetails(@PathVariable String billId, WebRequest request) {
+        String eTag = billService.getBillETag(billId);
+        if (eTag == null) {
+            return ResponseEntity.notFound().build();
+        }
+        CacheControl cacheControl = CacheControl.noCache().cachePrivate();
+        if (request.checkNotModified(eTag)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).cacheControl(cacheControl).build();
+        }
+        
         BillDTO bill = billService.getBillDetails(billId);
         if (bill != null) {
-            return ResponseEntity.ok(bill);
+            return ResponseEntity.ok().eTag(eTag).cacheControl(cacheControl).body(bill);
         } else {
             return ResponseEntity.notFound().build();
         }
@@ -1,12 +1,18 @@
 package com.supermarket.stockmanagement.controller;
 
 import com.supermarket.stockmanagement.model.Product;
+import com.supermarket.stockmanagement.service.LowStockService;
 import com.supermarket.stockmanagement.service.ProductService;
+import com.supermarket.stockmanagement.service.StockEventService;
+import com.supermarket.stockmanagement.service.StreamTicketService;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/products")
@@ -14,6 +20,9 @@ import java.util.List;
 @CrossOrigin(origins = "http://localhost:4200")
 public class ProductController {
     private final ProductService productService;
+    private final LowStockService lowStockService;
+    private final StockEventService stockEventService;
+    private final StreamTicketService streamTicketService;
     
     @GetMapping
     public List<Product> getAllProducts() {
@@ -27,6 +36,14 @@ public class ProductController {
                 .orElse(ResponseEntity.notFound().build());
     }
     
+    /** Till scan lookup, answered from memory; stock is the latest this node has seen. */
+    @GetMapping("/barcode/{code}")
+    public ResponseEntity<Product> getProductByBarcode(@PathVariable String code) {
+        return productService.getProductByBarcode(code)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
     @GetMapping("/category/{categoryId}")
     public List<Product> getProductsByCategory(@PathVariable String categoryId) {
         return productService.getProductsByCategoryId(categoryId);
@@ -42,6 +59,36 @@ public class ProductController {
         return productService.getLowStockProducts();
     }
     
+    /**
+     * Single-use ticket for opening one of the event streams below, passed as the
+     * {@code ticket} query parameter since EventSource cannot send an Authorization header.
+     */
+    @PostMapping("/stream-ticket")
+    public Map<String, String> issueStreamTicket() {
+        return Map.of("ticket", streamTicketService.issue());
+    }
+    
+    /**
+     * Server-Sent Events: a "snapshot" event with the current low-stock set, then a
+     * "low-stock" event whenever a product enters or leaves it.
+     */
+    @GetMapping(value = "/low-stock/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamLowStock() {
+        return lowStockService.subscribe();
+    }
+    
+    /**
+     * Server-Sent Events: one "stock" event per stock change (productId, newStock, delta,
+     * cause). Reconnects resume after the Last-Event-ID header or {@code lastEventId}
+     * parameter; a "reset" event means events were missed and stock should be reloaded once.
+     */
+    @GetMapping(value = "/stock-events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamStockEvents(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventIdHeader,
+            @RequestParam(required = false) String lastEventId) {
+        return stockEventService.subscribe(lastEventIdHeader != null ? lastEventIdHeader : lastEventId);
+    }
+    
     @PostMapping
     public ResponseEntity<Product> createProduct(@RequestBody Product product) {
         Product created = productService.createProduct(product);
@@ -0,0 +1,39 @@
+package com.supermarket.stockmanagement.controller;
+
+import com.supermarket.stockmanagement.dto.StockAvailabilityDTO;
+import com.supermarket.stockmanagement.dto.StockHoldDTO;
+import com.supermarket.stockmanagement.dto.StockHoldRequest;
+import com.supermarket.stockmanagement.service.ReservationService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/reservations")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:4200")
+public class ReservationController {
+    private final ReservationService reservationService;
+    
+    @PutMapping
+    public ResponseEntity<StockHoldDTO> hold(@RequestBody StockHoldRequest request) {
+        int quantity = request.getQuantity() != null ? request.getQuantity() : 0;
+        return ResponseEntity.ok(reservationService.hold(request.getCartId(), request.getProductId(), quantity));
+    }
+    
+    @DeleteMapping("/cart/{cartId}")
+    public ResponseEntity<Void> releaseCart(@PathVariable String cartId) {
+        reservationService.releaseCart(cartId);
+        return ResponseEntity.noContent().build();
+    }
+    
+    @GetMapping("/available/{productId}")
+    public ResponseEntity<StockAvailabilityDTO> getAvailability(@PathVariable String productId) {
+        StockAvailabilityDTO availability = reservationService.getAvailability(productId);
+        if (availability != null) {
+            return ResponseEntity.ok(availability);
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.supermarket.stockmanagement.controller;
+
+import com.supermarket.stockmanagement.dto.StockAsOfDTO;
+import com.supermarket.stockmanagement.dto.StockDriftReportDTO;
+import com.supermarket.stockmanagement.service.StockLedgerService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/stock-history")
+@RequiredArgsConstructor
+@CrossOrigin(origins = "http://localhost:4200")
+public class StockHistoryController {
+    private final StockLedgerService stockLedgerService;
+    
+    /** Stock of every product as it was at {@code at} (ISO date-time). */
+    @GetMapping("/as-of")
+    public ResponseEntity<List<StockAsOfDTO>> getCatalogStockAsOf(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        return ResponseEntity.ok(stockLedgerService.getCatalogStockAsOf(at));
+    }
+    
+    @GetMapping("/as-of/{productId}")
+    public ResponseEntity<StockAsOfDTO> getProductStockAsOf(
+            @PathVariable String productId,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime at) {
+        StockAsOfDTO stock = stockLedgerService.getProductStockAsOf(productId, at);
+        if (stock != null) {
+            return ResponseEntity.ok(stock);
+        } else {
+            return ResponseEntity.notFound().build();
+        }
+    }
+    
+    /** Takes (or retakes) the snapshot for a day, today by default. */
+    @PostMapping("/snapshots")
+    public ResponseEntity<Map<String, Object>> takeSnapshot(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate date) {
+        LocalDate day = date != null ? date : LocalDate.now();
+        long products = stockLedgerService.snapshot(day);
+        return ResponseEntity.ok(Map.of("snapshotDate", day.toString(), "products", products));
+    }
+    
+    @GetMapping("/drift")
+    public ResponseEntity<StockDriftReportDTO> getDriftReport() {
+        return ResponseEntity.ok(stockLedgerService.getLastDriftReport());
+    }
+    
+    @PostMapping("/drift/check")
+    public ResponseEntity<StockDriftReportDTO> checkDrift() {
+        return ResponseEntity.ok(stockLedgerService.checkDrift());
+    }
+}
@@ -1,11 +1,23 @@
 package com.supermarket.stockmanagement.controller;
 
+import com.supermarket.stockmanagement.dto.IndexStatusDTO;
+import com.supermarket.stockmanagement.dto.QueryPlanDTO;
+import com.supermarket.stockmanagement.dto.TransactionBatchResultDTO;
+import com.supermarket.stockmanagement.dto.TransactionPageDTO;
 import com.supermarket.stockmanagement.model.Transaction;
+import com.supermarket.stockmanagement.service.IdempotencyService;
+import com.supermarket.stockmanagement.service.TransactionBatchService;
+import com.supermarket.stockmanagement.service.TransactionIndexManager;
+import com.supermarket.stockmanagement.service.TransactionQueryService;
 import com.supermarket.stockmanagement.service.TransactionService;
 import lombok.RequiredArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.time.LocalDate;
 import java.util.List;
 
 @RestController
@@ -14,12 +26,49 @@ import java.util.List;
 @CrossOrigin(origins = "http://localhost:4200")
 public class TransactionController {
     private final TransactionService transactionService;
+    private final IdempotencyService idempotencyService;
+    private final TransactionBatchService transactionBatchService;
+    private final TransactionQueryService transactionQueryService;
+    private final TransactionIndexManager transactionIndexManager;
     
     @GetMapping
     public List<Transaction> getAllTransactions() {
         return transactionService.getAllTransactions();
     }
     
+    /**
+     * Keyset-paginated transactions, newest first by default. {@code to} is inclusive; pass
+     * the returned nextCursor to get the following page.
+     */
+    @GetMapping("/page")
+    public ResponseEntity<TransactionPageDTO> getTransactionPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") int limit,
+            @RequestParam(defaultValue = "desc") String sort,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Transaction.TransactionType type,
+            @RequestParam(required = false) String productId,
+            @RequestParam(required = false) String billId) {
+        return ResponseEntity.ok(transactionQueryService.page(cursor, limit, sort,
+                filter(from, to, type, productId, billId)));
+    }
+    
+    /** Every matching transaction as newline-delimited JSON, for exports of any size. */
+    @GetMapping("/stream")
+    public ResponseEntity<StreamingResponseBody> streamTransactions(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) Transaction.TransactionType type,
+            @RequestParam(required = false) String productId,
+            @RequestParam(required = false) String billId) {
+        TransactionQueryService.Filter filter = filter(from, to, type, productId, billId);
+        StreamingResponseBody body = out -> transactionQueryService.stream(filter, out);
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+    
     @GetMapping("/{id}")
     public ResponseEntity<Transaction> getTransactionById(@PathVariable String id) {
         return transactionService.getTransactionById(id)
@@ -27,20 +76,71 @@ public class TransactionController {
                 .orElse(ResponseEntity.notFound().build());
     }
     
+    /** With {@code from} and/or {@code to} ({@code to} inclusive) only that date range is read. */
     @GetMapping("/product/{productId}")
-    public List<Transaction> getTransactionsByProduct(@PathVariable String productId) {
-        return transactionService.getTransactionsByProductId(productId);
+    public List<Transaction> getTransactionsByProduct(
+            @PathVariable String productId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (from == null && to == null) {
+            return transactionService.getTransactionsByProductId(productId);
+        }
+        return transactionService.getTransactionsByProductId(productId,
+                from != null ? from.atStartOfDay() : null,
+                to != null ? to.plusDays(1).atStartOfDay() : null);
     }
     
     @GetMapping("/type/{type}")
-    public List<Transaction> getTransactionsByType(@PathVariable Transaction.TransactionType type) {
-        return transactionService.getTransactionsByType(type);
+    public List<Transaction> getTransactionsByType(
+            @PathVariable Transaction.TransactionType type,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        if (from == null && to == null) {
+            return transactionService.getTransactionsByType(type);
+        }
+        return transactionService.getTransactionsByType(type,
+                from != null ? from.atStartOfDay() : null,
+                to != null ? to.plusDays(1).atStartOfDay() : null);
+    }
+    
+    /** Build state of the transaction index catalogue. */
+    @GetMapping("/indexes")
+    public List<IndexStatusDTO> getIndexStatus() {
+        return transactionIndexManager.getStatus();
+    }
+    
+    /** Winning query plans of the main transaction query paths; none should be a COLLSCAN. */
+    @GetMapping("/indexes/explain")
+    public List<QueryPlanDTO> explainQueryPaths() {
+        return transactionIndexManager.explainQueryPaths();
     }
     
     @PostMapping
-    public ResponseEntity<Transaction> createTransaction(@RequestBody Transaction transaction) {
-        Transaction created = transactionService.createTransaction(transaction);
-        return ResponseEntity.status(HttpStatus.CREATED).body(created);
+    public ResponseEntity<Transaction> createTransaction(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestBody Transaction transaction) {
+        IdempotencyService.Outcome<Transaction> created = idempotencyService.execute(
+                "transactions", idempotencyKey, transaction, Transaction.class,
+                () -> transactionService.createTransaction(transaction));
+        return ResponseEntity.status(HttpStatus.CREATED)
+                .header("Idempotent-Replayed", String.valueOf(created.replayed()))
+                .body(created.response());
+    }
+    
+    /**
+     * Imports many transactions at once. Each row gets its own result; rejected rows do
+     * not stop the rest of the batch.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<TransactionBatchResultDTO> createTransactions(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
+            @RequestBody List<Transaction> transactions) {
+        IdempotencyService.Outcome<TransactionBatchResultDTO> result = idempotencyService.execute(
+                "transactions-batch", idempotencyKey, transactions, TransactionBatchResultDTO.class,
+                () -> transactionBatchService.createBatch(transactions));
+        return ResponseEntity.ok()
+                .header("Idempotent-Replayed", String.valueOf(result.replayed()))
+                .body(result.response());
     }
     
     @DeleteMapping("/{id}")
@@ -48,4 +148,14 @@ public class TransactionController {
         transactionService.deleteTransaction(id);
         return ResponseEntity.noContent().build();
     }
+    
+    private static TransactionQueryService.Filter filter(LocalDate from, LocalDate to,
+            Transaction.TransactionType type, String productId, String billId) {
+        return new TransactionQueryService.Filter(
+                from != null ? from.atStartOfDay() : null,
+                to != null ? to.plusDays(1).atStartOfDay() : null,
+                type,
+                productId,
+                billId);
+    }
 }
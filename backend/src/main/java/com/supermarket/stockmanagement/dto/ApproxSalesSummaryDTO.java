@@ -0,0 +1,24 @@
+package com.supermarket.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ApproxSalesSummaryDTO {
+    private Long salesRecorded;
+    private Long distinctBills;
+    private Long distinctProductsSold;
+    private Long basketsMeasured;
+    private Double basketValueP50;
+    private Double basketValueP90;
+    private Double basketValueP99;
+    
+    // Error bounds
+    private Double distinctCountRelativeError; // HyperLogLog standard error
+    private Double productRevenueErrorBound; // max overestimate of any product's revenue
+    private Double productQuantityErrorBound; // max overestimate of any product's quantity
+    private Double errorBoundConfidence; // probability the Count-Min bounds hold
+}
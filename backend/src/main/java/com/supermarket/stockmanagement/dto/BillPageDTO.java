@@ -0,0 +1,16 @@
+package com.supermarket.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BillPageDTO {
+    private List<BillDTO> bills;
+    private String nextCursor; // pass back as cursor to fetch the following page, null on the last page
+    private Boolean hasMore;
+}
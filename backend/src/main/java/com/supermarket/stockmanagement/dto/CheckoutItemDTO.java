@@ -0,0 +1,15 @@
+package com.supermarket.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CheckoutItemDTO {
+    private String productId;
+    private Integer quantity;
+    private Double unitPrice; // defaults to the product's selling price
+    private String notes;
+}
@@ -0,0 +1,16 @@
+package com.supermarket.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CheckoutRequest {
+    private String reference; // receipt number shown at the till
+    private String cartId; // holds placed while scanning, converted to the sale
+    private List<CheckoutItemDTO> items;
+}
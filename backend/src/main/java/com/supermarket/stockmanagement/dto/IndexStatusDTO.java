@@ -0,0 +1,21 @@
+package com.supermarket.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IndexStatusDTO {
+    private String name;
+    private Map<String, Integer> keys;
+    private String state; // PENDING, BUILDING, READY, FAILED
+    private Long documentsDone; // only while building, when the server reports it
+    private Long documentsTotal;
+    private LocalDateTime finishedAt;
+    private String error;
+}
@@ -0,0 +1,19 @@
+package com.supermarket.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LowStockEventDTO {
+    private String type; // ENTERED (stock fell to or below minStockLevel) or CLEARED
+    private String productId;
+    private String productName;
+    private Integer currentStock;
+    private Integer minStockLevel;
+    private LocalDateTime occurredAt;
+}
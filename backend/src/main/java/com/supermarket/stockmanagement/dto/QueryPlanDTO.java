@@ -0,0 +1,17 @@
+package com.supermarket.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class QueryPlanDTO {
+    private String queryPath;
+    private List<String> stages; // winning plan, outermost stage first
+    private String indexName;
+    private Boolean collectionScan;
+}
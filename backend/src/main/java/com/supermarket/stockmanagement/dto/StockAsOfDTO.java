@@ -0,0 +1,20 @@
+package com.supermarket.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockAsOfDTO {
+    private String productId;
+    private String productName;
+    private LocalDateTime asOf;
+    private Integer stock;
+    private LocalDate snapshotDate; // snapshot the ledger was replayed from, null when replayed back from current stock
+    private Long replayedTransactions;
+}
@@ -0,0 +1,15 @@
+package com.supermarket.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockAvailabilityDTO {
+    private String productId;
+    private Integer currentStock;
+    private Integer held;
+    private Integer available;
+}
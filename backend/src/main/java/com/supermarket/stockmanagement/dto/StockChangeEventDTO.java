@@ -0,0 +1,20 @@
+package com.supermarket.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockChangeEventDTO {
+    private Long sequence;
+    private String productId;
+    private Integer newStock; // null when the product was deleted
+    private Long stockVersion; // the product's stockVersion after this change; older versions are stale
+    private Integer delta;
+    private String cause; // SALE, PURCHASE, ADJUSTMENT, CHECKOUT, BATCH_IMPORT, PRODUCT_CREATED, PRODUCT_UPDATED, PRODUCT_DELETED, SYNC
+    private LocalDateTime occurredAt;
+}
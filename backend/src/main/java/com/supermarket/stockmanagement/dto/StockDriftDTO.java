@@ -0,0 +1,16 @@
+package com.supermarket.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockDriftDTO {
+    private String productId;
+    private String productName;
+    private Integer currentStock;
+    private Long ledgerStock; // net of every PURCHASE, SALE and ADJUSTMENT on record
+    private Long drift; // currentStock - ledgerStock, includes opening stock set directly on the product
+}
@@ -0,0 +1,18 @@
+package com.supermarket.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockDriftReportDTO {
+    private LocalDateTime checkedAt;
+    private Integer productsChecked;
+    private Integer driftedProducts;
+    private List<StockDriftDTO> drifts;
+}
@@ -0,0 +1,18 @@
+package com.supermarket.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockHoldDTO {
+    private String cartId;
+    private String productId;
+    private Integer quantity;
+    private LocalDateTime expiresAt;
+    private Integer available; // left for other carts after this hold
+}
@@ -0,0 +1,14 @@
+package com.supermarket.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class StockHoldRequest {
+    private String cartId; // omitted on the first scan of a new cart
+    private String productId;
+    private Integer quantity; // total the cart holds for the product, 0 releases it
+}
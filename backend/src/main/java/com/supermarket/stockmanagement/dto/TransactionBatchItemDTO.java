@@ -0,0 +1,15 @@
+package com.supermarket.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionBatchItemDTO {
+    private Integer index; // position in the submitted batch
+    private String status; // CREATED or REJECTED
+    private String transactionId;
+    private String error;
+}
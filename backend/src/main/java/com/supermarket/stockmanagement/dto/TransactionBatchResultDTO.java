@@ -0,0 +1,16 @@
+package com.supermarket.stockmanagement.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionBatchResultDTO {
+    private Integer created;
+    private Integer rejected;
+    private List<TransactionBatchItemDTO> results;
+}
@@ -0,0 +1,17 @@
+package com.supermarket.stockmanagement.dto;
+
+import com.supermarket.stockmanagement.model.Transaction;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionPageDTO {
+    private List<Transaction> transactions;
+    private String nextCursor; // pass back as cursor to fetch the following page, null on the last page
+    private Boolean hasMore;
+}
@@ -0,0 +1,27 @@
+package com.supermarket.stockmanagement.exception;
+
+import java.util.Collection;
+import java.util.List;
+
+public class DuplicateBarcodeException extends RuntimeException {
+    private final String barcode;
+    private final List<String> productIds;
+
+    public DuplicateBarcodeException(String barcode, Collection<String> productIds) {
+        this("Barcode " + barcode + " is assigned to " + productIds.size() + " products", barcode, productIds);
+    }
+
+    public DuplicateBarcodeException(String message, String barcode, Collection<String> productIds) {
+        super(message);
+        this.barcode = barcode;
+        this.productIds = List.copyOf(productIds);
+    }
+
+    public String getBarcode() {
+        return barcode;
+    }
+
+    public List<String> getProductIds() {
+        return productIds;
+    }
+}
@@ -26,6 +26,58 @@ public class GlobalExceptionHandler {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
     }
     
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<Map<String, Object>> handleIdempotencyConflict(IdempotencyConflictException ex) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "IDEMPOTENCY_CONFLICT");
+        errorResponse.put("message", ex.getMessage());
+        errorResponse.put("timestamp", LocalDateTime.now());
+        
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+    }
+    
+    @ExceptionHandler(IdempotencyMismatchException.class)
+    public ResponseEntity<Map<String, Object>> handleIdempotencyMismatch(IdempotencyMismatchException ex) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "IDEMPOTENCY_KEY_REUSED");
+        errorResponse.put("message", ex.getMessage());
+        errorResponse.put("timestamp", LocalDateTime.now());
+        
+        return ResponseEntity.status(HttpStatus.UNPROCESSABLE_ENTITY).body(errorResponse);
+    }
+    
+    @ExceptionHandler(StockChangedException.class)
+    public ResponseEntity<Map<String, Object>> handleStockChanged(StockChangedException ex) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "STOCK_CHANGED");
+        errorResponse.put("message", ex.getMessage());
+        errorResponse.put("timestamp", LocalDateTime.now());
+        
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+    }
+    
+    @ExceptionHandler(DuplicateBarcodeException.class)
+    public ResponseEntity<Map<String, Object>> handleDuplicateBarcode(DuplicateBarcodeException ex) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "DUPLICATE_BARCODE");
+        errorResponse.put("message", ex.getMessage());
+        errorResponse.put("barcode", ex.getBarcode());
+        errorResponse.put("productIds", ex.getProductIds());
+        errorResponse.put("timestamp", LocalDateTime.now());
+        
+        return ResponseEntity.status(HttpStatus.CONFLICT).body(errorResponse);
+    }
+    
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<Map<String, Object>> handleIllegalArgument(IllegalArgumentException ex) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("error", "INVALID_REQUEST");
+        errorResponse.put("message", ex.getMessage());
+        errorResponse.put("timestamp", LocalDateTime.now());
+        
+        return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(errorResponse);
+    }
+    
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<Map<String, Object>> handleRuntimeException(RuntimeException ex) {
         // Don't handle auth-related exceptions here - let AuthController handle them
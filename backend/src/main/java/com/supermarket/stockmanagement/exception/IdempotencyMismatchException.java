@@ -0,0 +1,7 @@
+package com.supermarket.stockmanagement.exception;
+
+public class IdempotencyMismatchException extends RuntimeException {
+    public IdempotencyMismatchException(String message) {
+        super(message);
+    }
+}
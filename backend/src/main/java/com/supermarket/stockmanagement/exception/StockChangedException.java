@@ -0,0 +1,7 @@
+package com.supermarket.stockmanagement.exception;
+
+public class StockChangedException extends RuntimeException {
+    public StockChangedException(String message) {
+        super(message);
+    }
+}
@@ -1,6 +1,7 @@
 package com.supermarket.stockmanagement.filter;
 
 import com.supermarket.stockmanagement.service.JwtService;
+import com.supermarket.stockmanagement.service.StreamTicketService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -11,12 +12,19 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.Set;
 
 @Component
 @RequiredArgsConstructor
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
+    // EventSource cannot set headers; these streams are opened with a single-use ticket instead
+    private static final Set<String> EVENT_STREAMS = Set.of(
+            "/api/products/low-stock/stream",
+            "/api/products/stock-events");
+
     private final JwtService jwtService;
+    private final StreamTicketService streamTicketService;
 
     @Override
     protected void doFilterInternal(
@@ -38,27 +46,35 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         final String authHeader = request.getHeader("Authorization");
+        String token = authHeader != null && authHeader.startsWith("Bearer ")
+                ? authHeader.substring(7) // Remove "Bearer " prefix
+                : null;
+        
+        if (token == null && isEventStream(request) && streamTicketService.redeem(request.getParameter("ticket"))) {
+            response.setHeader("Access-Control-Allow-Origin", "http://localhost:4200");
+            response.setHeader("Access-Control-Allow-Credentials", "true");
+            filterChain.doFilter(request, response);
+            return;
+        }
         
-        // Skip if no Authorization header
-        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+        // Skip if no token
+        if (token == null || token.isBlank()) {
             response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
             response.setContentType("application/json");
             response.setHeader("Access-Control-Allow-Origin", "http://localhost:4200");
             response.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-            response.setHeader("Access-Control-Allow-Headers", "Authorization, Content-Type");
+            response.setHeader("Access-Control-Allow-Headers", "Authorization, Content-Type, Idempotency-Key");
             response.getWriter().write("{\"error\":\"Unauthorized\",\"message\":\"Missing or invalid token\"}");
             return;
         }
 
         try {
-            final String token = authHeader.substring(7); // Remove "Bearer " prefix
-            
             if (!jwtService.validateToken(token)) {
                 response.setStatus(HttpServletResponse.SC_UNAUTHORIZED);
                 response.setContentType("application/json");
                 response.setHeader("Access-Control-Allow-Origin", "http://localhost:4200");
                 response.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-                response.setHeader("Access-Control-Allow-Headers", "Authorization, Content-Type");
+                response.setHeader("Access-Control-Allow-Headers", "Authorization, Content-Type, Idempotency-Key");
                 response.getWriter().write("{\"error\":\"Unauthorized\",\"message\":\"Invalid or expired token\"}");
                 return;
             }
@@ -67,7 +83,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             // Add CORS headers before continuing
             response.setHeader("Access-Control-Allow-Origin", "http://localhost:4200");
             response.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-            response.setHeader("Access-Control-Allow-Headers", "Authorization, Content-Type");
+            response.setHeader("Access-Control-Allow-Headers", "Authorization, Content-Type, Idempotency-Key");
             response.setHeader("Access-Control-Allow-Credentials", "true");
             filterChain.doFilter(request, response);
             
@@ -76,9 +92,12 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             response.setContentType("application/json");
             response.setHeader("Access-Control-Allow-Origin", "http://localhost:4200");
             response.setHeader("Access-Control-Allow-Methods", "GET, POST, PUT, DELETE, OPTIONS");
-            response.setHeader("Access-Control-Allow-Headers", "Authorization, Content-Type");
+            response.setHeader("Access-Control-Allow-Headers", "Authorization, Content-Type, Idempotency-Key");
             response.getWriter().write("{\"error\":\"Unauthorized\",\"message\":\"Token validation failed\"}");
         }
     }
+    
+    private static boolean isEventStream(HttpServletRequest request) {
+        return "GET".equalsIgnoreCase(request.getMethod()) && EVENT_STREAMS.contains(request.getRequestURI());
+    }
 }
-
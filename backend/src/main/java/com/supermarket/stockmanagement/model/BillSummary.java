@@ -0,0 +1,25 @@
+package com.supermarket.stockmanagement.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Header of one customer bill, kept in step with its SALE transactions.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "bills")
+public class BillSummary {
+    @Id
+    private String billId;
+    private LocalDateTime billDate; // earliest line of the bill
+    private Integer totalItems; // sum of line quantities
+    private Double totalAmount;
+    private Integer lineCount;
+}
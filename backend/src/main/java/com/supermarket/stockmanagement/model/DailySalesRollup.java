@@ -0,0 +1,22 @@
+package com.supermarket.stockmanagement.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "daily_sales_rollups")
+public class DailySalesRollup {
+    @Id
+    private String id; // ISO date (yyyy-MM-dd), sorts chronologically
+    private LocalDate date;
+    private Long count; // number of SALE transactions
+    private Double revenue;
+    private Long quantity;
+}
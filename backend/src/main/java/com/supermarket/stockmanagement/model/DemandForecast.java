@@ -0,0 +1,31 @@
+package com.supermarket.stockmanagement.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Checkpointed Holt-Winters demand state for one product (additive trend and weekly seasonality).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "demand_forecasts")
+public class DemandForecast {
+    @Id
+    private String productId;
+    private Double level;
+    private Double trend;
+    private double[] season; // indexed by DayOfWeek ordinal
+    private Integer observedDays; // closed days folded into the state
+    private LocalDate lastClosedDay;
+    private LocalDate currentDay; // day still accumulating sales
+    private Integer currentDayQuantity;
+    private String highWaterId; // transaction ids below this are folded in
+    private LocalDateTime updatedAt;
+}
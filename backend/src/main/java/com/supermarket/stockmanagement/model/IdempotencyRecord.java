@@ -0,0 +1,32 @@
+package com.supermarket.stockmanagement.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Outcome of a request made with an Idempotency-Key, kept until the TTL index removes it.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "idempotency_keys")
+public class IdempotencyRecord {
+    @Id
+    private String id; // scope:key
+    private Status status;
+    private String fingerprint; // hash of the request body the key was first used with
+    private org.bson.Document response; // stored response body once completed
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt; // lease of the attempt currently running the request, renewed while it runs
+    private String owner; // attempt holding the lease
+    private LocalDateTime completedAt;
+
+    public enum Status {
+        IN_PROGRESS, COMPLETED
+    }
+}
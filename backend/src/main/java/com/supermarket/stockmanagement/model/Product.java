@@ -22,6 +22,7 @@ public class Product {
     private Double purchasePrice;
     private Double sellingPrice;
     private Integer currentStock;
+    private Long stockVersion; // bumped with every stock write, so stock events can be ordered per product
     private Integer minStockLevel;
     private String unit; // e.g., "piece", "kg", "liter"
     private LocalDateTime createdAt;
@@ -0,0 +1,26 @@
+package com.supermarket.stockmanagement.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Rebuild marker for one read model derived from the transactions collection. Setting
+ * {@code requested} asks the next node that starts to recompute it from scratch.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "projection_rebuilds")
+public class ProjectionRebuild {
+    @Id
+    private String id; // name of the rebuilt collection
+    private Boolean requested;
+    private Boolean running;
+    private LocalDateTime startedAt; // claim time, lets a crashed rebuild be taken over
+    private LocalDateTime rebuiltAt;
+}
@@ -0,0 +1,42 @@
+package com.supermarket.stockmanagement.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sales sketches covering every SALE transaction whose id is below {@code highWaterId}.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "sales_sketches")
+public class SalesSketchSnapshot {
+    @Id
+    private String id;
+    private byte[] revenueByProduct; // Count-Min sketch, cents
+    private Map<String, Long> revenueLeaders; // heavy-hitter candidates
+    private byte[] quantityByProduct; // Count-Min sketch
+    private byte[] distinctBills; // HyperLogLog
+    private byte[] distinctProducts; // HyperLogLog
+    private byte[] basketValues; // t-digest
+    private List<OpenBasket> openBaskets; // bills not yet folded into basketValues
+    private Long salesRecorded;
+    private String highWaterId; // transaction ids below this are folded in
+    private LocalDateTime updatedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class OpenBasket {
+        private String billId;
+        private Double total;
+        private LocalDateTime lastLineAt;
+    }
+}
@@ -0,0 +1,17 @@
+package com.supermarket.stockmanagement.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "counters")
+public class SequenceCounter {
+    @Id
+    private String id; // sequence name, e.g. bill-20240131
+    private Long value; // highest number reserved by any node
+}
@@ -0,0 +1,27 @@
+package com.supermarket.stockmanagement.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * A product's stock at the start of one day, checkpointed so point-in-time stock only
+ * needs the ledger rows since the nearest snapshot.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "stock_snapshots")
+public class StockSnapshot {
+    @Id
+    private String id; // snapshotDate:productId
+    private String productId;
+    private LocalDate snapshotDate;
+    private Integer stock;
+    private LocalDateTime createdAt;
+}
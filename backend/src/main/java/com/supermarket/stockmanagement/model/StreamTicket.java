@@ -0,0 +1,23 @@
+package com.supermarket.stockmanagement.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.time.LocalDateTime;
+
+/**
+ * Single-use credential for opening an event stream, which cannot carry an Authorization
+ * header. Removed when redeemed, or by the TTL index shortly after it expires.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Document(collection = "stream_tickets")
+public class StreamTicket {
+    @Id
+    private String id; // the ticket itself, random
+    private LocalDateTime createdAt;
+}
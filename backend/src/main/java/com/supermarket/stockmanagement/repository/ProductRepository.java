@@ -10,4 +10,5 @@ public interface ProductRepository extends MongoRepository<Product, String> {
     List<Product> findByCategoryId(String categoryId);
     List<Product> findBySupplierId(String supplierId);
     List<Product> findByCurrentStockLessThanEqual(Integer stock);
+    List<Product> findAllByBarcode(String barcode);
 }
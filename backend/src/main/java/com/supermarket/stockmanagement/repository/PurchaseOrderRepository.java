@@ -6,6 +6,7 @@ import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface PurchaseOrderRepository extends MongoRepository<PurchaseOrder, String> {
@@ -16,4 +17,5 @@ public interface PurchaseOrderRepository extends MongoRepository<PurchaseOrder,
     List<PurchaseOrder> findByExpectedDeliveryDateBetween(LocalDateTime start, LocalDateTime end);
     List<PurchaseOrder> findByPaymentStatus(PurchaseOrder.PaymentStatus paymentStatus);
     long countByOrderDateBetween(LocalDateTime start, LocalDateTime end);
+    Optional<PurchaseOrder> findFirstByOrderNumberStartingWithOrderByOrderNumberDesc(String prefix);
 }
@@ -1,12 +1,22 @@
 package com.supermarket.stockmanagement.repository;
 
 import com.supermarket.stockmanagement.model.Transaction;
+import org.springframework.data.domain.Range;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
+import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface TransactionRepository extends MongoRepository<Transaction, String> {
     List<Transaction> findByProductId(String productId);
     List<Transaction> findByType(Transaction.TransactionType type);
+    List<Transaction> findByBillId(String billId);
+    Optional<Transaction> findFirstByBillIdStartingWithOrderByBillIdDesc(String prefix);
+    
+    // Range queries served by the compound indexes in TransactionIndexManager
+    List<Transaction> findByTypeAndTransactionDateBetween(Transaction.TransactionType type, Range<LocalDateTime> dates, Sort sort);
+    List<Transaction> findByProductIdAndTransactionDateBetween(String productId, Range<LocalDateTime> dates, Sort sort);
 }
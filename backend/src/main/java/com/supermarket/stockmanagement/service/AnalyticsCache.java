@@ -0,0 +1,150 @@
+package com.supermarket.stockmanagement.service;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Bounded result cache for analytics responses. Entries are fresh for the TTL, then
+ * served stale for a grace period while a single background refresh recomputes them.
+ * Writes bump a generation counter, which marks every entry dirty in O(1).
+ */
+@Component
+public class AnalyticsCache {
+    private final long ttlMillis;
+    private final long staleMillis;
+    private final Map<String, Entry> entries;
+    private final AtomicLong generation = new AtomicLong();
+    private final ExecutorService refresher;
+    private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+    private final SingleFlight singleFlight;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder staleHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    public AnalyticsCache(SingleFlight singleFlight,
+                          @Value("${analytics.cache.max-entries:200}") int maxEntries,
+                          @Value("${analytics.cache.ttl-seconds:30}") long ttlSeconds,
+                          @Value("${analytics.cache.stale-seconds:300}") long staleSeconds) {
+        this.singleFlight = singleFlight;
+        this.ttlMillis = ttlSeconds * 1000;
+        this.staleMillis = staleSeconds * 1000;
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > maxEntries) {
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        });
+        this.refresher = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "analytics-cache-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, Supplier<T> loader) {
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            long age = System.currentTimeMillis() - entry.loadedAt();
+            boolean dirty = entry.generation() != generation.get();
+            if (!dirty && age < ttlMillis) {
+                hits.increment();
+                return (T) entry.value();
+            }
+            if (age < ttlMillis + staleMillis) {
+                staleHits.increment();
+                refreshAsync(key, loader);
+                return (T) entry.value();
+            }
+        }
+
+        misses.increment();
+        return (T) load(key, loader);
+    }
+
+    /** Marks every cached result dirty; the next read serves it stale and triggers a refresh. */
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        invalidations.increment();
+    }
+
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long staleCount = staleHits.sum();
+        long missCount = misses.sum();
+        long total = hitCount + staleCount + missCount;
+
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", entries.size());
+        stats.put("hits", hitCount);
+        stats.put("staleHits", staleCount);
+        stats.put("misses", missCount);
+        stats.put("refreshes", refreshes.sum());
+        stats.put("refreshFailures", refreshFailures.sum());
+        stats.put("evictions", evictions.sum());
+        stats.put("invalidations", invalidations.sum());
+        stats.put("hitRatio", total == 0 ? 0.0 : (double) (hitCount + staleCount) / total);
+        return stats;
+    }
+
+    private void refreshAsync(String key, Supplier<?> loader) {
+        // Claiming the key is atomic, so concurrent stale hits queue exactly one refresh
+        if (!refreshing.add(key)) {
+            return;
+        }
+        refreshes.increment();
+        try {
+            refresher.execute(() -> {
+                try {
+                    load(key, loader);
+                } catch (RuntimeException e) {
+                    refreshFailures.increment();
+                } finally {
+                    refreshing.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            refreshing.remove(key);
+        }
+    }
+
+    /** Computes and stores the value for a key; concurrent loads of the same key share one computation. */
+    private Object load(String key, Supplier<?> loader) {
+        return singleFlight.execute(key, () -> {
+            long startGeneration = generation.get();
+            Object value = loader.get();
+            entries.put(key, new Entry(value, System.currentTimeMillis(), startGeneration));
+            return value;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refresher.shutdownNow();
+    }
+
+    private record Entry(Object value, long loadedAt, long generation) {
+    }
+}
@@ -0,0 +1,448 @@
+package com.supermarket.stockmanagement.service;
+
+import com.supermarket.stockmanagement.dto.RevenueAnalyticsDTO;
+import com.supermarket.stockmanagement.dto.SalesFrequencyDTO;
+import com.supermarket.stockmanagement.model.Product;
+import com.supermarket.stockmanagement.model.Transaction;
+import com.supermarket.stockmanagement.model.Transaction.TransactionType;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * In-process view of recent sales, updated on every transaction write and rebuilt from
+ * Mongo at startup. Totals live in fixed-size ring buffers of primitives: one slot per
+ * day (per product and store-wide) and one slot per hour for the revenue/profit windows.
+ * Slots are stamped with the day or hour they hold, so stale slots read as zero.
+ */
+@Service
+public class AnalyticsEngine {
+    private static final int HOURLY_SLOTS = 31 * 24;
+    private static final Sort SCAN_ORDER = Sort.by(Sort.Direction.ASC, "transactionDate").and(Sort.by(Sort.Direction.ASC, "_id"));
+    private static final Comparator<Transaction> SCAN_COMPARATOR = Comparator
+            .comparing(Transaction::getTransactionDate)
+            .thenComparing(Transaction::getId);
+
+    private final MongoTemplate mongoTemplate;
+    private final ProjectionRebuilder projectionRebuilder;
+    private final int windowDays;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private State state;
+    private Pending pendingWhileRebuilding;
+    private volatile boolean ready;
+
+    public AnalyticsEngine(MongoTemplate mongoTemplate, ProjectionRebuilder projectionRebuilder,
+                           @Value("${analytics.engine.window-days:90}") int windowDays) {
+        this.mongoTemplate = mongoTemplate;
+        this.projectionRebuilder = projectionRebuilder;
+        this.windowDays = windowDays;
+        this.state = new State(windowDays);
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** Whether every day from {@code from} up to today is still held in the ring buffers. */
+    public boolean covers(LocalDate from) {
+        return ready && from.toEpochDay() > LocalDate.now().toEpochDay() - windowDays;
+    }
+
+    public void record(Transaction transaction, Double purchasePrice) {
+        apply(transaction, purchasePrice, 1);
+    }
+
+    /**
+     * Takes a sale back out of the totals. Called before the transaction is deleted, so a
+     * rebuild running at the same time can tell whether its scan still counted the row.
+     */
+    public void revert(Transaction transaction) {
+        apply(transaction, null, -1);
+    }
+
+    private void apply(Transaction transaction, Double purchasePrice, int sign) {
+        if (transaction.getType() != TransactionType.SALE || transaction.getTransactionDate() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (pendingWhileRebuilding != null) {
+                if (sign > 0) {
+                    pendingWhileRebuilding.recorded.add(transaction);
+                } else {
+                    pendingWhileRebuilding.revert(transaction);
+                }
+            }
+            state.apply(transaction, purchasePrice, sign);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reloads the window from Mongo. The scan only reads rows whose id predates the rebuild,
+     * taken while no write is in flight, so every sale recorded later is replayed from the
+     * pending list. Reverts are queued as well and applied only for rows the scan counted.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        LocalDateTime windowStart = LocalDate.now().minusDays(windowDays - 1L).atStartOfDay();
+
+        Pending pending = projectionRebuilder.withoutWritesInFlight(() -> {
+            lock.writeLock().lock();
+            try {
+                pendingWhileRebuilding = new Pending();
+                return pendingWhileRebuilding;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+
+        State rebuilt = new State(windowDays);
+        boolean loaded = false;
+        try {
+            Query productQuery = new Query();
+            productQuery.fields().include("purchasePrice");
+            Map<String, Double> purchasePrices = new HashMap<>();
+            for (Product product : mongoTemplate.find(productQuery, Product.class)) {
+                purchasePrices.put(product.getId(), product.getPurchasePrice());
+            }
+
+            Query salesQuery = Query.query(Criteria.where("type").is(TransactionType.SALE)
+                    .and("transactionDate").gte(windowStart)
+                    .and("_id").lt(new ObjectId(pending.cutoffId)))
+                    .with(SCAN_ORDER);
+            salesQuery.fields().include("productId", "type", "quantity", "unitPrice", "totalAmount", "transactionDate");
+            try (Stream<Transaction> sales = mongoTemplate.stream(salesQuery, Transaction.class)) {
+                sales.forEach(sale -> {
+                    if (pending.scanned(sale)) {
+                        rebuilt.apply(sale, purchasePrices.get(sale.getProductId()), 1);
+                    }
+                });
+            }
+            loaded = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (loaded) {
+                    for (Transaction transaction : pending.recorded) {
+                        rebuilt.apply(transaction, state.purchasePrice(transaction.getProductId()), 1);
+                    }
+                    for (Transaction transaction : pending.reverted) {
+                        if (!transaction.getTransactionDate().isBefore(windowStart) && pending.counted(transaction)) {
+                            rebuilt.apply(transaction, null, -1);
+                        }
+                    }
+                    state = rebuilt;
+                    ready = true;
+                }
+                pendingWhileRebuilding = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public List<SalesFrequencyDTO> salesFrequency(LocalDate from, LocalDate to) {
+        lock.readLock().lock();
+        try {
+            List<SalesFrequencyDTO> frequency = new ArrayList<>();
+            for (long day = from.toEpochDay(); day <= to.toEpochDay(); day++) {
+                int slot = state.daySlot(day);
+                boolean hit = state.dayStamp[slot] == day;
+                frequency.add(new SalesFrequencyDTO(
+                    LocalDate.ofEpochDay(day),
+                    hit ? state.dayCount[slot] : 0L,
+                    hit ? state.dayRevenue[slot] : 0.0
+                ));
+            }
+            return frequency;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public RevenueAnalyticsDTO revenue(LocalDateTime now) {
+        long currentHour = hourOf(now);
+        long[] windowStarts = {
+            hourOf(now.toLocalDate().atStartOfDay()),
+            hourOf(now.minusDays(7)),
+            hourOf(now.minusDays(30))
+        };
+        double[] revenue = new double[windowStarts.length];
+        double[] profit = new double[windowStarts.length];
+        int[] transactions = new int[windowStarts.length];
+
+        lock.readLock().lock();
+        try {
+            for (long hour = windowStarts[2]; hour <= currentHour; hour++) {
+                int slot = (int) Math.floorMod(hour, (long) HOURLY_SLOTS);
+                if (state.hourStamp[slot] != hour) {
+                    continue;
+                }
+                for (int w = 0; w < windowStarts.length; w++) {
+                    if (hour >= windowStarts[w]) {
+                        revenue[w] += state.hourRevenue[slot];
+                        profit[w] += state.hourProfit[slot];
+                        transactions[w] += (int) state.hourCount[slot];
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        return new RevenueAnalyticsDTO(
+            revenue[0], revenue[1], revenue[2],
+            profit[0], profit[1], profit[2],
+            transactions[0], transactions[1], transactions[2]
+        );
+    }
+
+    /** Quantity sold per product over the calendar days [from, to]. */
+    public Map<String, Integer> quantitySold(LocalDate from, LocalDate to) {
+        Map<String, Integer> sold = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, ProductSeries> entry : state.products.entrySet()) {
+                ProductSeries series = entry.getValue();
+                int quantity = 0;
+                boolean any = false;
+                for (long day = from.toEpochDay(); day <= to.toEpochDay(); day++) {
+                    int slot = state.daySlot(day);
+                    if (series.dayStamp[slot] == day && series.count[slot] > 0) {
+                        quantity += series.quantity[slot];
+                        any = true;
+                    }
+                }
+                if (any) {
+                    sold.put(entry.getKey(), quantity);
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return sold;
+    }
+
+    /** Best {@code limit} products by revenue over the calendar days [from, to], highest first. */
+    public List<ProductTotals> topProducts(int limit, LocalDate from, LocalDate to) {
+        PriorityQueue<ProductTotals> topK = new PriorityQueue<>(limit + 1,
+                Comparator.comparingDouble(ProductTotals::revenue));
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<String, ProductSeries> entry : state.products.entrySet()) {
+                ProductSeries series = entry.getValue();
+                int quantity = 0;
+                double revenue = 0.0;
+                boolean any = false;
+                for (long day = from.toEpochDay(); day <= to.toEpochDay(); day++) {
+                    int slot = state.daySlot(day);
+                    if (series.dayStamp[slot] == day && series.count[slot] > 0) {
+                        quantity += series.quantity[slot];
+                        revenue += series.revenue[slot];
+                        any = true;
+                    }
+                }
+                if (!any) {
+                    continue;
+                }
+                if (topK.size() < limit) {
+                    topK.offer(new ProductTotals(entry.getKey(), quantity, revenue));
+                } else if (revenue > topK.peek().revenue()) {
+                    topK.poll();
+                    topK.offer(new ProductTotals(entry.getKey(), quantity, revenue));
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<ProductTotals> winners = new ArrayList<>(topK);
+        winners.sort(Comparator.comparingDouble(ProductTotals::revenue).reversed());
+        return winners;
+    }
+
+    private static long hourOf(LocalDateTime dateTime) {
+        return dateTime.toLocalDate().toEpochDay() * 24 + dateTime.getHour();
+    }
+
+    public record ProductTotals(String productId, int quantity, double revenue) {
+    }
+
+    /** Writes that arrive while a rebuild scans Mongo, with the scan position they raced against. */
+    private static final class Pending {
+        private final String cutoffId = new ObjectId().toHexString();
+        private final List<Transaction> recorded = new ArrayList<>();
+        private final List<Transaction> reverted = new ArrayList<>();
+        private final Map<String, Boolean> passedAtRevert = new HashMap<>();
+        private final Set<String> revertedIds = ConcurrentHashMap.newKeySet();
+        private final Set<String> skipped = ConcurrentHashMap.newKeySet();
+        private volatile Transaction position;
+
+        /** Called by the scan for each row; false when the row is being reverted and must be left out. */
+        private boolean scanned(Transaction sale) {
+            position = sale;
+            if (revertedIds.contains(sale.getId())) {
+                skipped.add(sale.getId());
+                return false;
+            }
+            return true;
+        }
+
+        private void revert(Transaction transaction) {
+            reverted.add(transaction);
+            if (transaction.getId() == null) {
+                return;
+            }
+            revertedIds.add(transaction.getId());
+            Transaction scannedUpTo = position;
+            passedAtRevert.put(transaction.getId(),
+                    scannedUpTo != null && SCAN_COMPARATOR.compare(transaction, scannedUpTo) <= 0);
+        }
+
+        /** Whether the rebuilt totals include a row that was reverted during the rebuild. */
+        private boolean counted(Transaction transaction) {
+            String id = transaction.getId();
+            if (id == null || id.compareTo(cutoffId) > 0) {
+                // Outside the scan: only counted through the replayed pending list
+                return true;
+            }
+            return Boolean.TRUE.equals(passedAtRevert.get(id)) && !skipped.contains(id);
+        }
+    }
+
+    private static final class ProductSeries {
+        private final long[] dayStamp;
+        private final int[] count;
+        private final int[] quantity;
+        private final double[] revenue;
+        private Double purchasePrice;
+
+        private ProductSeries(int windowDays) {
+            this.dayStamp = new long[windowDays];
+            this.count = new int[windowDays];
+            this.quantity = new int[windowDays];
+            this.revenue = new double[windowDays];
+            Arrays.fill(dayStamp, Long.MIN_VALUE);
+        }
+    }
+
+    private static final class State {
+        private final int windowDays;
+        private final long[] dayStamp;
+        private final long[] dayCount;
+        private final long[] dayQuantity;
+        private final double[] dayRevenue;
+        private final long[] hourStamp = new long[HOURLY_SLOTS];
+        private final long[] hourCount = new long[HOURLY_SLOTS];
+        private final double[] hourRevenue = new double[HOURLY_SLOTS];
+        private final double[] hourProfit = new double[HOURLY_SLOTS];
+        private final Map<String, ProductSeries> products = new HashMap<>();
+
+        private State(int windowDays) {
+            this.windowDays = windowDays;
+            this.dayStamp = new long[windowDays];
+            this.dayCount = new long[windowDays];
+            this.dayQuantity = new long[windowDays];
+            this.dayRevenue = new double[windowDays];
+            Arrays.fill(dayStamp, Long.MIN_VALUE);
+            Arrays.fill(hourStamp, Long.MIN_VALUE);
+        }
+
+        private int daySlot(long epochDay) {
+            return (int) Math.floorMod(epochDay, (long) windowDays);
+        }
+
+        private Double purchasePrice(String productId) {
+            ProductSeries series = productId != null ? products.get(productId) : null;
+            return series != null ? series.purchasePrice : null;
+        }
+
+        private void apply(Transaction sale, Double purchasePrice, int sign) {
+            long day = sale.getTransactionDate().toLocalDate().toEpochDay();
+            long hour = hourOf(sale.getTransactionDate());
+            int quantity = sale.getQuantity() != null ? Math.abs(sale.getQuantity()) : 0;
+            double amount = sale.getTotalAmount() != null ? sale.getTotalAmount() : 0.0;
+
+            ProductSeries series = null;
+            if (sale.getProductId() != null) {
+                series = products.computeIfAbsent(sale.getProductId(), id -> new ProductSeries(windowDays));
+                if (purchasePrice != null) {
+                    series.purchasePrice = purchasePrice;
+                } else {
+                    purchasePrice = series.purchasePrice;
+                }
+            }
+
+            int daySlot = daySlot(day);
+            if (claim(dayStamp, daySlot, day)) {
+                dayCount[daySlot] = 0;
+                dayQuantity[daySlot] = 0;
+                dayRevenue[daySlot] = 0.0;
+            }
+            if (dayStamp[daySlot] == day) {
+                dayCount[daySlot] += sign;
+                dayQuantity[daySlot] += (long) sign * quantity;
+                dayRevenue[daySlot] += sign * amount;
+            }
+
+            if (series != null) {
+                if (claim(series.dayStamp, daySlot, day)) {
+                    series.count[daySlot] = 0;
+                    series.quantity[daySlot] = 0;
+                    series.revenue[daySlot] = 0.0;
+                }
+                if (series.dayStamp[daySlot] == day) {
+                    series.count[daySlot] += sign;
+                    series.quantity[daySlot] += sign * quantity;
+                    series.revenue[daySlot] += sign * amount;
+                }
+            }
+
+            int hourSlot = (int) Math.floorMod(hour, (long) HOURLY_SLOTS);
+            if (claim(hourStamp, hourSlot, hour)) {
+                hourCount[hourSlot] = 0;
+                hourRevenue[hourSlot] = 0.0;
+                hourProfit[hourSlot] = 0.0;
+            }
+            if (hourStamp[hourSlot] == hour) {
+                hourCount[hourSlot] += sign;
+                hourRevenue[hourSlot] += sign * amount;
+                if (purchasePrice != null && sale.getUnitPrice() != null) {
+                    hourProfit[hourSlot] += sign * (sale.getUnitPrice() - purchasePrice) * quantity;
+                }
+            }
+        }
+
+        /** Re-stamps a slot for a newer period; returns true when the slot was recycled. */
+        private static boolean claim(long[] stamps, int slot, long period) {
+            if (stamps[slot] < period) {
+                stamps[slot] = period;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -2,24 +2,41 @@ package com.supermarket.stockmanagement.service;
 
 import com.supermarket.stockmanagement.dto.*;
 import com.supermarket.stockmanagement.model.Category;
+import com.supermarket.stockmanagement.model.DailySalesRollup;
 import com.supermarket.stockmanagement.model.Product;
 import com.supermarket.stockmanagement.model.Transaction;
 import com.supermarket.stockmanagement.model.Transaction.TransactionType;
 import com.supermarket.stockmanagement.repository.ProductRepository;
 import com.supermarket.stockmanagement.repository.TransactionRepository;
 import com.supermarket.stockmanagement.repository.CategoryRepository;
+import com.supermarket.stockmanagement.service.AnalyticsEngine.ProductTotals;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.bson.Document;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.temporal.ChronoUnit;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
+@Slf4j
 @Service
 public class AnalyticsService {
 
+    private static final int TODAY = 0;
+    private static final int WEEK = 1;
+    private static final int MONTH = 2;
+
     @Autowired
     private TransactionRepository transactionRepository;
 
@@ -32,29 +49,105 @@ public class AnalyticsService {
     @Autowired
     private ProductService productService;
 
+    @Autowired
+    private SalesRollupService salesRollupService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @Autowired
+    private AnalyticsEngine analyticsEngine;
+
+    @Autowired
+    private AnalyticsCache analyticsCache;
+
+    @Autowired
+    private SingleFlight singleFlight;
+
+    @Autowired
+    private TransactionColumnStore columnStore;
+
+    @Autowired
+    private SalesSketchService salesSketchService;
+
+    @Autowired
+    private DemandForecastService demandForecastService;
+
+    @Value("${analytics.cache.enabled:true}")
+    private boolean cacheEnabled;
+
     public List<SalesFrequencyDTO> getSalesFrequency(int days) {
-        LocalDateTime endDate = LocalDateTime.now();
-        LocalDateTime startDate = endDate.minusDays(days);
-        
-        List<Transaction> sales = transactionRepository.findAll().stream()
-            .filter(t -> t.getType() == TransactionType.SALE)
-            .filter(t -> t.getTransactionDate() != null && 
-                        t.getTransactionDate().isAfter(startDate) && 
-                        t.getTransactionDate().isBefore(endDate))
-            .collect(Collectors.toList());
+        return query("sales-frequency:" + days, () -> computeSalesFrequency(days));
+    }
+
+    public List<ProductSalesTrendDTO> getProductSalesTrends() {
+        return query("product-trends", this::computeProductSalesTrends);
+    }
+
+    public List<TopProductDTO> getTopProducts(int limit) {
+        return getTopProducts(limit, null, null);
+    }
+
+    public List<TopProductDTO> getTopProducts(int limit, LocalDateTime from, LocalDateTime to) {
+        return query("top-products:" + limit + ":" + from + ":" + to,
+            () -> computeTopProducts(limit, from, to));
+    }
+
+    /** All-time top products estimated from the sales sketches in constant time. */
+    public List<TopProductDTO> getApproximateTopProducts(int limit) {
+        return hydrateTopProducts(salesSketchService.topProducts(limit));
+    }
+
+    public double getApproximateRevenueErrorBound() {
+        return salesSketchService.getRevenueErrorBound();
+    }
 
-        Map<LocalDate, List<Transaction>> salesByDate = sales.stream()
-            .collect(Collectors.groupingBy(t -> t.getTransactionDate().toLocalDate()));
+    public ApproxSalesSummaryDTO getApproximateSummary() {
+        return salesSketchService.getSummary();
+    }
+
+    public RevenueAnalyticsDTO getRevenueAnalytics() {
+        return query("revenue", this::computeRevenueAnalytics);
+    }
+
+    public Map<String, Object> getCacheStats() {
+        return analyticsCache.getStats();
+    }
+
+    public Map<String, Object> getSingleFlightStats() {
+        return singleFlight.getStats();
+    }
+
+    /**
+     * Routes an analytics computation through the result cache, or, with the cache
+     * disabled, through single-flight so identical concurrent requests share one run.
+     */
+    private <T> T query(String key, Supplier<T> computation) {
+        if (cacheEnabled) {
+            return analyticsCache.get(key, computation);
+        }
+        return singleFlight.execute(key, computation);
+    }
+
+    private List<SalesFrequencyDTO> computeSalesFrequency(int days) {
+        LocalDate endDate = LocalDate.now();
+        LocalDate startDate = endDate.minusDays(days);
+        
+        if (analyticsEngine.covers(startDate)) {
+            return analyticsEngine.salesFrequency(startDate, endDate);
+        }
+        
+        // Reads at most days + 1 pre-aggregated documents instead of the whole transaction history
+        Map<LocalDate, DailySalesRollup> rollupsByDate = salesRollupService.getRollups(startDate, endDate).stream()
+            .collect(Collectors.toMap(r -> LocalDate.parse(r.getId()), r -> r));
 
         List<SalesFrequencyDTO> frequency = new ArrayList<>();
-        LocalDate currentDate = startDate.toLocalDate();
-        
-        while (!currentDate.isAfter(endDate.toLocalDate())) {
-            List<Transaction> dailySales = salesByDate.getOrDefault(currentDate, new ArrayList<>());
-            long count = dailySales.size();
-            double totalAmount = dailySales.stream()
-                .mapToDouble(Transaction::getTotalAmount)
-                .sum();
+        LocalDate currentDate = startDate;
+        
+        while (!currentDate.isAfter(endDate)) {
+            DailySalesRollup rollup = rollupsByDate.get(currentDate);
+            long count = rollup != null && rollup.getCount() != null ? rollup.getCount() : 0L;
+            double totalAmount = rollup != null && rollup.getRevenue() != null ? rollup.getRevenue() : 0.0;
             
             frequency.add(new SalesFrequencyDTO(currentDate, count, totalAmount));
             currentDate = currentDate.plusDays(1);
@@ -63,27 +156,27 @@ public class AnalyticsService {
         return frequency;
     }
 
-    public List<ProductSalesTrendDTO> getProductSalesTrends() {
-        List<Product> products = productRepository.findAll();
-        List<ProductSalesTrendDTO> trends = new ArrayList<>();
+    public long rebuildSalesRollups() {
+        long days = salesRollupService.rebuild();
+        analyticsCache.invalidateAll();
+        return days;
+    }
+
+    private List<ProductSalesTrendDTO> computeProductSalesTrends() {
+        Map<String, Integer> soldByProduct = getQuantitySoldLastThirtyDays();
         
-        LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(30);
+        if (soldByProduct.isEmpty()) {
+            return new ArrayList<>();
+        }
         
+        Query productQuery = Query.query(Criteria.where("_id").in(soldByProduct.keySet()));
+        productQuery.fields().include("name", "currentStock");
+        List<Product> products = mongoTemplate.find(productQuery, Product.class);
+        
+        List<ProductSalesTrendDTO> trends = new ArrayList<>();
         for (Product product : products) {
-            List<Transaction> productSales = transactionRepository.findAll().stream()
-                .filter(t -> t.getType() == TransactionType.SALE)
-                .filter(t -> t.getProductId().equals(product.getId()))
-                .filter(t -> t.getTransactionDate() != null && 
-                            t.getTransactionDate().isAfter(thirtyDaysAgo))
-                .collect(Collectors.toList());
-            
-            if (productSales.isEmpty()) {
-                continue;
-            }
-            
-            int totalSold = productSales.stream()
-                .mapToInt(Transaction::getQuantity)
-                .sum();
+            int currentStock = product.getCurrentStock() != null ? product.getCurrentStock() : 0;
+            int totalSold = soldByProduct.get(product.getId());
             
             double averageDailySales = totalSold / 30.0;
             
@@ -91,8 +184,14 @@ public class AnalyticsService {
             LocalDate suggestedOrderDate = null;
             Integer suggestedOrderQuantity = null;
             
-            if (averageDailySales > 0) {
-                daysUntilStockout = (int) (product.getCurrentStock() / averageDailySales);
+            DemandForecastService.Forecast forecast = demandForecastService.forecast(product.getId(), currentStock);
+            if (forecast != null) {
+                daysUntilStockout = forecast.daysUntilStockout();
+                suggestedOrderDate = forecast.suggestedOrderDate();
+                suggestedOrderQuantity = forecast.suggestedOrderQuantity();
+            } else if (averageDailySales > 0) {
+                // Not enough history for a forecast yet, fall back to the flat average
+                daysUntilStockout = (int) (currentStock / averageDailySales);
                 
                 // Suggest reorder when stock will last only 7 more days
                 if (daysUntilStockout <= 7) {
@@ -108,7 +207,7 @@ public class AnalyticsService {
             ProductSalesTrendDTO trend = new ProductSalesTrendDTO(
                 product.getId(),
                 product.getName(),
-                product.getCurrentStock(),
+                currentStock,
                 totalSold,
                 averageDailySales,
                 daysUntilStockout,
@@ -126,130 +225,234 @@ public class AnalyticsService {
         return trends;
     }
 
-    public List<TopProductDTO> getTopProducts(int limit) {
-        try {
-            Map<String, Integer> productSalesCount = new HashMap<>();
-            Map<String, Double> productRevenue = new HashMap<>();
-            
-            // Get all sales transactions
-            List<Transaction> recentSales = transactionRepository.findAll().stream()
-                .filter(t -> t.getType() == TransactionType.SALE)
-                .filter(t -> t.getTransactionDate() != null)
-                .collect(Collectors.toList());
-            
-            // Aggregate sales by product
-            for (Transaction sale : recentSales) {
-                String productId = sale.getProductId();
-                if (productId != null) {
-                    productSalesCount.merge(productId, sale.getQuantity(), Integer::sum);
-                    productRevenue.merge(productId, sale.getTotalAmount(), Double::sum);
-                }
-            }
-            
-            List<TopProductDTO> topProducts = new ArrayList<>();
-            
-            // Create DTOs for each product
-            for (Map.Entry<String, Integer> entry : productSalesCount.entrySet()) {
-                String productId = entry.getKey();
-                try {
-                    Product product = productRepository.findById(productId).orElse(null);
-                    
-                    if (product != null) {
-                        String categoryName = "Uncategorized";
-                        // Look up category by ID since Product only stores categoryId
-                        if (product.getCategoryId() != null) {
-                            var category = categoryRepository.findById(product.getCategoryId()).orElse(null);
-                            if (category != null && category.getName() != null && !category.getName().isEmpty()) {
-                                categoryName = category.getName();
-                            }
-                        }
-                        
-                        TopProductDTO dto = new TopProductDTO(
-                            productId,
-                            product.getName(),
-                            entry.getValue(),
-                            productRevenue.getOrDefault(productId, 0.0),
-                            categoryName
-                        );
-                        topProducts.add(dto);
-                    }
-                } catch (Exception e) {
-                    System.err.println("Error processing product " + productId + ": " + e.getMessage());
+    private Map<String, Integer> getQuantitySoldLastThirtyDays() {
+        LocalDate today = LocalDate.now();
+        if (analyticsEngine.covers(today.minusDays(29))) {
+            return analyticsEngine.quantitySold(today.minusDays(29), today);
+        }
+        
+        LocalDateTime thirtyDaysAgo = LocalDateTime.now().minusDays(30);
+        if (columnStore.isAvailable()) {
+            return columnStore.quantitySold(thirtyDaysAgo);
+        }
+        
+        // One grouped query yields the 30-day sold quantity of every product
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(Criteria.where("type").is(TransactionType.SALE.name())
+                .and("transactionDate").gt(thirtyDaysAgo)),
+            Aggregation.group("productId").sum("quantity").as("totalSold")
+        );
+        Map<String, Integer> soldByProduct = new HashMap<>();
+        try (Stream<Document> groups = mongoTemplate.aggregateStream(aggregation, Transaction.class, Document.class)) {
+            groups.forEach(group -> {
+                String productId = group.getString("_id");
+                Object totalSold = group.get("totalSold");
+                if (productId != null && totalSold instanceof Number number) {
+                    soldByProduct.put(productId, number.intValue());
                 }
+            });
+        }
+        return soldByProduct;
+    }
+
+    /**
+     * Top products by revenue, optionally restricted to sales in [from, to).
+     * Day-aligned windows inside the in-memory engine are answered from it; otherwise
+     * grouping runs on the database and the JVM keeps only a bounded min-heap of the
+     * best {@code limit} groups. Either way only the winners are hydrated.
+     */
+    private List<TopProductDTO> computeTopProducts(int limit, LocalDateTime from, LocalDateTime to) {
+        if (limit <= 0) {
+            return new ArrayList<>();
+        }
+        try {
+            List<ProductTotals> winners;
+            if (isDayAligned(from) && (to == null || isDayAligned(to)) && analyticsEngine.covers(from.toLocalDate())) {
+                LocalDate lastDay = to != null ? to.toLocalDate().minusDays(1) : LocalDate.now();
+                winners = analyticsEngine.topProducts(limit, from.toLocalDate(), lastDay);
+            } else {
+                winners = findTopProducts(limit, from, to);
             }
-            
-            // Sort by revenue descending
-            topProducts.sort(Comparator.comparing(TopProductDTO::getRevenue).reversed());
-            
-            return topProducts.stream().limit(limit).collect(Collectors.toList());
+            return hydrateTopProducts(winners);
         } catch (Exception e) {
-            System.err.println("Error in getTopProducts: " + e.getMessage());
-            e.printStackTrace();
+            log.error("Error in getTopProducts", e);
             return new ArrayList<>();
         }
     }
 
-    public RevenueAnalyticsDTO getRevenueAnalytics() {
-        LocalDateTime now = LocalDateTime.now();
-        LocalDateTime todayStart = now.toLocalDate().atStartOfDay();
-        LocalDateTime weekStart = now.minusDays(7);
-        LocalDateTime monthStart = now.minusDays(30);
-        
-        List<Transaction> allTransactions = transactionRepository.findAll();
-        
-        // Today's metrics
-        List<Transaction> todaySales = filterSalesByDateRange(allTransactions, todayStart, now);
-        double todayRevenue = calculateRevenue(todaySales);
-        double todayProfit = calculateProfit(todaySales);
-        int todayTransactions = todaySales.size();
-        
-        // Week metrics
-        List<Transaction> weekSales = filterSalesByDateRange(allTransactions, weekStart, now);
-        double weekRevenue = calculateRevenue(weekSales);
-        double weekProfit = calculateProfit(weekSales);
-        int weekTransactions = weekSales.size();
-        
-        // Month metrics
-        List<Transaction> monthSales = filterSalesByDateRange(allTransactions, monthStart, now);
-        double monthRevenue = calculateRevenue(monthSales);
-        double monthProfit = calculateProfit(monthSales);
-        int monthTransactions = monthSales.size();
+    private List<ProductTotals> findTopProducts(int limit, LocalDateTime from, LocalDateTime to) {
+        if (columnStore.isAvailable()) {
+            return columnStore.topProducts(limit, from, to);
+        }
         
-        return new RevenueAnalyticsDTO(
-            todayRevenue, weekRevenue, monthRevenue,
-            todayProfit, weekProfit, monthProfit,
-            todayTransactions, weekTransactions, monthTransactions
+        Criteria criteria = Criteria.where("type").is(TransactionType.SALE.name())
+            .and("productId").ne(null);
+        if (from != null && to != null) {
+            criteria = criteria.and("transactionDate").gte(from).lt(to);
+        } else if (from != null) {
+            criteria = criteria.and("transactionDate").gte(from);
+        } else if (to != null) {
+            criteria = criteria.and("transactionDate").lt(to);
+        } else {
+            criteria = criteria.and("transactionDate").ne(null);
+        }
+        
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(criteria),
+            Aggregation.group("productId")
+                .sum("quantity").as("quantitySold")
+                .sum("totalAmount").as("revenue")
         );
+        
+        PriorityQueue<ProductTotals> topK = new PriorityQueue<>(limit + 1,
+            Comparator.comparingDouble(ProductTotals::revenue));
+        try (Stream<Document> groups = mongoTemplate.aggregateStream(aggregation, Transaction.class, Document.class)) {
+            groups.forEach(group -> {
+                ProductTotals candidate = new ProductTotals(
+                    group.getString("_id"),
+                    group.get("quantitySold") instanceof Number quantity ? quantity.intValue() : 0,
+                    group.get("revenue") instanceof Number revenue ? revenue.doubleValue() : 0.0
+                );
+                if (topK.size() < limit) {
+                    topK.offer(candidate);
+                } else if (candidate.revenue() > topK.peek().revenue()) {
+                    topK.poll();
+                    topK.offer(candidate);
+                }
+            });
+        }
+        
+        List<ProductTotals> winners = new ArrayList<>(topK);
+        winners.sort(Comparator.comparingDouble(ProductTotals::revenue).reversed());
+        return winners;
     }
-    
-    private List<Transaction> filterSalesByDateRange(List<Transaction> transactions, 
-                                                     LocalDateTime start, 
-                                                     LocalDateTime end) {
-        return transactions.stream()
-            .filter(t -> t.getType() == TransactionType.SALE)
-            .filter(t -> t.getTransactionDate() != null)
-            .filter(t -> t.getTransactionDate().isAfter(start) && 
-                        t.getTransactionDate().isBefore(end))
-            .collect(Collectors.toList());
+
+    private List<TopProductDTO> hydrateTopProducts(List<ProductTotals> winners) {
+        // Hydrate only the winners: one lookup for products, one for their categories
+        Map<String, Product> products = new HashMap<>();
+        productRepository.findAllById(winners.stream().map(ProductTotals::productId).toList())
+            .forEach(product -> products.put(product.getId(), product));
+        
+        Set<String> categoryIds = products.values().stream()
+            .map(Product::getCategoryId)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet());
+        Map<String, String> categoryNames = new HashMap<>();
+        categoryRepository.findAllById(categoryIds).forEach(category -> {
+            if (category.getName() != null && !category.getName().isEmpty()) {
+                categoryNames.put(category.getId(), category.getName());
+            }
+        });
+        
+        List<TopProductDTO> topProducts = new ArrayList<>();
+        for (ProductTotals winner : winners) {
+            Product product = products.get(winner.productId());
+            if (product == null) {
+                continue;
+            }
+            String categoryName = product.getCategoryId() != null
+                ? categoryNames.getOrDefault(product.getCategoryId(), "Uncategorized")
+                : "Uncategorized";
+            topProducts.add(new TopProductDTO(
+                winner.productId(),
+                product.getName(),
+                winner.quantity(),
+                winner.revenue(),
+                categoryName
+            ));
+        }
+        return topProducts;
     }
-    
-    private double calculateRevenue(List<Transaction> sales) {
-        return sales.stream()
-            .mapToDouble(Transaction::getTotalAmount)
-            .sum();
+
+    private static boolean isDayAligned(LocalDateTime dateTime) {
+        return dateTime != null && dateTime.toLocalTime().equals(LocalTime.MIDNIGHT);
+    }
+
+    private RevenueAnalyticsDTO computeRevenueAnalytics() {
+        LocalDateTime now = LocalDateTime.now();
+        if (analyticsEngine.isReady()) {
+            return analyticsEngine.revenue(now);
+        }
+        
+        LocalDateTime[] windowStarts = {
+            now.toLocalDate().atStartOfDay(), // today
+            now.minusDays(7),                 // week
+            now.minusDays(30)                 // month
+        };
+        
+        double[] revenue = new double[windowStarts.length];
+        int[] transactions = new int[windowStarts.length];
+        Map<String, ProductWindowTotals> totalsByProduct = new HashMap<>();
+        
+        // One streamed pass over the month window feeds all three windows at once
+        Query query = Query.query(Criteria.where("type").is(TransactionType.SALE)
+            .and("transactionDate").gt(windowStarts[MONTH]).lt(now));
+        query.fields().include("productId", "quantity", "unitPrice", "totalAmount", "transactionDate");
+        
+        try (Stream<Transaction> sales = mongoTemplate.stream(query, Transaction.class)) {
+            sales.forEach(sale -> {
+                ProductWindowTotals productTotals = sale.getProductId() != null
+                    ? totalsByProduct.computeIfAbsent(sale.getProductId(), id -> new ProductWindowTotals(windowStarts.length))
+                    : null;
+                for (int w = 0; w < windowStarts.length; w++) {
+                    if (!sale.getTransactionDate().isAfter(windowStarts[w])) {
+                        continue;
+                    }
+                    revenue[w] += sale.getTotalAmount() != null ? sale.getTotalAmount() : 0.0;
+                    transactions[w]++;
+                    if (productTotals != null && sale.getQuantity() != null && sale.getUnitPrice() != null) {
+                        int quantity = Math.abs(sale.getQuantity());
+                        productTotals.salesValue[w] += sale.getUnitPrice() * quantity;
+                        productTotals.quantity[w] += quantity;
+                    }
+                }
+            });
+        }
+        
+        // Purchase prices are resolved with a single batched lookup for all products sold
+        Map<String, Double> purchasePrices = findPurchasePrices(totalsByProduct.keySet());
+        double[] profit = new double[windowStarts.length];
+        for (Map.Entry<String, ProductWindowTotals> entry : totalsByProduct.entrySet()) {
+            Double purchasePrice = purchasePrices.get(entry.getKey());
+            if (purchasePrice == null) {
+                continue;
+            }
+            ProductWindowTotals productTotals = entry.getValue();
+            for (int w = 0; w < windowStarts.length; w++) {
+                profit[w] += productTotals.salesValue[w] - purchasePrice * productTotals.quantity[w];
+            }
+        }
+        
+        return new RevenueAnalyticsDTO(
+            revenue[TODAY], revenue[WEEK], revenue[MONTH],
+            profit[TODAY], profit[WEEK], profit[MONTH],
+            transactions[TODAY], transactions[WEEK], transactions[MONTH]
+        );
     }
     
-    private double calculateProfit(List<Transaction> sales) {
-        double totalProfit = 0;
-        
-        for (Transaction sale : sales) {
-            Product product = productRepository.findById(sale.getProductId()).orElse(null);
-            if (product != null) {
-                double profit = (sale.getUnitPrice() - product.getPurchasePrice()) * sale.getQuantity();
-                totalProfit += profit;
+    private Map<String, Double> findPurchasePrices(Collection<String> productIds) {
+        if (productIds.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Query query = Query.query(Criteria.where("_id").in(productIds));
+        query.fields().include("purchasePrice");
+        
+        Map<String, Double> purchasePrices = new HashMap<>();
+        for (Product product : mongoTemplate.find(query, Product.class)) {
+            if (product.getPurchasePrice() != null) {
+                purchasePrices.put(product.getId(), product.getPurchasePrice());
             }
         }
+        return purchasePrices;
+    }
+    
+    private static final class ProductWindowTotals {
+        private final double[] salesValue;
+        private final long[] quantity;
         
-        return totalProfit;
+        private ProductWindowTotals(int windows) {
+            this.salesValue = new double[windows];
+            this.quantity = new long[windows];
+        }
     }
 }
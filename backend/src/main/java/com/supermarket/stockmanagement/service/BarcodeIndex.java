@@ -0,0 +1,227 @@
+package com.supermarket.stockmanagement.service;
+
+import com.supermarket.stockmanagement.exception.DuplicateBarcodeException;
+import com.supermarket.stockmanagement.model.Product;
+import com.supermarket.stockmanagement.repository.ProductRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.PartialIndexFilter;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Barcode to product lookup for till scans, answered from an in-memory hash map. Product
+ * writes on this node keep it current and a periodic reload picks up writes made elsewhere;
+ * every entry carries the version of its last write, so a reload never replaces a product
+ * written after it began. Barcodes not in memory fall back to the barcode index in Mongo.
+ * A barcode held by more than one product is refused rather than resolved to either.
+ */
+@Slf4j
+@Component
+public class BarcodeIndex {
+    static final String UNIQUE_INDEX = "barcode_unique";
+
+    private final MongoTemplate mongoTemplate;
+    private final ProductRepository productRepository;
+    private final StockLevelCache stockLevelCache;
+
+    private final Map<String, Entry> byProduct = new ConcurrentHashMap<>();
+    // Ids are immutable sets replaced on change; more than one id only for duplicate barcodes
+    private final Map<String, Set<String>> productsByBarcode = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final Object refreshLock = new Object();
+
+    /** A product of null marks one removed on this node since the last reload. */
+    private record Entry(Product product, long version) {
+    }
+
+    public BarcodeIndex(MongoTemplate mongoTemplate, ProductRepository productRepository,
+                        StockLevelCache stockLevelCache) {
+        this.mongoTemplate = mongoTemplate;
+        this.productRepository = productRepository;
+        this.stockLevelCache = stockLevelCache;
+    }
+
+    /**
+     * The product with this barcode, with its latest known stock, or null if there is none.
+     *
+     * @throws DuplicateBarcodeException if more than one product has the barcode
+     */
+    public Product find(String barcode) {
+        String code = normalize(barcode);
+        if (code == null) {
+            return null;
+        }
+        Product snapshot = lookup(code);
+        if (snapshot == null) {
+            long readFrom = versions.get();
+            List<Product> matches = productRepository.findAllByBarcode(code);
+            if (matches.size() > 1) {
+                throw new DuplicateBarcodeException(code, matches.stream().map(Product::getId).toList());
+            }
+            if (matches.isEmpty()) {
+                return null;
+            }
+            snapshot = matches.get(0);
+            applyIfUnchangedSince(snapshot, readFrom);
+        }
+        // Callers get their own copy; stock changes far more often than the snapshot is refreshed
+        Product product = copy(snapshot);
+        Integer stock = stockLevelCache.get(product.getId());
+        if (stock != null) {
+            product.setCurrentStock(stock);
+        }
+        return product;
+    }
+
+    public synchronized void put(Product product) {
+        if (product == null || product.getId() == null) {
+            return;
+        }
+        store(product.getId(), copy(product), versions.incrementAndGet());
+    }
+
+    public synchronized void remove(String productId) {
+        // Kept as a marker until a reload that began after it, so that reload cannot bring it back
+        store(productId, null, versions.incrementAndGet());
+    }
+
+    /** Unique over non-empty barcodes only, so products without one do not collide. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndex() {
+        try {
+            mongoTemplate.indexOps(Product.class).ensureIndex(new Index()
+                .on("barcode", Sort.Direction.ASC)
+                .unique()
+                .named(UNIQUE_INDEX)
+                .partial(PartialIndexFilter.of(Criteria.where("barcode").gt(""))));
+        } catch (RuntimeException e) {
+            log.warn("Could not create unique barcode index (duplicate barcodes?): {}", e.getMessage());
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${products.barcode-index.refresh-interval-ms:300000}",
+            initialDelayString = "${products.barcode-index.refresh-interval-ms:300000}")
+    public void refresh() {
+        synchronized (refreshLock) {
+            long startedAt = versions.get();
+            Set<String> seen = new HashSet<>();
+            Query query = Query.query(Criteria.where("barcode").gt(""));
+            try (Stream<Product> products = mongoTemplate.stream(query, Product.class)) {
+                products.forEach(product -> {
+                    applyIfUnchangedSince(product, startedAt);
+                    seen.add(product.getId());
+                });
+            }
+            // Products deleted or unbarcoded elsewhere, unless this node wrote them after the reload began
+            for (String productId : List.copyOf(byProduct.keySet())) {
+                if (!seen.contains(productId)) {
+                    dropIfUnchangedSince(productId, startedAt);
+                }
+            }
+            long duplicates = productsByBarcode.values().stream().filter(ids -> ids.size() > 1).count();
+            if (duplicates > 0) {
+                log.warn("{} barcodes are assigned to more than one product; scans of them are refused", duplicates);
+            }
+        }
+    }
+
+    private Product lookup(String code) {
+        Set<String> productIds = productsByBarcode.get(code);
+        if (productIds == null) {
+            return null;
+        }
+        if (productIds.size() > 1) {
+            throw new DuplicateBarcodeException(code, productIds);
+        }
+        Entry entry = byProduct.get(productIds.iterator().next());
+        return entry != null ? entry.product() : null;
+    }
+
+    /** Stores a product read from the database unless this node wrote it after version {@code since}. */
+    private synchronized void applyIfUnchangedSince(Product product, long since) {
+        Entry entry = byProduct.get(product.getId());
+        if (entry == null || entry.version() <= since) {
+            store(product.getId(), copy(product), since);
+        }
+    }
+
+    private synchronized void dropIfUnchangedSince(String productId, long since) {
+        Entry entry = byProduct.get(productId);
+        if (entry != null && entry.version() <= since) {
+            byProduct.remove(productId);
+            unindex(barcodeOf(entry), productId);
+        }
+    }
+
+    /** Replaces a product's entry and moves it to its new barcode; callers hold this index's lock. */
+    private void store(String productId, Product product, long version) {
+        Entry previous = byProduct.put(productId, new Entry(product, version));
+        String from = previous != null ? barcodeOf(previous) : null;
+        String to = product != null ? product.getBarcode() : null;
+        if (!Objects.equals(from, to)) {
+            unindex(from, productId);
+            if (to != null) {
+                productsByBarcode.merge(to, Set.of(productId), (ids, added) -> {
+                    Set<String> merged = new HashSet<>(ids);
+                    merged.addAll(added);
+                    return Set.copyOf(merged);
+                });
+            }
+        }
+    }
+
+    private void unindex(String barcode, String productId) {
+        if (barcode != null) {
+            productsByBarcode.computeIfPresent(barcode, (code, ids) -> {
+                Set<String> rest = new HashSet<>(ids);
+                rest.remove(productId);
+                return rest.isEmpty() ? null : Set.copyOf(rest);
+            });
+        }
+    }
+
+    private static String barcodeOf(Entry entry) {
+        return entry.product() != null ? entry.product().getBarcode() : null;
+    }
+
+    /** Barcodes are matched trimmed; blank ones count as none. */
+    private static String normalize(String barcode) {
+        return barcode == null || barcode.isBlank() ? null : barcode.trim();
+    }
+
+    private static Product copy(Product product) {
+        return new Product(
+            product.getId(),
+            product.getName(),
+            product.getDescription(),
+            normalize(product.getBarcode()),
+            product.getCategoryId(),
+            product.getSupplierId(),
+            product.getPurchasePrice(),
+            product.getSellingPrice(),
+            product.getCurrentStock(),
+            product.getStockVersion(),
+            product.getMinStockLevel(),
+            product.getUnit(),
+            product.getCreatedAt(),
+            product.getUpdatedAt()
+        );
+    }
+}
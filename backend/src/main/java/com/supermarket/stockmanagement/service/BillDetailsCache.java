@@ -0,0 +1,40 @@
+package com.supermarket.stockmanagement.service;
+
+import com.supermarket.stockmanagement.dto.BillDTO;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LRU of rendered bill details. A finished bill does not change, so entries only leave
+ * when evicted for space or when a transaction of that bill is written or deleted.
+ */
+@Component
+public class BillDetailsCache {
+    private final Map<String, BillDTO> bills;
+
+    public BillDetailsCache(@Value("${bills.cache.max-entries:1000}") int maxEntries) {
+        this.bills = Collections.synchronizedMap(new LinkedHashMap<String, BillDTO>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, BillDTO> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    public BillDTO get(String billId) {
+        return bills.get(billId);
+    }
+
+    public void put(String billId, BillDTO bill) {
+        bills.put(billId, bill);
+    }
+
+    public void evict(Collection<String> billIds) {
+        billIds.forEach(bills::remove);
+    }
+}
@@ -1,86 +1,349 @@
 package com.supermarket.stockmanagement.service;
 
+import com.mongodb.client.result.UpdateResult;
 import com.supermarket.stockmanagement.dto.BillDTO;
 import com.supermarket.stockmanagement.dto.BillItemDTO;
+import com.supermarket.stockmanagement.dto.BillPageDTO;
+import com.supermarket.stockmanagement.dto.CheckoutItemDTO;
+import com.supermarket.stockmanagement.dto.CheckoutRequest;
+import com.supermarket.stockmanagement.exception.InsufficientStockException;
+import com.supermarket.stockmanagement.model.BillSummary;
 import com.supermarket.stockmanagement.model.Product;
 import com.supermarket.stockmanagement.model.Transaction;
 import com.supermarket.stockmanagement.repository.ProductRepository;
 import com.supermarket.stockmanagement.repository.TransactionRepository;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.MongoTransactionManager;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.DigestUtils;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.locks.Lock;
 import java.util.stream.Collectors;
 
 @Service
 public class BillService {
     
+    private static final int MAX_PAGE_SIZE = 100;
+    
     @Autowired
     private TransactionRepository transactionRepository;
     
     @Autowired
     private ProductRepository productRepository;
     
+    @Autowired
+    private TransactionService transactionService;
+    
+    @Autowired
+    private BillSummaryService billSummaryService;
+    
+    @Autowired
+    private BillDetailsCache billDetailsCache;
+    
+    @Autowired
+    private SequenceAllocator sequenceAllocator;
+    
+    @Autowired
+    private ReservationService reservationService;
+    
+    @Autowired
+    private StockLevelCache stockLevelCache;
+    
+    @Autowired
+    private LowStockService lowStockService;
+    
+    @Autowired
+    private ProductService productService;
+    
+    @Autowired
+    private ProjectionRebuilder projectionRebuilder;
+    
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    
+    @Autowired
+    private ObjectProvider<MongoTransactionManager> transactionManager;
+    
     public List<BillDTO> getAllBills() {
-        // Get all SALE transactions with billId
-        List<Transaction> salesWithBillId = transactionRepository.findAll()
+        // Bill headers are maintained on write, newest first
+        return billSummaryService.getAll()
             .stream()
-            .filter(t -> t.getType() == Transaction.TransactionType.SALE && t.getBillId() != null)
+            .map(summary -> new BillDTO(
+                summary.getBillId(),
+                summary.getBillDate(),
+                summary.getTotalItems(),
+                summary.getTotalAmount(),
+                null
+            ))
             .collect(Collectors.toList());
+    }
+    
+    /**
+     * Cursor-paginated bill listing. The cursor encodes the (billDate, billId) of the last
+     * bill on the previous page; it is only valid with the same sort and filters.
+     */
+    public BillPageDTO getBillPage(String cursor, int limit, String sort, LocalDateTime from, LocalDateTime to,
+                                   Double minAmount, Double maxAmount) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        boolean descending = !"asc".equalsIgnoreCase(sort);
         
-        // Group by billId
-        Map<String, List<Transaction>> billGroups = salesWithBillId.stream()
-            .collect(Collectors.groupingBy(Transaction::getBillId));
-        
-        // Convert to BillDTO list
-        List<BillDTO> bills = new ArrayList<>();
-        for (Map.Entry<String, List<Transaction>> entry : billGroups.entrySet()) {
-            BillDTO bill = new BillDTO();
-            bill.setBillId(entry.getKey());
-            
-            List<Transaction> transactions = entry.getValue();
-            if (!transactions.isEmpty()) {
-                bill.setBillDate(transactions.get(0).getTransactionDate());
-                bill.setTotalItems(transactions.stream().mapToInt(Transaction::getQuantity).sum());
-                bill.setTotalAmount(transactions.stream().mapToDouble(Transaction::getTotalAmount).sum());
-            }
-            
-            bills.add(bill);
+        // One extra row tells whether another page follows
+        List<BillSummary> rows = billSummaryService.page(decodeCursor(cursor), descending, pageSize + 1,
+            from, to, minAmount, maxAmount);
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = rows.subList(0, pageSize);
         }
         
-        // Sort by date descending
-        bills.sort((b1, b2) -> b2.getBillDate().compareTo(b1.getBillDate()));
-        
-        return bills;
+        List<BillDTO> bills = rows.stream()
+            .map(summary -> new BillDTO(
+                summary.getBillId(),
+                summary.getBillDate(),
+                summary.getTotalItems(),
+                summary.getTotalAmount(),
+                null
+            ))
+            .collect(Collectors.toList());
+        String nextCursor = hasMore ? encodeCursor(rows.get(rows.size() - 1)) : null;
+        return new BillPageDTO(bills, nextCursor, hasMore);
+    }
+    
+    public long rebuildBillSummaries() {
+        return billSummaryService.rebuild();
     }
     
     public BillDTO getBillDetails(String billId) {
-        List<Transaction> transactions = transactionRepository.findAll()
-            .stream()
-            .filter(t -> billId.equals(t.getBillId()))
-            .collect(Collectors.toList());
+        BillDTO cached = billDetailsCache.get(billId);
+        if (cached != null) {
+            return cached;
+        }
         
+        List<Transaction> transactions = transactionRepository.findByBillId(billId);
         if (transactions.isEmpty()) {
             return null;
         }
         
+        Map<String, Product> productMap = productRepository.findAllById(
+                transactions.stream().map(Transaction::getProductId).distinct().collect(Collectors.toList()))
+            .stream()
+            .collect(Collectors.toMap(Product::getId, p -> p));
+        
+        BillDTO bill = toBill(billId, transactions, productMap);
+        billDetailsCache.put(billId, bill);
+        return bill;
+    }
+    
+    /**
+     * Strong validator for a bill's representation, derived from its header so a
+     * conditional request can be answered without loading the bill's lines.
+     */
+    public String getBillETag(String billId) {
+        BillSummary summary = billSummaryService.find(billId);
+        if (summary != null) {
+            return eTag(billId, summary.getLineCount(), summary.getTotalItems(), summary.getTotalAmount());
+        }
+        BillDTO bill = getBillDetails(billId);
+        if (bill == null) {
+            return null;
+        }
+        return eTag(billId, bill.getItems().size(), bill.getTotalItems(), bill.getTotalAmount());
+    }
+    
+    /**
+     * Records a whole basket as one bill. Stock for every line is validated up front, then
+     * all decrements go out as one ordered bulk write and all transactions as one insert.
+     * With {@code mongodb.transactions.enabled} both writes share a multi-document
+     * transaction; otherwise applied decrements are compensated if a later step fails.
+     */
+    public BillDTO checkout(CheckoutRequest request) {
+        if (request == null || request.getItems() == null || request.getItems().isEmpty()) {
+            throw new IllegalArgumentException("A bill needs at least one item");
+        }
+        
+        // Lines for the same product are decremented together
+        Map<String, Integer> quantityByProduct = new LinkedHashMap<>();
+        for (CheckoutItemDTO item : request.getItems()) {
+            if (item.getProductId() == null || item.getQuantity() == null || item.getQuantity() <= 0) {
+                throw new IllegalArgumentException("Every item needs a product and a positive quantity");
+            }
+            quantityByProduct.merge(item.getProductId(), item.getQuantity(), Integer::sum);
+        }
+        
+        Map<String, Product> productMap = productRepository.findAllById(quantityByProduct.keySet())
+            .stream()
+            .collect(Collectors.toMap(Product::getId, p -> p));
+        for (Map.Entry<String, Integer> line : quantityByProduct.entrySet()) {
+            Product product = productMap.get(line.getKey());
+            if (product == null) {
+                throw new RuntimeException("Product not found");
+            }
+            // Stock held by other carts is not for sale; this cart's own holds are
+            int available = (product.getCurrentStock() != null ? product.getCurrentStock() : 0)
+                - reservationService.heldByOthers(product.getId(), request.getCartId());
+            if (available < line.getValue()) {
+                throw new InsufficientStockException(product.getId(), product.getName(), available, line.getValue());
+            }
+        }
+        
+        String billId = generateBillId();
+        LocalDateTime billDate = LocalDateTime.now();
+        List<Transaction> lines = new ArrayList<>();
+        for (CheckoutItemDTO item : request.getItems()) {
+            Product product = productMap.get(item.getProductId());
+            double unitPrice = item.getUnitPrice() != null ? item.getUnitPrice()
+                : product.getSellingPrice() != null ? product.getSellingPrice() : 0.0;
+            lines.add(new Transaction(
+                null,
+                item.getProductId(),
+                Transaction.TransactionType.SALE,
+                item.getQuantity(),
+                unitPrice,
+                item.getQuantity() * unitPrice,
+                request.getReference(),
+                billId,
+                item.getNotes() != null ? item.getNotes() : "Sale - " + product.getName(),
+                billDate
+            ));
+        }
+        
+        // Read models derived from transactions must not be rebuilt halfway through this write
+        Lock writeGate = projectionRebuilder.writeGate();
+        writeGate.lock();
+        List<Transaction> saved;
+        try {
+            try {
+                MongoTransactionManager manager = transactionManager.getIfAvailable();
+                if (manager != null) {
+                    saved = new TransactionTemplate(manager).execute(status -> writeCheckout(quantityByProduct, lines, false));
+                } else {
+                    saved = writeCheckout(quantityByProduct, lines, true);
+                }
+            } catch (StockConflictException e) {
+                // Another till sold the stock between validation and the write
+                Product product = productRepository.findById(e.productId).orElse(productMap.get(e.productId));
+                throw new InsufficientStockException(product.getId(), product.getName(),
+                    product.getCurrentStock(), quantityByProduct.get(e.productId));
+            }
+            
+            Map<String, Integer> deltaByProduct = new HashMap<>();
+            quantityByProduct.forEach((productId, quantity) -> {
+                stockLevelCache.adjust(productId, -quantity);
+                lowStockService.stockChanged(productId, stockLevelCache.get(productId));
+                deltaByProduct.put(productId, -quantity);
+            });
+            productService.publishWrittenStock(deltaByProduct, "CHECKOUT");
+            reservationService.releaseCart(request.getCartId());
+            transactionService.recordWritten(saved, productMap);
+        } finally {
+            writeGate.unlock();
+        }
+        return toBill(billId, saved, productMap);
+    }
+    
+    private List<Transaction> writeCheckout(Map<String, Integer> quantityByProduct, List<Transaction> lines,
+                                            boolean compensate) {
+        LocalDateTime now = LocalDateTime.now();
+        List<String> decremented = new ArrayList<>();
+        String shortOf = null;
+        
+        // Each decrement only matches while enough stock remains; a bill has few lines, so one update each
+        try {
+            for (Map.Entry<String, Integer> line : quantityByProduct.entrySet()) {
+                UpdateResult result = mongoTemplate.updateFirst(
+                    Query.query(Criteria.where("_id").is(line.getKey()).and("currentStock").gte(line.getValue())),
+                    new Update().inc("currentStock", -line.getValue()).inc("stockVersion", 1).set("updatedAt", now),
+                    Product.class
+                );
+                if (result.getMatchedCount() == 0) {
+                    shortOf = line.getKey();
+                    break;
+                }
+                decremented.add(line.getKey());
+            }
+        } catch (RuntimeException e) {
+            if (compensate) {
+                restoreStock(decremented, quantityByProduct);
+            }
+            throw e;
+        }
+        
+        if (shortOf != null) {
+            if (compensate) {
+                restoreStock(decremented, quantityByProduct);
+            }
+            if (!mongoTemplate.exists(Query.query(Criteria.where("_id").is(shortOf)), Product.class)) {
+                // Deleted after validation
+                throw new RuntimeException("Product not found");
+            }
+            throw new StockConflictException(shortOf);
+        }
+        
+        try {
+            return new ArrayList<>(mongoTemplate.insertAll(lines));
+        } catch (RuntimeException e) {
+            if (compensate) {
+                mongoTemplate.remove(Query.query(Criteria.where("billId").is(lines.get(0).getBillId())), Transaction.class);
+                restoreStock(decremented, quantityByProduct);
+            }
+            throw e;
+        }
+    }
+    
+    private void restoreStock(List<String> productIds, Map<String, Integer> quantityByProduct) {
+        if (productIds.isEmpty()) {
+            return;
+        }
+        BulkOperations increments = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (String productId : productIds) {
+            increments.updateOne(Query.query(Criteria.where("_id").is(productId)),
+                new Update().inc("currentStock", quantityByProduct.get(productId)).inc("stockVersion", 1));
+        }
+        increments.execute();
+    }
+    
+    private static String eTag(String billId, Integer lineCount, Integer totalItems, Double totalAmount) {
+        String version = billId + "|" + lineCount + "|" + totalItems + "|" + totalAmount;
+        return "\"" + DigestUtils.md5DigestAsHex(version.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+    
+    private static String encodeCursor(BillSummary last) {
+        String position = last.getBillDate() + "|" + last.getBillId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+    
+    private static BillSummary decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf('|');
+            BillSummary after = new BillSummary();
+            after.setBillDate(LocalDateTime.parse(position.substring(0, separator)));
+            after.setBillId(position.substring(separator + 1));
+            return after;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+    
+    private BillDTO toBill(String billId, List<Transaction> transactions, Map<String, Product> productMap) {
         BillDTO bill = new BillDTO();
         bill.setBillId(billId);
         bill.setBillDate(transactions.get(0).getTransactionDate());
         bill.setTotalItems(transactions.stream().mapToInt(Transaction::getQuantity).sum());
         bill.setTotalAmount(transactions.stream().mapToDouble(Transaction::getTotalAmount).sum());
         
-        // Get product details
-        List<String> productIds = transactions.stream()
-            .map(Transaction::getProductId)
-            .distinct()
-            .collect(Collectors.toList());
-        
-        Map<String, Product> productMap = productRepository.findAllById(productIds)
-            .stream()
-            .collect(Collectors.toMap(Product::getId, p -> p));
-        
         // Create bill items
         List<BillItemDTO> items = transactions.stream()
             .map(t -> {
@@ -108,7 +371,29 @@ public class BillService {
     public String generateBillId() {
         // Generate bill ID in format: BILL-YYYYMMDD-XXXXX
         String datePart = java.time.LocalDate.now().format(java.time.format.DateTimeFormatter.BASIC_ISO_DATE);
-        String randomPart = String.format("%05d", new Random().nextInt(100000));
-        return "BILL-" + datePart + "-" + randomPart;
+        String prefix = "BILL-" + datePart + "-";
+        // Bills issued before the sequence existed carry random numbers; start above them
+        long number = sequenceAllocator.next("bill", datePart, () -> transactionRepository
+            .findFirstByBillIdStartingWithOrderByBillIdDesc(prefix)
+            .map(line -> sequenceNumber(line.getBillId(), prefix))
+            .orElse(0L));
+        return prefix + String.format("%05d", number);
+    }
+    
+    private static long sequenceNumber(String id, String prefix) {
+        try {
+            return Long.parseLong(id.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+    
+    private static final class StockConflictException extends RuntimeException {
+        private final String productId;
+        
+        private StockConflictException(String productId) {
+            super("Stock changed during checkout");
+            this.productId = productId;
+        }
     }
 }
@@ -0,0 +1,176 @@
+package com.supermarket.stockmanagement.service;
+
+import com.supermarket.stockmanagement.model.BillSummary;
+import com.supermarket.stockmanagement.model.Transaction;
+import com.supermarket.stockmanagement.model.Transaction.TransactionType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Maintains the {@code bills} collection: one header document per bill with its date,
+ * item count, total and line count, so bill listings never scan the transactions collection.
+ */
+@Service
+@RequiredArgsConstructor
+public class BillSummaryService {
+    private final MongoTemplate mongoTemplate;
+    private final ProjectionRebuilder projectionRebuilder;
+
+    public List<BillSummary> getAll() {
+        return mongoTemplate.find(new Query().with(Sort.by(Sort.Direction.DESC, "billDate")), BillSummary.class);
+    }
+
+    public BillSummary find(String billId) {
+        return mongoTemplate.findById(billId, BillSummary.class);
+    }
+
+    /**
+     * One keyset page of bills ordered by (billDate, billId). When {@code after} is given,
+     * only bills strictly past that position in the sort order are returned, so each page
+     * costs an index seek regardless of how many bills precede it.
+     */
+    public List<BillSummary> page(BillSummary after, boolean descending, int limit,
+                                  LocalDateTime from, LocalDateTime to, Double minAmount, Double maxAmount) {
+        List<Criteria> filters = new ArrayList<>();
+        if (from != null) {
+            filters.add(Criteria.where("billDate").gte(from));
+        }
+        if (to != null) {
+            filters.add(Criteria.where("billDate").lt(to));
+        }
+        if (minAmount != null) {
+            filters.add(Criteria.where("totalAmount").gte(minAmount));
+        }
+        if (maxAmount != null) {
+            filters.add(Criteria.where("totalAmount").lte(maxAmount));
+        }
+        if (after != null) {
+            filters.add(descending
+                    ? new Criteria().orOperator(
+                            Criteria.where("billDate").lt(after.getBillDate()),
+                            Criteria.where("billDate").is(after.getBillDate()).and("_id").lt(after.getBillId()))
+                    : new Criteria().orOperator(
+                            Criteria.where("billDate").gt(after.getBillDate()),
+                            Criteria.where("billDate").is(after.getBillDate()).and("_id").gt(after.getBillId())));
+        }
+
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Query query = new Query().with(Sort.by(direction, "billDate").and(Sort.by(direction, "_id"))).limit(limit);
+        if (!filters.isEmpty()) {
+            query.addCriteria(new Criteria().andOperator(filters));
+        }
+        return mongoTemplate.find(query, BillSummary.class);
+    }
+
+    public void recordSales(Collection<Transaction> transactions) {
+        applySales(transactions, 1);
+    }
+
+    public void revertSales(Collection<Transaction> transactions) {
+        applySales(transactions, -1);
+    }
+
+    /**
+     * Recomputes every bill header from the transactions collection. Used to backfill
+     * existing history and to repair headers after manual data fixes.
+     */
+    public long rebuild() {
+        return projectionRebuilder.rebuild(BillSummary.class, this::computeBills,
+                billIds -> Criteria.where("billId").in(billIds));
+    }
+
+    /**
+     * Rebuilds on startup only when there are bills but no headers yet, or when a rebuild
+     * was requested through the collection's marker in {@code projection_rebuilds}.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        mongoTemplate.indexOps(BillSummary.class).ensureIndex(new Index()
+                .on("billDate", Sort.Direction.DESC)
+                .on("_id", Sort.Direction.DESC));
+        boolean empty = mongoTemplate.estimatedCount(BillSummary.class) == 0
+                && mongoTemplate.exists(Query.query(Criteria.where("type").is(TransactionType.SALE.name())
+                        .and("billId").ne(null)), Transaction.class);
+        if (empty || projectionRebuilder.isRequested(BillSummary.class)) {
+            try {
+                rebuild();
+            } catch (IllegalStateException e) {
+                // Another node is already rebuilding
+            }
+        }
+    }
+
+    private Stream<BillSummary> computeBills(Criteria scope) {
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(new Criteria().andOperator(
+                        Criteria.where("type").is(TransactionType.SALE.name()).and("billId").ne(null),
+                        scope)),
+                Aggregation.group("billId")
+                        .min("transactionDate").as("billDate")
+                        .sum("quantity").as("totalItems")
+                        .sum("totalAmount").as("totalAmount")
+                        .count().as("lineCount")
+        );
+        return mongoTemplate.aggregateStream(aggregation, Transaction.class, BillSummary.class);
+    }
+
+    private void applySales(Collection<Transaction> transactions, int sign) {
+        Map<String, BillSummary> deltas = new LinkedHashMap<>();
+        for (Transaction transaction : transactions) {
+            if (transaction.getType() != TransactionType.SALE || transaction.getBillId() == null) {
+                continue;
+            }
+            BillSummary delta = deltas.computeIfAbsent(transaction.getBillId(),
+                    id -> new BillSummary(id, transaction.getTransactionDate(), 0, 0.0, 0));
+            if (transaction.getTransactionDate() != null
+                    && (delta.getBillDate() == null || transaction.getTransactionDate().isBefore(delta.getBillDate()))) {
+                delta.setBillDate(transaction.getTransactionDate());
+            }
+            delta.setTotalItems(delta.getTotalItems() + sign * (transaction.getQuantity() != null ? transaction.getQuantity() : 0));
+            delta.setTotalAmount(delta.getTotalAmount() + sign * (transaction.getTotalAmount() != null ? transaction.getTotalAmount() : 0.0));
+            delta.setLineCount(delta.getLineCount() + sign);
+        }
+
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        projectionRebuilder.touched(BillSummary.class, deltas.keySet());
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, BillSummary.class);
+        for (BillSummary delta : deltas.values()) {
+            Update update = new Update()
+                    .inc("totalItems", delta.getTotalItems())
+                    .inc("totalAmount", delta.getTotalAmount())
+                    .inc("lineCount", delta.getLineCount());
+            if (sign > 0 && delta.getBillDate() != null) {
+                update.min("billDate", delta.getBillDate());
+            }
+            bulk.upsert(Query.query(Criteria.where("_id").is(delta.getBillId())), update);
+        }
+        bulk.execute();
+
+        if (sign < 0) {
+            // A bill whose last line was deleted no longer exists
+            mongoTemplate.remove(Query.query(Criteria.where("_id").in(deltas.keySet())
+                    .and("lineCount").lte(0)), BillSummary.class);
+        }
+    }
+}
@@ -0,0 +1,441 @@
+package com.supermarket.stockmanagement.service;
+
+import com.mongodb.ErrorCategory;
+import com.mongodb.bulk.BulkWriteError;
+import com.supermarket.stockmanagement.model.DemandForecast;
+import com.supermarket.stockmanagement.model.Transaction;
+import com.supermarket.stockmanagement.model.Transaction.TransactionType;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Per-product daily demand forecasts using additive Holt-Winters exponential smoothing
+ * (level, trend and a 7-day season). Each sale adds to the current day's total in O(1);
+ * a day is folded into the smoothed state when the first sale of a later day arrives.
+ *
+ * <p>As with {@link SalesSketchService}, the checkpointed state of a product covers exactly
+ * the SALE transactions whose id is below its high-water mark and is advanced by reading
+ * newer transactions from Mongo in id order, so backdated sales and sales made on other
+ * nodes are folded in once, and every node writes the same state. Sales this node recorded
+ * since the last catch-up are layered on top for reads.
+ */
+@Service
+@RequiredArgsConstructor
+public class DemandForecastService {
+    private static final double ALPHA = 0.3;  // level
+    private static final double BETA = 0.05;  // trend
+    private static final double GAMMA = 0.2;  // weekly season
+    private static final int MIN_OBSERVED_DAYS = 14;
+    private static final int MAX_GAP_DAYS = 28;
+    private static final int BOOTSTRAP_DAYS = 56;
+    private static final int HORIZON_DAYS = 365;
+    private static final int ORDER_COVER_DAYS = 30;
+    private static final int REORDER_LEAD_DAYS = 7;
+    // Transactions are read from Mongo only once their id is this old, so slow inserts and
+    // other nodes' clocks do not slip in under the high-water mark
+    private static final Duration CATCH_UP_LAG = Duration.ofMinutes(5);
+
+    private final MongoTemplate mongoTemplate;
+
+    private final Object catchUpMonitor = new Object();
+    private Map<String, DemandForecast> checkpointed = new HashMap<>();
+    private volatile Map<String, DemandForecast> states = new ConcurrentHashMap<>(); // checkpointed plus recent
+    private final Map<String, Transaction> recent = new LinkedHashMap<>(); // this node's sales above the mark
+    private String highWaterId; // where the next catch-up starts
+    private boolean unsaved;
+    private CatchUp catchUp;
+    private volatile boolean ready;
+
+    public record Forecast(Integer daysUntilStockout, LocalDate suggestedOrderDate, Integer suggestedOrderQuantity) {
+    }
+
+    public synchronized void observe(Transaction sale) {
+        if (!isSale(sale) || sale.getId() == null) {
+            return;
+        }
+        recent.put(sale.getId(), sale);
+        apply(states, sale);
+    }
+
+    /**
+     * Takes a deleted sale back out of the day still accumulating. Days already folded into
+     * the smoothed level, trend and season are not unwound; one sale there only nudges the
+     * forecast, and the next days' smoothing absorbs it. Called after the transaction is
+     * deleted, so a catch-up scanning at the same time can tell whether it counted the row.
+     */
+    public synchronized void revert(Transaction sale) {
+        if (!isSale(sale) || sale.getId() == null) {
+            return;
+        }
+        boolean inCheckpoint = false;
+        if (recent.remove(sale.getId()) != null) {
+            takeBack(states, sale);
+        } else if (covers(checkpointed.get(sale.getProductId()), sale.getId())) {
+            takeBack(checkpointed, sale);
+            takeBack(states, sale);
+            inCheckpoint = true;
+            unsaved = true;
+        }
+        if (catchUp != null) {
+            catchUp.revert(sale, inCheckpoint);
+        }
+    }
+
+    /**
+     * Projects demand forward from the smoothed state and derives the reorder suggestion for
+     * the given stock level. Returns null until the product has enough history to forecast.
+     */
+    public Forecast forecast(String productId, int currentStock) {
+        DemandForecast state = states.get(productId);
+        if (state == null) {
+            return null;
+        }
+        LocalDate today = LocalDate.now();
+        DemandForecast projection;
+        synchronized (state) {
+            projection = copy(state);
+        }
+        advanceTo(projection, today);
+        if (projection.getObservedDays() < MIN_OBSERVED_DAYS) {
+            return null;
+        }
+
+        double soldToday = today.equals(projection.getCurrentDay()) ? projection.getCurrentDayQuantity() : 0;
+        double remainingStock = currentStock;
+        double coverDemand = 0;
+        Integer daysUntilStockout = null;
+        for (int h = 0; h < HORIZON_DAYS; h++) {
+            LocalDate day = today.plusDays(h);
+            double demand = Math.max(0, projection.getLevel() + (h + 1) * projection.getTrend()
+                    + projection.getSeason()[day.getDayOfWeek().ordinal()]);
+            if (h == 0) {
+                demand = Math.max(0, demand - soldToday);
+            }
+            if (h < ORDER_COVER_DAYS) {
+                coverDemand += demand;
+            }
+            remainingStock -= demand;
+            if (daysUntilStockout == null && remainingStock < 0) {
+                daysUntilStockout = h;
+            }
+            if (daysUntilStockout != null && h >= ORDER_COVER_DAYS - 1) {
+                break;
+            }
+        }
+
+        LocalDate suggestedOrderDate = null;
+        if (daysUntilStockout != null) {
+            suggestedOrderDate = daysUntilStockout <= REORDER_LEAD_DAYS
+                    ? today
+                    : today.plusDays(daysUntilStockout - REORDER_LEAD_DAYS);
+        }
+        Integer suggestedOrderQuantity = coverDemand > 0 ? (int) Math.ceil(coverDemand) : null;
+        return new Forecast(daysUntilStockout, suggestedOrderDate, suggestedOrderQuantity);
+    }
+
+    /**
+     * Restores checkpointed state and catches up on every sale after each product's mark;
+     * products without a checkpoint are built from the last {@value #BOOTSTRAP_DAYS} days.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Date bootstrapFrom = Date.from(LocalDate.now().minusDays(BOOTSTRAP_DAYS)
+                .atStartOfDay(ZoneId.systemDefault()).toInstant());
+        String from = ObjectId.getSmallestWithDate(bootstrapFrom).toHexString();
+        Map<String, DemandForecast> restored = new HashMap<>();
+        for (DemandForecast checkpoint : mongoTemplate.findAll(DemandForecast.class)) {
+            // Checkpoints written before high-water marks were kept are rebuilt instead
+            if (checkpoint.getHighWaterId() != null) {
+                restored.put(checkpoint.getProductId(), checkpoint);
+                if (checkpoint.getHighWaterId().compareTo(from) < 0) {
+                    from = checkpoint.getHighWaterId();
+                }
+            }
+        }
+        synchronized (this) {
+            checkpointed = restored;
+            highWaterId = from;
+        }
+        catchUp();
+        ready = true;
+        save();
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.forecast.checkpoint-interval-ms:300000}")
+    public void checkpoint() {
+        if (!ready) {
+            return;
+        }
+        catchUp();
+        save();
+    }
+
+    /**
+     * Folds the SALE transactions between the high-water mark and {@link #CATCH_UP_LAG} ago
+     * into a copy of the checkpointed states, skipping rows below a product's own mark, swaps
+     * it in and layers this node's newer sales back on top. Reverts that race with the scan
+     * are applied to the copy only for rows it counted.
+     */
+    private void catchUp() {
+        synchronized (catchUpMonitor) {
+            CatchUp run;
+            Map<String, DemandForecast> next;
+            synchronized (this) {
+                run = new CatchUp(highWaterId, Instant.now().minus(CATCH_UP_LAG));
+                next = copyAll(checkpointed);
+                catchUp = run;
+            }
+
+            boolean complete = false;
+            try {
+                if (run.from.compareTo(run.to) < 0) {
+                    Query query = Query.query(Criteria.where("_id").gte(new ObjectId(run.from)).lt(new ObjectId(run.to))
+                            .and("type").is(TransactionType.SALE))
+                            .with(Sort.by(Sort.Direction.ASC, "_id"));
+                    query.fields().include("productId", "type", "quantity", "transactionDate");
+                    try (Stream<Transaction> sales = mongoTemplate.stream(query, Transaction.class)) {
+                        sales.forEach(sale -> {
+                            if (run.scanned(sale) && !covers(next.get(sale.getProductId()), sale.getId())) {
+                                apply(next, sale);
+                            }
+                        });
+                    }
+                }
+                complete = true;
+            } finally {
+                synchronized (this) {
+                    if (complete) {
+                        for (Reverted reverted : run.reverted) {
+                            if (run.counted(reverted, next.get(reverted.sale().getProductId()))) {
+                                takeBack(next, reverted.sale());
+                            }
+                        }
+                        if (run.from.compareTo(run.to) < 0) {
+                            next.values().forEach(state -> state.setHighWaterId(
+                                    covers(state, run.to) ? state.getHighWaterId() : run.to));
+                            highWaterId = run.to;
+                            unsaved = true;
+                        }
+                        checkpointed = next;
+                        recent.keySet().removeIf(id -> id.compareTo(highWaterId) < 0);
+                        Map<String, DemandForecast> serving = new ConcurrentHashMap<>(copyAll(next));
+                        recent.values().forEach(sale -> apply(serving, sale));
+                        states = serving;
+                    }
+                    catchUp = null;
+                }
+            }
+        }
+    }
+
+    private void save() {
+        List<DemandForecast> snapshots;
+        synchronized (this) {
+            if (!unsaved) {
+                return;
+            }
+            snapshots = new ArrayList<>(copyAll(checkpointed).values());
+            unsaved = false;
+        }
+        if (snapshots.isEmpty()) {
+            return;
+        }
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DemandForecast.class);
+        for (DemandForecast snapshot : snapshots) {
+            snapshot.setUpdatedAt(now);
+            // Nodes share the checkpoints; only one with an equal or higher mark may replace one
+            Query notNewer = Query.query(Criteria.where("_id").is(snapshot.getProductId()).orOperator(
+                    Criteria.where("highWaterId").lte(snapshot.getHighWaterId()),
+                    Criteria.where("highWaterId").exists(false)));
+            bulk.replaceOne(notNewer, snapshot, FindAndReplaceOptions.options().upsert());
+        }
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                if (ErrorCategory.fromErrorCode(error.getCode()) != ErrorCategory.DUPLICATE_KEY) {
+                    throw e;
+                }
+            }
+            // Another node already stored newer checkpoints for those products
+        }
+    }
+
+    private static void apply(Map<String, DemandForecast> target, Transaction sale) {
+        if (!isSale(sale)) {
+            return;
+        }
+        DemandForecast state = target.computeIfAbsent(sale.getProductId(), DemandForecastService::newState);
+        synchronized (state) {
+            LocalDate day = sale.getTransactionDate().toLocalDate();
+            if (state.getCurrentDay() != null && day.isBefore(state.getCurrentDay())) {
+                // Late or backdated sales count toward the day still open
+                day = state.getCurrentDay();
+            }
+            advanceTo(state, day);
+            state.setCurrentDayQuantity(state.getCurrentDayQuantity() + Math.abs(sale.getQuantity()));
+        }
+    }
+
+    private static void takeBack(Map<String, DemandForecast> target, Transaction sale) {
+        DemandForecast state = target.get(sale.getProductId());
+        if (state == null) {
+            return;
+        }
+        synchronized (state) {
+            if (sale.getTransactionDate().toLocalDate().equals(state.getCurrentDay())) {
+                state.setCurrentDayQuantity(Math.max(0, state.getCurrentDayQuantity() - Math.abs(sale.getQuantity())));
+            }
+        }
+    }
+
+    private static boolean isSale(Transaction sale) {
+        return sale.getType() == TransactionType.SALE && sale.getProductId() != null
+                && sale.getTransactionDate() != null && sale.getQuantity() != null;
+    }
+
+    /** Whether the state already includes the transaction with this id. */
+    private static boolean covers(DemandForecast state, String id) {
+        return state != null && state.getHighWaterId() != null && id.compareTo(state.getHighWaterId()) < 0;
+    }
+
+    /** Closes the open day and any empty days before {@code day}, then opens {@code day}. */
+    private static void advanceTo(DemandForecast state, LocalDate day) {
+        if (state.getCurrentDay() == null) {
+            state.setCurrentDay(day);
+            state.setCurrentDayQuantity(0);
+            return;
+        }
+        if (!day.isAfter(state.getCurrentDay())) {
+            return;
+        }
+        closeDay(state, state.getCurrentDay(), state.getCurrentDayQuantity());
+        long emptyDays = Math.min(ChronoUnit.DAYS.between(state.getCurrentDay(), day) - 1, MAX_GAP_DAYS);
+        LocalDate emptyDay = state.getCurrentDay().plusDays(1);
+        for (long i = 0; i < emptyDays; i++) {
+            closeDay(state, emptyDay, 0);
+            emptyDay = emptyDay.plusDays(1);
+        }
+        state.setCurrentDay(day);
+        state.setCurrentDayQuantity(0);
+    }
+
+    private static void closeDay(DemandForecast state, LocalDate day, double demand) {
+        double[] season = state.getSeason();
+        int seasonIndex = day.getDayOfWeek().ordinal();
+        if (state.getObservedDays() == 0) {
+            state.setLevel(demand);
+            state.setTrend(0.0);
+        } else {
+            double previousLevel = state.getLevel();
+            double level = ALPHA * (demand - season[seasonIndex]) + (1 - ALPHA) * (previousLevel + state.getTrend());
+            state.setTrend(BETA * (level - previousLevel) + (1 - BETA) * state.getTrend());
+            season[seasonIndex] = GAMMA * (demand - level) + (1 - GAMMA) * season[seasonIndex];
+            state.setLevel(level);
+        }
+        state.setObservedDays(state.getObservedDays() + 1);
+        state.setLastClosedDay(day);
+    }
+
+    private static DemandForecast newState(String productId) {
+        return new DemandForecast(productId, 0.0, 0.0, new double[7], 0, null, null, 0, null, null);
+    }
+
+    private static Map<String, DemandForecast> copyAll(Map<String, DemandForecast> states) {
+        Map<String, DemandForecast> copies = new HashMap<>();
+        states.forEach((productId, state) -> {
+            synchronized (state) {
+                copies.put(productId, copy(state));
+            }
+        });
+        return copies;
+    }
+
+    private static DemandForecast copy(DemandForecast state) {
+        return new DemandForecast(
+            state.getProductId(),
+            state.getLevel(),
+            state.getTrend(),
+            state.getSeason().clone(),
+            state.getObservedDays(),
+            state.getLastClosedDay(),
+            state.getCurrentDay(),
+            state.getCurrentDayQuantity(),
+            state.getHighWaterId(),
+            state.getUpdatedAt()
+        );
+    }
+
+    private record Reverted(Transaction sale, boolean inCheckpoint, boolean scannedBefore) {
+    }
+
+    /** One catch-up scan over the ids [from, to) in id order, with the reverts that raced it. */
+    private static final class CatchUp {
+        private final String from;
+        private final String to;
+        private final List<Reverted> reverted = new ArrayList<>();
+        private final Set<String> revertedIds = ConcurrentHashMap.newKeySet();
+        private final Set<String> skipped = ConcurrentHashMap.newKeySet();
+        private volatile String position;
+
+        private CatchUp(String from, Instant toTime) {
+            this.from = from;
+            this.to = ObjectId.getSmallestWithDate(Date.from(toTime)).toHexString();
+        }
+
+        /** Called by the scan for each row; false when the row is being reverted and must be left out. */
+        private boolean scanned(Transaction sale) {
+            position = sale.getId();
+            if (revertedIds.contains(sale.getId())) {
+                skipped.add(sale.getId());
+                return false;
+            }
+            return true;
+        }
+
+        private void revert(Transaction sale, boolean inCheckpoint) {
+            revertedIds.add(sale.getId());
+            String scannedUpTo = position;
+            boolean scannedBefore = scannedUpTo != null && sale.getId().compareTo(scannedUpTo) <= 0;
+            reverted.add(new Reverted(sale, inCheckpoint, scannedBefore));
+        }
+
+        /** Whether the caught-up state (before its mark moves) includes a row reverted while the scan ran. */
+        private boolean counted(Reverted reverted, DemandForecast state) {
+            String id = reverted.sale().getId();
+            if (reverted.inCheckpoint()) {
+                // Part of the checkpoint the scan started from
+                return true;
+            }
+            return id.compareTo(to) < 0 && reverted.scannedBefore() && !skipped.contains(id) && !covers(state, id);
+        }
+    }
+}
@@ -0,0 +1,281 @@
+package com.supermarket.stockmanagement.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.supermarket.stockmanagement.exception.IdempotencyConflictException;
+import com.supermarket.stockmanagement.exception.IdempotencyMismatchException;
+import com.supermarket.stockmanagement.model.IdempotencyRecord;
+import com.supermarket.stockmanagement.model.IdempotencyRecord.Status;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Makes create requests safe to retry. The first request with a given Idempotency-Key runs;
+ * concurrent duplicates wait for its result and later replays get the stored response.
+ * Recent outcomes live in a bounded in-memory map, all outcomes in a TTL-indexed collection
+ * that also coordinates duplicates arriving at different nodes. A key reused with a
+ * different request body is rejected. An attempt renews its lease while it runs, so only
+ * one whose node died mid-request is taken over, once the lease runs out.
+ */
+@Slf4j
+@Service
+public class IdempotencyService {
+    private static final long POLL_MILLIS = 50;
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+    private final Duration lease;
+    private final long waitMillis;
+    private final Map<String, Attempt> recent;
+    private final ScheduledExecutorService leaseRenewer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "idempotency-lease");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public record Outcome<T>(T response, boolean replayed) {
+    }
+
+    private record Attempt(String fingerprint, CompletableFuture<Object> result, LocalDateTime createdAt) {
+    }
+
+    public IdempotencyService(MongoTemplate mongoTemplate,
+                              ObjectMapper objectMapper,
+                              @Value("${idempotency.max-entries:10000}") int maxEntries,
+                              @Value("${idempotency.ttl-hours:24}") long ttlHours,
+                              @Value("${idempotency.lease-seconds:120}") long leaseSeconds,
+                              @Value("${idempotency.wait-seconds:30}") long waitSeconds) {
+        this.mongoTemplate = mongoTemplate;
+        this.objectMapper = objectMapper;
+        this.ttl = Duration.ofHours(ttlHours);
+        this.lease = Duration.ofSeconds(leaseSeconds);
+        this.waitMillis = waitSeconds * 1000;
+        this.recent = Collections.synchronizedMap(new LinkedHashMap<String, Attempt>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Attempt> eldest) {
+                return size() > maxEntries;
+            }
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        mongoTemplate.indexOps(IdempotencyRecord.class)
+            .ensureIndex(new Index().on("createdAt", Sort.Direction.ASC).expire(ttl));
+    }
+
+    /**
+     * Runs {@code action} once per scope and key. Without a key the action simply runs.
+     * {@code request} is the parsed body; replays must carry the same one. A failed attempt
+     * is not recorded, so the client may retry it with the same key.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Outcome<T> execute(String scope, String key, Object request, Class<T> type, Supplier<T> action) {
+        if (key == null || key.isBlank()) {
+            return new Outcome<>(action.get(), false);
+        }
+        String id = scope + ":" + key;
+        // Taken before the action runs, which may fill in fields of the request
+        String fingerprint = fingerprint(request);
+
+        Attempt created = new Attempt(fingerprint, new CompletableFuture<>(), LocalDateTime.now());
+        Attempt existing;
+        synchronized (recent) {
+            existing = recent.get(id);
+            if (existing == null || existing.createdAt().plus(ttl).isBefore(created.createdAt())) {
+                // Kept no longer than the stored record, which the TTL index removes
+                existing = null;
+                recent.put(id, created);
+            }
+        }
+        if (existing != null) {
+            checkFingerprint(existing.fingerprint(), fingerprint);
+            return new Outcome<>((T) await(existing), true);
+        }
+
+        try {
+            Outcome<T> outcome = claimAndRun(id, fingerprint, type, action);
+            created.result().complete(outcome.response());
+            return outcome;
+        } catch (RuntimeException | Error e) {
+            recent.remove(id, created);
+            created.result().completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    /** Waits for a concurrent attempt on this node, no longer than a waiter on another node would. */
+    private Object await(Attempt attempt) {
+        try {
+            return attempt.result().get(waitMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException("A request with this Idempotency-Key is still in progress");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException("Interrupted while waiting for the original request");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private <T> Outcome<T> claimAndRun(String id, String fingerprint, Class<T> type, Supplier<T> action) {
+        String owner = UUID.randomUUID().toString();
+        // Mongo keeps milliseconds; the lease is matched by value later
+        LocalDateTime startedAt = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        try {
+            mongoTemplate.insert(new IdempotencyRecord(id, Status.IN_PROGRESS, fingerprint, null, startedAt, startedAt,
+                owner, null));
+        } catch (DuplicateKeyException e) {
+            IdempotencyRecord record = awaitStored(id, fingerprint, owner);
+            if (record.getStatus() == Status.COMPLETED) {
+                return new Outcome<>(mongoTemplate.getConverter().read(type, record.getResponse()), true);
+            }
+        }
+        Query ownLease = Query.query(Criteria.where("_id").is(id).and("owner").is(owner));
+
+        T response;
+        ScheduledFuture<?> renewal = leaseRenewer.scheduleAtFixedRate(() -> renew(ownLease),
+            renewEveryMillis(), renewEveryMillis(), TimeUnit.MILLISECONDS);
+        try {
+            response = action.get();
+        } catch (RuntimeException | Error e) {
+            renewal.cancel(false);
+            mongoTemplate.remove(ownLease, IdempotencyRecord.class);
+            throw e;
+        }
+        renewal.cancel(false);
+
+        org.bson.Document stored = new org.bson.Document();
+        mongoTemplate.getConverter().write(response, stored);
+        long matched = mongoTemplate.updateFirst(
+            ownLease,
+            new Update().set("status", Status.COMPLETED).set("response", stored).set("completedAt", LocalDateTime.now()),
+            IdempotencyRecord.class
+        ).getMatchedCount();
+        if (matched == 0) {
+            log.warn("Idempotency lease on {} was lost while the request ran; it may have run twice", id);
+        }
+        return new Outcome<>(response, false);
+    }
+
+    private void renew(Query ownLease) {
+        try {
+            mongoTemplate.updateFirst(ownLease,
+                new Update().set("startedAt", LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS)),
+                IdempotencyRecord.class);
+        } catch (RuntimeException e) {
+            // The next renewal tries again; the lease only runs out after several misses
+            log.warn("Could not renew idempotency lease: {}", e.getMessage());
+        }
+    }
+
+    private long renewEveryMillis() {
+        return Math.max(1000, lease.toMillis() / 4);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        leaseRenewer.shutdownNow();
+    }
+
+    /**
+     * Waits for the node that claimed the key to store its response. Returns the completed
+     * record, or the record this caller took over (still IN_PROGRESS, with its own lease)
+     * when the original attempt has not renewed its lease in time.
+     */
+    private IdempotencyRecord awaitStored(String id, String fingerprint, String owner) {
+        long deadline = System.currentTimeMillis() + waitMillis;
+        while (true) {
+            IdempotencyRecord record = mongoTemplate.findById(id, IdempotencyRecord.class);
+            if (record == null) {
+                // The first attempt failed and released the key
+                throw new IdempotencyConflictException("The original request with this Idempotency-Key failed; retry it");
+            }
+            checkFingerprint(record.getFingerprint(), fingerprint);
+            if (record.getStatus() == Status.COMPLETED) {
+                return record;
+            }
+            IdempotencyRecord taken = takeOverIfExpired(record, owner);
+            if (taken != null) {
+                return taken;
+            }
+            if (System.currentTimeMillis() > deadline) {
+                throw new IdempotencyConflictException("A request with this Idempotency-Key is still in progress");
+            }
+            try {
+                Thread.sleep(POLL_MILLIS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IdempotencyConflictException("Interrupted while waiting for the original request");
+            }
+        }
+    }
+
+    /** Claims an IN_PROGRESS record whose lease ran out; only one waiter can win it. */
+    private IdempotencyRecord takeOverIfExpired(IdempotencyRecord record, String owner) {
+        LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+        // Records written before leases existed only have createdAt
+        LocalDateTime startedAt = record.getStartedAt() != null ? record.getStartedAt() : record.getCreatedAt();
+        if (startedAt == null || startedAt.plus(lease).isAfter(now)) {
+            return null;
+        }
+        return mongoTemplate.findAndModify(
+            Query.query(Criteria.where("_id").is(record.getId())
+                .and("status").is(Status.IN_PROGRESS)
+                .and("startedAt").is(record.getStartedAt())),
+            new Update().set("startedAt", now).set("owner", owner),
+            FindAndModifyOptions.options().returnNew(true),
+            IdempotencyRecord.class
+        );
+    }
+
+    private static void checkFingerprint(String stored, String fingerprint) {
+        if (stored != null && !stored.equals(fingerprint)) {
+            throw new IdempotencyMismatchException("This Idempotency-Key was already used with a different request");
+        }
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            return DigestUtils.md5DigestAsHex(objectMapper.writeValueAsBytes(request));
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Request body cannot be serialized", e);
+        }
+    }
+}
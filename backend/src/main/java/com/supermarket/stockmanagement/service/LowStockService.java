@@ -0,0 +1,206 @@
+package com.supermarket.stockmanagement.service;
+
+import com.supermarket.stockmanagement.dto.LowStockEventDTO;
+import com.supermarket.stockmanagement.model.Product;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * The set of products at or below their minimum stock level, kept in memory and updated
+ * on every stock write instead of scanning the catalogue per request. Products entering or
+ * leaving the set are pushed to Server-Sent Events subscribers. Each product remembers the
+ * version of its last write, so a reload never overwrites a figure written after it began.
+ */
+@Service
+public class LowStockService {
+    private final MongoTemplate mongoTemplate;
+    // Ordered with the state changes: broadcasts only queue, under this service's lock
+    private final SseBroadcaster broadcaster;
+
+    private final Map<String, Level> levels = new HashMap<>();
+    private final Set<String> lowStock = new HashSet<>();
+    private long version; // guarded by this
+
+    public LowStockService(MongoTemplate mongoTemplate,
+                           @Value("${products.low-stock.client-queue-size:1000}") int clientQueueSize,
+                           @Value("${products.low-stock.sender-threads:2}") int senderThreads,
+                           @Value("${products.low-stock.stream-timeout-ms:1800000}") long streamTimeoutMillis) {
+        this.mongoTemplate = mongoTemplate;
+        this.broadcaster = new SseBroadcaster("low-stock-events", clientQueueSize, senderThreads, streamTimeoutMillis);
+    }
+
+    public synchronized Set<String> getLowStockProductIds() {
+        return Set.copyOf(lowStock);
+    }
+
+    /** Records a product's stock and minimum level after it was created, edited or restocked. */
+    public synchronized void track(Product product) {
+        if (product == null || product.getId() == null) {
+            return;
+        }
+        Level level = levels.computeIfAbsent(product.getId(), id -> new Level());
+        level.removed = false;
+        level.name = product.getName();
+        level.minStockLevel = product.getMinStockLevel();
+        level.stock = product.getCurrentStock();
+        level.version = ++version;
+        publish(reevaluate(product.getId(), level));
+    }
+
+    /** Records a new stock figure for a product written without reading it back. */
+    public synchronized void stockChanged(String productId, Integer stock) {
+        Level level = levels.get(productId);
+        if (level == null || level.removed) {
+            return;
+        }
+        level.stock = stock;
+        level.version = ++version;
+        publish(reevaluate(productId, level));
+    }
+
+    public synchronized void untrack(String productId) {
+        Level level = levels.get(productId);
+        if (level == null) {
+            return;
+        }
+        // Kept as a marker until a reload that began after it, so that reload cannot bring it back
+        level.removed = true;
+        level.version = ++version;
+        if (lowStock.remove(productId)) {
+            publish(event("CLEARED", productId, level));
+        }
+    }
+
+    /**
+     * Reloads stock and minimum levels for the whole catalogue, at startup and periodically
+     * to pick up writes from other nodes. Products are merged one by one, skipping any
+     * written on this node since the reload began; the resulting crossings are published.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${products.low-stock.refresh-interval-ms:300000}",
+            initialDelayString = "${products.low-stock.refresh-interval-ms:300000}")
+    public void refresh() {
+        long startedAt;
+        synchronized (this) {
+            startedAt = version;
+        }
+        Query query = new Query();
+        query.fields().include("name", "currentStock", "minStockLevel");
+        Set<String> seen = new HashSet<>();
+        try (Stream<Product> products = mongoTemplate.stream(query, Product.class)) {
+            products.forEach(product -> {
+                seen.add(product.getId());
+                merge(product, startedAt);
+            });
+        }
+
+        synchronized (this) {
+            // Products gone from the database, unless this node wrote them after the reload began
+            for (String productId : List.copyOf(levels.keySet())) {
+                Level level = levels.get(productId);
+                if (!seen.contains(productId) && level.version <= startedAt) {
+                    levels.remove(productId);
+                    if (lowStock.remove(productId)) {
+                        publish(event("CLEARED", productId, level));
+                    }
+                }
+            }
+        }
+    }
+
+    private synchronized void merge(Product product, long startedAt) {
+        Level level = levels.get(product.getId());
+        if (level != null && level.version > startedAt) {
+            return;
+        }
+        if (level == null) {
+            level = new Level();
+            levels.put(product.getId(), level);
+        }
+        level.removed = false;
+        level.name = product.getName();
+        level.minStockLevel = product.getMinStockLevel();
+        level.stock = product.getCurrentStock();
+        level.version = startedAt;
+        publish(reevaluate(product.getId(), level));
+    }
+
+    /** Opens a stream that starts with the current low-stock set, then pushes every crossing. */
+    public SseEmitter subscribe() {
+        SseBroadcaster.Subscriber subscriber = broadcaster.open();
+        synchronized (this) {
+            List<LowStockEventDTO> current = new ArrayList<>();
+            for (String productId : lowStock) {
+                current.add(event("LOW", productId, levels.get(productId)));
+            }
+            subscriber.offer(() -> SseEmitter.event().name("snapshot").data(current, MediaType.APPLICATION_JSON),
+                false);
+            broadcaster.attach(subscriber);
+        }
+        subscriber.start();
+        return subscriber.emitter();
+    }
+
+    /** Keeps idle streams alive through proxies and drops subscribers that went away. */
+    @Scheduled(fixedDelayString = "${products.low-stock.heartbeat-interval-ms:30000}")
+    public void heartbeat() {
+        broadcaster.heartbeat();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        broadcaster.shutdown();
+    }
+
+    private LowStockEventDTO reevaluate(String productId, Level level) {
+        boolean low = level.stock != null && level.minStockLevel != null && level.stock <= level.minStockLevel;
+        if (low && lowStock.add(productId)) {
+            return event("ENTERED", productId, level);
+        }
+        if (!low && lowStock.remove(productId)) {
+            return event("CLEARED", productId, level);
+        }
+        return null;
+    }
+
+    /** Called with this service's lock held, so subscribers see crossings in order. */
+    private void publish(LowStockEventDTO event) {
+        if (event == null || !broadcaster.hasSubscribers()) {
+            return;
+        }
+        broadcaster.broadcast(() -> SseEmitter.event().name("low-stock").data(event, MediaType.APPLICATION_JSON));
+    }
+
+    private static LowStockEventDTO event(String type, String productId, Level level) {
+        return new LowStockEventDTO(type, productId,
+            level != null ? level.name : null,
+            level != null ? level.stock : null,
+            level != null ? level.minStockLevel : null,
+            LocalDateTime.now());
+    }
+
+    private static final class Level {
+        private long version;
+        private boolean removed;
+        private String name;
+        private Integer stock;
+        private Integer minStockLevel;
+    }
+}
@@ -1,18 +1,42 @@
 package com.supermarket.stockmanagement.service;
 
 import com.supermarket.stockmanagement.model.Product;
+import com.supermarket.stockmanagement.model.Transaction;
 import com.supermarket.stockmanagement.repository.ProductRepository;
+import com.supermarket.stockmanagement.exception.DuplicateBarcodeException;
 import com.supermarket.stockmanagement.exception.InsufficientStockException;
+import com.supermarket.stockmanagement.exception.StockChangedException;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
 
 @Service
 @RequiredArgsConstructor
 public class ProductService {
     private final ProductRepository productRepository;
+    private final MongoTemplate mongoTemplate;
+    private final StockLevelCache stockLevelCache;
+    private final LowStockService lowStockService;
+    private final StockEventService stockEventService;
+    private final BarcodeIndex barcodeIndex;
+    private final AnalyticsCache analyticsCache;
+    private final ProjectionRebuilder projectionRebuilder;
+    // TransactionService depends on this service, so it is looked up when first needed
+    private final ObjectProvider<TransactionService> transactionService;
     
     public List<Product> getAllProducts() {
         return productRepository.findAll();
@@ -31,10 +55,16 @@ public class ProductService {
     }
     
     public List<Product> getLowStockProducts() {
-        List<Product> products = productRepository.findAll();
-        return products.stream()
-                .filter(p -> p.getCurrentStock() <= p.getMinStockLevel())
-                .toList();
+        // Membership is maintained on write; only the products in the set are read
+        Set<String> productIds = lowStockService.getLowStockProductIds();
+        if (productIds.isEmpty()) {
+            return List.of();
+        }
+        return productRepository.findAllById(productIds);
+    }
+    
+    public Optional<Product> getProductByBarcode(String barcode) {
+        return Optional.ofNullable(barcodeIndex.find(barcode));
     }
     
     public Product createProduct(Product product) {
@@ -43,40 +73,206 @@ public class ProductService {
         if (product.getCurrentStock() == null) {
             product.setCurrentStock(0);
         }
-        return productRepository.save(product);
+        product.setStockVersion(0L);
+        Product saved;
+        Lock writeGate = projectionRebuilder.writeGate();
+        writeGate.lock();
+        try {
+            saved = save(product);
+            recordAdjustment(saved, saved.getCurrentStock(), "Opening stock");
+        } finally {
+            writeGate.unlock();
+        }
+        barcodeIndex.put(saved);
+        stockLevelCache.set(saved.getId(), saved.getCurrentStock());
+        lowStockService.track(saved);
+        stockEventService.publish(saved.getId(), saved.getCurrentStock(), saved.getStockVersion(),
+                saved.getCurrentStock(), "PRODUCT_CREATED");
+        analyticsCache.invalidateAll();
+        return saved;
     }
     
+    /**
+     * Replaces the product, stock included. The replacement only applies while no stock
+     * write has landed since the current stock was read, so a concurrent sale is never
+     * overwritten by the stock figure in the request; otherwise {@link StockChangedException}.
+     */
     public Product updateProduct(String id, Product product) {
         product.setId(id);
         product.setUpdatedAt(LocalDateTime.now());
-        return productRepository.save(product);
+        Query currentQuery = Query.query(Criteria.where("_id").is(id));
+        currentQuery.fields().include("currentStock", "stockVersion");
+        Product current = mongoTemplate.findOne(currentQuery, Product.class);
+        Product saved;
+        Lock writeGate = projectionRebuilder.writeGate();
+        writeGate.lock();
+        try {
+            if (current == null) {
+                product.setStockVersion(0L);
+                saved = save(product);
+            } else {
+                long readVersion = current.getStockVersion() != null ? current.getStockVersion() : 0L;
+                product.setStockVersion(readVersion + 1);
+                // Documents from before stock versions have no field, which the null criteria matches
+                Query unchanged = Query.query(Criteria.where("_id").is(id)
+                        .and("stockVersion").is(current.getStockVersion()));
+                saved = replace(unchanged, product);
+                if (saved == null) {
+                    throw new StockChangedException(
+                            "Stock of this product changed while it was being edited; reload and retry");
+                }
+            }
+            recordAdjustment(saved, stockOf(saved) - (current != null ? stockOf(current) : 0),
+                    current != null ? "Stock corrected on the product" : "Opening stock");
+        } finally {
+            writeGate.unlock();
+        }
+        barcodeIndex.put(saved);
+        stockLevelCache.set(saved.getId(), saved.getCurrentStock());
+        lowStockService.track(saved);
+        Integer previousStock = current != null ? current.getCurrentStock() : null;
+        if (!Objects.equals(previousStock, saved.getCurrentStock())) {
+            Integer delta = previousStock != null && saved.getCurrentStock() != null
+                    ? saved.getCurrentStock() - previousStock
+                    : null;
+            stockEventService.publish(saved.getId(), saved.getCurrentStock(), saved.getStockVersion(), delta,
+                "PRODUCT_UPDATED");
+        }
+        // Names, prices and stock feed the cached analytics (top products, profit, low stock)
+        analyticsCache.invalidateAll();
+        return saved;
     }
     
     public void deleteProduct(String id) {
         productRepository.deleteById(id);
+        barcodeIndex.remove(id);
+        stockLevelCache.remove(id);
+        lowStockService.untrack(id);
+        stockEventService.publish(id, null, null, null, "PRODUCT_DELETED");
+        analyticsCache.invalidateAll();
     }
     
-    public Product updateStock(String productId, Integer quantity, boolean isAddition) {
-        Optional<Product> productOpt = productRepository.findById(productId);
-        if (productOpt.isPresent()) {
-            Product product = productOpt.get();
-            if (isAddition) {
-                product.setCurrentStock(product.getCurrentStock() + quantity);
-            } else {
-                // Validate sufficient stock before subtraction
-                if (product.getCurrentStock() < quantity) {
-                    throw new InsufficientStockException(
-                        product.getId(), 
-                        product.getName(), 
-                        product.getCurrentStock(), 
-                        quantity
-                    );
-                }
-                product.setCurrentStock(product.getCurrentStock() - quantity);
+    /**
+     * Applies a stock change as one conditional {@code $inc} on the server, so concurrent
+     * sales of the same product cannot lose updates. Decrements only match while enough
+     * stock remains; only currentStock, stockVersion and updatedAt are written. {@code cause} is carried
+     * on the published stock-change event.
+     */
+    public Product updateStock(String productId, Integer quantity, boolean isAddition, String cause) {
+        Query query = Query.query(Criteria.where("_id").is(productId));
+        if (!isAddition) {
+            query.addCriteria(Criteria.where("currentStock").gte(quantity));
+        }
+        Update update = new Update()
+                .inc("currentStock", isAddition ? quantity : -quantity)
+                .inc("stockVersion", 1)
+                .set("updatedAt", LocalDateTime.now());
+        Product updated = mongoTemplate.findAndModify(query, update,
+                FindAndModifyOptions.options().returnNew(true), Product.class);
+        if (updated != null) {
+            stockLevelCache.set(updated.getId(), updated.getCurrentStock());
+            lowStockService.track(updated);
+            stockEventService.publish(updated.getId(), updated.getCurrentStock(), updated.getStockVersion(),
+                    isAddition ? quantity : -quantity, cause);
+            analyticsCache.invalidateAll();
+            return updated;
+        }
+        
+        // Nothing matched: either the product is gone or there is not enough stock
+        Product product = productRepository.findById(productId)
+                .orElseThrow(() -> new RuntimeException("Product not found"));
+        throw new InsufficientStockException(
+            product.getId(), 
+            product.getName(), 
+            product.getCurrentStock(), 
+            quantity
+        );
+    }
+    
+    /**
+     * Publishes stock changed by a bulk write, which does not return the documents it changed.
+     * Stock is read back with its version; a later write may already be included, which is
+     * harmless since clients keep the highest version they have seen.
+     */
+    public void publishWrittenStock(Map<String, Integer> deltaByProduct, String cause) {
+        if (deltaByProduct.isEmpty()) {
+            return;
+        }
+        Query query = Query.query(Criteria.where("_id").in(deltaByProduct.keySet()));
+        query.fields().include("currentStock", "stockVersion");
+        for (Product product : mongoTemplate.find(query, Product.class)) {
+            stockEventService.publish(product.getId(), product.getCurrentStock(), product.getStockVersion(),
+                    deltaByProduct.get(product.getId()), cause);
+        }
+    }
+    
+    /**
+     * Books a stock change made outside transactions (opening stock, stock edited on the
+     * product) as an ADJUSTMENT row, so the ledger keeps adding up to currentStock.
+     */
+    private void recordAdjustment(Product product, Integer delta, String notes) {
+        if (delta == null || delta == 0) {
+            return;
+        }
+        double unitPrice = product.getPurchasePrice() != null ? product.getPurchasePrice() : 0.0;
+        Transaction adjustment = mongoTemplate.insert(new Transaction(
+            null,
+            product.getId(),
+            Transaction.TransactionType.ADJUSTMENT,
+            delta,
+            unitPrice,
+            Math.abs(delta) * unitPrice,
+            null,
+            null,
+            notes,
+            LocalDateTime.now()
+        ));
+        transactionService.getObject().recordWritten(List.of(adjustment), Map.of(product.getId(), product));
+    }
+    
+    private static int stockOf(Product product) {
+        return product.getCurrentStock() != null ? product.getCurrentStock() : 0;
+    }
+    
+    /** A barcode clash for violations of the unique barcode index; any other duplicate key as it is. */
+    private RuntimeException barcodeClash(Product product, DuplicateKeyException e) {
+        if (e.getMessage() == null || !e.getMessage().contains(BarcodeIndex.UNIQUE_INDEX)) {
+            return e;
+        }
+        List<String> holders = new ArrayList<>();
+        for (Product holder : productRepository.findAllByBarcode(product.getBarcode())) {
+            if (!holder.getId().equals(product.getId())) {
+                holders.add(holder.getId());
             }
-            product.setUpdatedAt(LocalDateTime.now());
+        }
+        return new DuplicateBarcodeException(
+                "Barcode " + product.getBarcode() + " is already assigned to another product",
+                product.getBarcode(), holders);
+    }
+    
+    private Product save(Product product) {
+        normalizeBarcode(product);
+        try {
             return productRepository.save(product);
+        } catch (DuplicateKeyException e) {
+            throw barcodeClash(product, e);
+        }
+    }
+    
+    /** Replaces the document matching {@code query}; null when nothing matched. */
+    private Product replace(Query query, Product product) {
+        normalizeBarcode(product);
+        try {
+            return mongoTemplate.findAndReplace(query, product) != null ? product : null;
+        } catch (DuplicateKeyException e) {
+            throw barcodeClash(product, e);
+        }
+    }
+    
+    private static void normalizeBarcode(Product product) {
+        // Blank barcodes are stored as absent so they stay outside the unique barcode index
+        if (product.getBarcode() != null) {
+            product.setBarcode(product.getBarcode().isBlank() ? null : product.getBarcode().trim());
         }
-        throw new RuntimeException("Product not found");
     }
 }
@@ -0,0 +1,183 @@
+package com.supermarket.stockmanagement.service;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.model.RenameCollectionOptions;
+import com.supermarket.stockmanagement.model.ProjectionRebuild;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Rebuilds read models derived from the transactions collection while sales keep coming in.
+ * The new copy is built in a scratch collection and renamed over the live one, so readers
+ * never see it empty. Ids that incremental writes touch during the build are recomputed
+ * from source just before the swap, with writers held off for that short final step only.
+ * A marker document per collection keeps two nodes from rebuilding the same collection.
+ */
+@Component
+@RequiredArgsConstructor
+public class ProjectionRebuilder {
+    private static final int BATCH_SIZE = 1000;
+    private static final Duration CLAIM_LEASE = Duration.ofHours(1);
+
+    private final MongoTemplate mongoTemplate;
+
+    // Shared by writers from their transactions write to their read model update
+    private final ReadWriteLock gate = new ReentrantReadWriteLock();
+    private final Map<String, Set<String>> touchedWhileRebuilding = new ConcurrentHashMap<>();
+
+    /**
+     * Lock every writer holds from changing stock and inserting or deleting transactions until
+     * it has applied them to the read models, so a rebuild never swaps in while a write is
+     * half done and stock is never seen without its ledger rows.
+     */
+    public Lock writeGate() {
+        return gate.readLock();
+    }
+
+    /** Runs an action at a point where no writer holds the gate, e.g. to mark where a reload starts. */
+    public <T> T withoutWritesInFlight(Supplier<T> action) {
+        Lock exclusive = gate.writeLock();
+        exclusive.lock();
+        try {
+            return action.get();
+        } finally {
+            exclusive.unlock();
+        }
+    }
+
+    /** Notes read-model ids an incremental write is about to change. */
+    public void touched(Class<?> type, Collection<String> ids) {
+        Set<String> touched = touchedWhileRebuilding.get(mongoTemplate.getCollectionName(type));
+        if (touched != null) {
+            touched.addAll(ids);
+        }
+    }
+
+    /** True when an operator asked for the collection to be rebuilt at the next start. */
+    public boolean isRequested(Class<?> type) {
+        return mongoTemplate.exists(Query.query(Criteria.where("_id").is(mongoTemplate.getCollectionName(type))
+                .and("requested").is(true)), ProjectionRebuild.class);
+    }
+
+    /**
+     * Recomputes the whole collection and swaps it in.
+     *
+     * @param compute streams the read-model documents for the transactions matching a criteria
+     * @param scope   criteria selecting the transactions that contribute to the given ids
+     * @return number of documents in the rebuilt collection
+     */
+    public <T> long rebuild(Class<T> type, Function<Criteria, Stream<T>> compute,
+                            Function<Collection<String>, Criteria> scope) {
+        String live = mongoTemplate.getCollectionName(type);
+        claim(live);
+        boolean rebuilt = false;
+        try {
+            String scratch = live + "_rebuild";
+            Set<String> touched = ConcurrentHashMap.newKeySet();
+            // Writes finished before this point are all visible to the scan below
+            withoutWritesInFlight(() -> touchedWhileRebuilding.put(live, touched));
+
+            mongoTemplate.dropCollection(scratch);
+            mongoTemplate.createCollection(scratch);
+            insertAll(scratch, compute.apply(new Criteria()));
+            copyIndexes(live, scratch);
+
+            Lock exclusive = gate.writeLock();
+            exclusive.lock();
+            try {
+                if (!touched.isEmpty()) {
+                    mongoTemplate.remove(Query.query(Criteria.where("_id").in(touched)), scratch);
+                    insertAll(scratch, compute.apply(scope.apply(touched)));
+                }
+                mongoTemplate.getCollection(scratch).renameCollection(
+                        new MongoNamespace(mongoTemplate.getDb().getName(), live),
+                        new RenameCollectionOptions().dropTarget(true));
+            } finally {
+                touchedWhileRebuilding.remove(live);
+                exclusive.unlock();
+            }
+            rebuilt = true;
+            return mongoTemplate.estimatedCount(live);
+        } finally {
+            release(live, rebuilt);
+        }
+    }
+
+    private void claim(String live) {
+        LocalDateTime now = LocalDateTime.now();
+        Query unclaimed = Query.query(Criteria.where("_id").is(live).orOperator(
+                Criteria.where("running").ne(true),
+                Criteria.where("startedAt").lt(now.minus(CLAIM_LEASE))));
+        try {
+            mongoTemplate.findAndModify(unclaimed,
+                    new Update().set("running", true).set("startedAt", now),
+                    FindAndModifyOptions.options().upsert(true), ProjectionRebuild.class);
+        } catch (DuplicateKeyException e) {
+            throw new IllegalStateException("A rebuild of " + live + " is already running");
+        }
+    }
+
+    private void release(String live, boolean rebuilt) {
+        Update update = new Update().set("running", false);
+        if (rebuilt) {
+            update.set("requested", false).set("rebuiltAt", LocalDateTime.now());
+        }
+        mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is(live)), update, ProjectionRebuild.class);
+    }
+
+    private <T> void insertAll(String collection, Stream<T> documents) {
+        List<T> batch = new ArrayList<>(BATCH_SIZE);
+        try (documents) {
+            documents.forEach(document -> {
+                batch.add(document);
+                if (batch.size() == BATCH_SIZE) {
+                    mongoTemplate.insert(batch, collection);
+                    batch.clear();
+                }
+            });
+        }
+        if (!batch.isEmpty()) {
+            mongoTemplate.insert(batch, collection);
+        }
+    }
+
+    /** The rename replaces the live collection's indexes, so the scratch copy needs them too. */
+    private void copyIndexes(String live, String scratch) {
+        if (!mongoTemplate.collectionExists(live)) {
+            return;
+        }
+        List<Document> indexes = new ArrayList<>();
+        for (Document index : mongoTemplate.getCollection(live).listIndexes()) {
+            if (!"_id_".equals(index.getString("name"))) {
+                index.remove("v");
+                index.remove("ns");
+                indexes.add(index);
+            }
+        }
+        if (!indexes.isEmpty()) {
+            mongoTemplate.getDb().runCommand(new Document("createIndexes", scratch).append("indexes", indexes));
+        }
+    }
+}
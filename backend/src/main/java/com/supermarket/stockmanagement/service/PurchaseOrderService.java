@@ -29,6 +29,12 @@ public class PurchaseOrderService {
     @Autowired
     private TransactionService transactionService;
 
+    @Autowired
+    private AnalyticsCache analyticsCache;
+
+    @Autowired
+    private SequenceAllocator sequenceAllocator;
+
     public List<PurchaseOrder> getAllPurchaseOrders() {
         return purchaseOrderRepository.findAll();
     }
@@ -89,7 +95,9 @@ public class PurchaseOrderService {
             purchaseOrder.setPaymentStatus(PurchaseOrder.PaymentStatus.PENDING);
         }
         
-        return purchaseOrderRepository.save(purchaseOrder);
+        PurchaseOrder saved = purchaseOrderRepository.save(purchaseOrder);
+        analyticsCache.invalidateAll();
+        return saved;
     }
 
     public PurchaseOrder updatePurchaseOrder(String id, PurchaseOrder purchaseOrder) {
@@ -105,25 +113,35 @@ public class PurchaseOrderService {
                 createPurchaseTransaction(purchaseOrder);
             }
             
-            return purchaseOrderRepository.save(purchaseOrder);
+            PurchaseOrder saved = purchaseOrderRepository.save(purchaseOrder);
+            analyticsCache.invalidateAll();
+            return saved;
         }
         return null;
     }
 
     public void deletePurchaseOrder(String id) {
         purchaseOrderRepository.deleteById(id);
+        analyticsCache.invalidateAll();
     }
 
     private String generateOrderNumber() {
-        LocalDateTime now = LocalDateTime.now();
-        String dateStr = now.format(DateTimeFormatter.ofPattern("yyyyMMdd"));
-        
-        // Count orders for today
-        LocalDateTime startOfDay = now.toLocalDate().atStartOfDay();
-        LocalDateTime endOfDay = startOfDay.plusDays(1);
-        long count = purchaseOrderRepository.countByOrderDateBetween(startOfDay, endOfDay);
-        
-        return String.format("PO-%s-%03d", dateStr, count + 1);
+        String dateStr = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd"));
+        String prefix = "PO-" + dateStr + "-";
+        // Orders numbered from a daily count before the sequence existed; start above them
+        long number = sequenceAllocator.next("purchase-order", dateStr, () -> purchaseOrderRepository
+            .findFirstByOrderNumberStartingWithOrderByOrderNumberDesc(prefix)
+            .map(order -> sequenceNumber(order.getOrderNumber(), prefix))
+            .orElse(0L));
+        return String.format("PO-%s-%03d", dateStr, number);
+    }
+
+    private static long sequenceNumber(String orderNumber, String prefix) {
+        try {
+            return Long.parseLong(orderNumber.substring(prefix.length()));
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
     }
 
     private void createPurchaseTransaction(PurchaseOrder order) {
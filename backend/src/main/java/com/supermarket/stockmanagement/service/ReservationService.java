@@ -0,0 +1,176 @@
+package com.supermarket.stockmanagement.service;
+
+import com.supermarket.stockmanagement.dto.StockAvailabilityDTO;
+import com.supermarket.stockmanagement.dto.StockHoldDTO;
+import com.supermarket.stockmanagement.exception.InsufficientStockException;
+import com.supermarket.stockmanagement.model.Product;
+import com.supermarket.stockmanagement.repository.ProductRepository;
+import com.supermarket.stockmanagement.timer.HierarchicalTimingWheel;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Holds stock for carts that are scanned but not yet paid. Available-to-sell is
+ * currentStock minus all active holds, computed from memory. Holds expire after a TTL
+ * on a timing wheel and are released when their cart checks out.
+ */
+@Service
+public class ReservationService {
+    private static final long TICK_MILLIS = 1000;
+    private static final int WHEEL_LEVELS = 3;
+
+    private final StockLevelCache stockLevelCache;
+    private final ProductRepository productRepository;
+    private final long ttlMillis;
+    private final HierarchicalTimingWheel expiry = new HierarchicalTimingWheel(TICK_MILLIS, WHEEL_LEVELS, "stock-hold-expiry");
+
+    private final Map<String, Map<String, Hold>> holdsByCart = new HashMap<>();
+    private final Map<String, Integer> heldByProduct = new HashMap<>();
+
+    public ReservationService(StockLevelCache stockLevelCache, ProductRepository productRepository,
+                              @Value("${reservations.ttl-seconds:900}") long ttlSeconds) {
+        this.stockLevelCache = stockLevelCache;
+        this.productRepository = productRepository;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * Sets how much of a product the cart holds and restarts the hold's TTL. Fails with
+     * InsufficientStockException when other carts' holds leave too little stock.
+     */
+    public StockHoldDTO hold(String cartId, String productId, int quantity) {
+        if (productId == null || quantity < 0) {
+            throw new IllegalArgumentException("A hold needs a product and a non-negative quantity");
+        }
+        String cart = cartId != null && !cartId.isBlank() ? cartId : UUID.randomUUID().toString();
+        // Database reads happen outside the lock so one slow lookup does not stall every till
+        Integer loaded = stockLevelCache.get(productId);
+        if (loaded == null) {
+            throw new RuntimeException("Product not found");
+        }
+        Placement placement = placeHold(cart, productId, quantity, loaded);
+        if (placement.hold() == null) {
+            String productName = productRepository.findById(productId).map(Product::getName).orElse(productId);
+            throw new InsufficientStockException(productId, productName, placement.available(), quantity);
+        }
+        return placement.hold();
+    }
+
+    /** Places the hold, or leaves the cart as it was and returns no hold when stock falls short. */
+    private synchronized Placement placeHold(String cart, String productId, int quantity, int loaded) {
+        Integer cached = stockLevelCache.peek(productId);
+        int stock = cached != null ? cached : loaded;
+
+        Hold previous = removeHold(cart, productId);
+        int available = stock - heldByProduct.getOrDefault(productId, 0);
+        if (quantity > available) {
+            if (previous != null) {
+                addHold(previous);
+            }
+            return new Placement(null, Math.max(available, 0));
+        }
+        if (previous != null) {
+            previous.timeout.cancel();
+        }
+        if (quantity == 0) {
+            return new Placement(new StockHoldDTO(cart, productId, 0, null, available), available);
+        }
+
+        Hold hold = new Hold(cart, productId, quantity, LocalDateTime.now().plus(Duration.ofMillis(ttlMillis)));
+        hold.timeout = expiry.schedule(() -> expire(hold), ttlMillis);
+        addHold(hold);
+        StockHoldDTO placed = new StockHoldDTO(cart, productId, quantity, hold.expiresAt, available - quantity);
+        return new Placement(placed, available - quantity);
+    }
+
+    public synchronized void releaseCart(String cartId) {
+        if (cartId == null) {
+            return;
+        }
+        Map<String, Hold> holds = holdsByCart.get(cartId);
+        if (holds == null) {
+            return;
+        }
+        for (Hold hold : Map.copyOf(holds).values()) {
+            hold.timeout.cancel();
+            removeHold(cartId, hold.productId);
+        }
+    }
+
+    public StockAvailabilityDTO getAvailability(String productId) {
+        if (stockLevelCache.get(productId) == null) {
+            return null;
+        }
+        synchronized (this) {
+            Integer stock = stockLevelCache.peek(productId);
+            if (stock == null) {
+                return null;
+            }
+            int held = heldByProduct.getOrDefault(productId, 0);
+            return new StockAvailabilityDTO(productId, stock, held, Math.max(stock - held, 0));
+        }
+    }
+
+    /** Stock held for a product by carts other than {@code cartId}. */
+    public synchronized int heldByOthers(String productId, String cartId) {
+        int held = heldByProduct.getOrDefault(productId, 0);
+        Map<String, Hold> own = cartId != null ? holdsByCart.get(cartId) : null;
+        Hold ownHold = own != null ? own.get(productId) : null;
+        return ownHold != null ? held - ownHold.quantity : held;
+    }
+
+    private synchronized void expire(Hold hold) {
+        Map<String, Hold> holds = holdsByCart.get(hold.cartId);
+        if (holds != null && holds.get(hold.productId) == hold) {
+            removeHold(hold.cartId, hold.productId);
+        }
+    }
+
+    private void addHold(Hold hold) {
+        holdsByCart.computeIfAbsent(hold.cartId, id -> new HashMap<>()).put(hold.productId, hold);
+        heldByProduct.merge(hold.productId, hold.quantity, Integer::sum);
+    }
+
+    private Hold removeHold(String cartId, String productId) {
+        Map<String, Hold> holds = holdsByCart.get(cartId);
+        Hold hold = holds != null ? holds.remove(productId) : null;
+        if (hold == null) {
+            return null;
+        }
+        if (holds.isEmpty()) {
+            holdsByCart.remove(cartId);
+        }
+        heldByProduct.computeIfPresent(productId, (id, held) -> held - hold.quantity > 0 ? held - hold.quantity : null);
+        return hold;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        expiry.close();
+    }
+
+    private record Placement(StockHoldDTO hold, int available) {
+    }
+
+    private static final class Hold {
+        private final String cartId;
+        private final String productId;
+        private final int quantity;
+        private final LocalDateTime expiresAt;
+        private HierarchicalTimingWheel.Timeout timeout;
+
+        private Hold(String cartId, String productId, int quantity, LocalDateTime expiresAt) {
+            this.cartId = cartId;
+            this.productId = productId;
+            this.quantity = quantity;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
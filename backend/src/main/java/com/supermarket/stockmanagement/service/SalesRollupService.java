@@ -0,0 +1,159 @@
+package com.supermarket.stockmanagement.service;
+
+import com.supermarket.stockmanagement.model.DailySalesRollup;
+import com.supermarket.stockmanagement.model.Transaction;
+import com.supermarket.stockmanagement.model.Transaction.TransactionType;
+import lombok.RequiredArgsConstructor;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.ArithmeticOperators;
+import org.springframework.data.mongodb.core.aggregation.DateOperators;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Maintains one small document per calendar day with the count, revenue and quantity
+ * of SALE transactions, so sales-frequency reads never touch the transactions collection.
+ */
+@Service
+@RequiredArgsConstructor
+public class SalesRollupService {
+    private final MongoTemplate mongoTemplate;
+    private final ProjectionRebuilder projectionRebuilder;
+
+    public List<DailySalesRollup> getRollups(LocalDate from, LocalDate to) {
+        Query query = Query.query(Criteria.where("_id").gte(from.toString()).lte(to.toString()))
+                .with(Sort.by(Sort.Direction.ASC, "_id"));
+        return mongoTemplate.find(query, DailySalesRollup.class);
+    }
+
+    public void recordSales(Collection<Transaction> transactions) {
+        applySales(transactions, 1);
+    }
+
+    public void revertSales(Collection<Transaction> transactions) {
+        applySales(transactions, -1);
+    }
+
+    /**
+     * Recomputes every rollup from the transactions collection. Used to backfill
+     * existing history and to repair rollups after manual data fixes.
+     */
+    public long rebuild() {
+        return projectionRebuilder.rebuild(DailySalesRollup.class, this::computeRollups, SalesRollupService::daysScope);
+    }
+
+    /**
+     * Rebuilds on startup only when there is history but no rollups yet, or when a rebuild
+     * was requested through the collection's marker in {@code projection_rebuilds}.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void backfillIfEmpty() {
+        boolean empty = mongoTemplate.estimatedCount(DailySalesRollup.class) == 0
+                && mongoTemplate.exists(Query.query(Criteria.where("type").is(TransactionType.SALE.name())), Transaction.class);
+        if (empty || projectionRebuilder.isRequested(DailySalesRollup.class)) {
+            try {
+                rebuild();
+            } catch (IllegalStateException e) {
+                // Another node is already rebuilding
+            }
+        }
+    }
+
+    private Stream<DailySalesRollup> computeRollups(Criteria scope) {
+        String zone = ZoneId.systemDefault().getId();
+        Aggregation aggregation = Aggregation.newAggregation(
+                Aggregation.match(new Criteria().andOperator(
+                        Criteria.where("type").is(TransactionType.SALE.name()).and("transactionDate").ne(null),
+                        scope)),
+                Aggregation.project("totalAmount")
+                        .and(DateOperators.dateOf("transactionDate")
+                                .withTimezone(DateOperators.Timezone.valueOf(zone))
+                                .toString("%Y-%m-%d")).as("day")
+                        .and(ArithmeticOperators.valueOf("quantity").abs()).as("quantity"),
+                Aggregation.group("day")
+                        .count().as("count")
+                        .sum("totalAmount").as("revenue")
+                        .sum("quantity").as("quantity")
+        );
+
+        return mongoTemplate.aggregateStream(aggregation, Transaction.class, Document.class)
+                .map(doc -> {
+                    String day = doc.getString("_id");
+                    return new DailySalesRollup(
+                        day,
+                        LocalDate.parse(day),
+                        toLong(doc.get("count")),
+                        toDouble(doc.get("revenue")),
+                        toLong(doc.get("quantity"))
+                    );
+                });
+    }
+
+    /** Transactions falling on any of the given days. */
+    private static Criteria daysScope(Collection<String> days) {
+        List<Criteria> ranges = new ArrayList<>();
+        for (String day : days) {
+            LocalDate date = LocalDate.parse(day);
+            ranges.add(Criteria.where("transactionDate").gte(date.atStartOfDay()).lt(date.plusDays(1).atStartOfDay()));
+        }
+        return new Criteria().orOperator(ranges);
+    }
+
+    private void applySales(Collection<Transaction> transactions, int sign) {
+        Map<String, DailySalesRollup> deltas = new TreeMap<>();
+        for (Transaction transaction : transactions) {
+            if (transaction.getType() != TransactionType.SALE || transaction.getTransactionDate() == null) {
+                continue;
+            }
+            LocalDate day = transaction.getTransactionDate().toLocalDate();
+            DailySalesRollup delta = deltas.computeIfAbsent(day.toString(),
+                    id -> new DailySalesRollup(id, day, 0L, 0.0, 0L));
+            delta.setCount(delta.getCount() + sign);
+            delta.setRevenue(delta.getRevenue() + sign * toDouble(transaction.getTotalAmount()));
+            delta.setQuantity(delta.getQuantity() + sign * Math.abs(toLong(transaction.getQuantity())));
+        }
+
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        projectionRebuilder.touched(DailySalesRollup.class, deltas.keySet());
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, DailySalesRollup.class);
+        for (DailySalesRollup delta : deltas.values()) {
+            bulk.upsert(
+                Query.query(Criteria.where("_id").is(delta.getId())),
+                new Update()
+                    .setOnInsert("date", delta.getDate())
+                    .inc("count", delta.getCount())
+                    .inc("revenue", delta.getRevenue())
+                    .inc("quantity", delta.getQuantity())
+            );
+        }
+        bulk.execute();
+    }
+
+    private static long toLong(Object value) {
+        return value instanceof Number number ? number.longValue() : 0L;
+    }
+
+    private static double toDouble(Object value) {
+        return value instanceof Number number ? number.doubleValue() : 0.0;
+    }
+}
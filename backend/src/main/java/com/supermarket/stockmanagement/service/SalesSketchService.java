@@ -0,0 +1,426 @@
+package com.supermarket.stockmanagement.service;
+
+import com.supermarket.stockmanagement.dto.ApproxSalesSummaryDTO;
+import com.supermarket.stockmanagement.model.SalesSketchSnapshot;
+import com.supermarket.stockmanagement.model.Transaction;
+import com.supermarket.stockmanagement.model.Transaction.TransactionType;
+import com.supermarket.stockmanagement.service.AnalyticsEngine.ProductTotals;
+import com.supermarket.stockmanagement.sketch.CountMinSketch;
+import com.supermarket.stockmanagement.sketch.HeavyHitters;
+import com.supermarket.stockmanagement.sketch.HyperLogLog;
+import com.supermarket.stockmanagement.sketch.TDigest;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Constant-size summaries of all-time sales for approximate analytics: a Count-Min sketch
+ * with heavy hitters for product revenue, HyperLogLog for distinct bills and products,
+ * and a t-digest of basket values.
+ *
+ * <p>The checkpointed sketches cover exactly the SALE transactions whose id is below a
+ * high-water mark and are advanced by reading newer transactions from Mongo, so they hold
+ * sales made on every node and a restart resumes where the checkpoint stopped. Sales this
+ * node recorded since the last catch-up are layered on top for reads.
+ */
+@Service
+@RequiredArgsConstructor
+public class SalesSketchService {
+    private static final String SNAPSHOT_ID = "sales";
+    private static final double COUNT_MIN_EPSILON = 0.0005;
+    private static final double COUNT_MIN_DELTA = 0.001;
+    private static final int HEAVY_HITTER_CAPACITY = 200;
+    private static final int HLL_PRECISION = 14;
+    private static final double DIGEST_COMPRESSION = 100;
+    private static final Duration BASKET_IDLE = Duration.ofMinutes(2);
+    // Transactions are read from Mongo only once their id is this old, so slow inserts and
+    // other nodes' clocks do not slip in under the high-water mark
+    private static final Duration CATCH_UP_LAG = Duration.ofMinutes(5);
+
+    private final MongoTemplate mongoTemplate;
+
+    private final Object catchUpMonitor = new Object();
+    private Sketches checkpointed = new Sketches();
+    private Sketches sketches = new Sketches(); // checkpointed plus recent, serves reads
+    private final Map<String, Transaction> recent = new LinkedHashMap<>(); // this node's sales above the mark
+    private CatchUp catchUp;
+    private volatile boolean ready;
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public synchronized void record(Transaction sale) {
+        if (sale.getType() != TransactionType.SALE || sale.getId() == null) {
+            return;
+        }
+        recent.put(sale.getId(), sale);
+        sketches.add(sale, 1);
+    }
+
+    /**
+     * Takes a deleted sale back out. Count-Min counts, the sale count and an open basket are
+     * decremented; HyperLogLog registers and baskets already folded into the t-digest cannot
+     * forget a value. Called before the transaction is deleted, so a catch-up scanning at the
+     * same time can tell whether it already counted the row.
+     */
+    public synchronized void revert(Transaction sale) {
+        if (sale.getType() != TransactionType.SALE || sale.getId() == null) {
+            return;
+        }
+        if (catchUp != null) {
+            catchUp.revert(sale);
+        }
+        if (recent.remove(sale.getId()) != null) {
+            sketches.add(sale, -1);
+        } else if (below(sale.getId(), checkpointed.highWaterId)) {
+            checkpointed.add(sale, -1);
+            sketches.add(sale, -1);
+        }
+    }
+
+    public synchronized List<ProductTotals> topProducts(int limit) {
+        List<ProductTotals> leaders = new ArrayList<>();
+        for (Map.Entry<String, Long> leader : sketches.revenueByProduct.top(limit)) {
+            leaders.add(new ProductTotals(
+                leader.getKey(),
+                (int) sketches.quantityByProduct.estimate(leader.getKey()),
+                leader.getValue() / 100.0
+            ));
+        }
+        return leaders;
+    }
+
+    /** Upper bound on how far any approximate product revenue may overstate the true value. */
+    public synchronized double getRevenueErrorBound() {
+        return sketches.revenueByProduct.getSketch().getErrorBound() / 100.0;
+    }
+
+    public synchronized ApproxSalesSummaryDTO getSummary() {
+        TDigest baskets = sketches.basketValues;
+        boolean measured = baskets.size() > 0;
+        return new ApproxSalesSummaryDTO(
+            sketches.salesRecorded,
+            sketches.distinctBills.estimate(),
+            sketches.distinctProducts.estimate(),
+            baskets.size(),
+            measured ? baskets.quantile(0.5) : null,
+            measured ? baskets.quantile(0.9) : null,
+            measured ? baskets.quantile(0.99) : null,
+            sketches.distinctBills.getRelativeError(),
+            sketches.revenueByProduct.getSketch().getErrorBound() / 100.0,
+            sketches.quantityByProduct.getErrorBound(),
+            sketches.quantityByProduct.getConfidence()
+        );
+    }
+
+    /**
+     * Restores the last checkpoint and catches up on every sale after its high-water mark,
+     * or on first run builds the sketches from the full sales history once.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        SalesSketchSnapshot snapshot = mongoTemplate.findById(SNAPSHOT_ID, SalesSketchSnapshot.class);
+        if (snapshot != null && snapshot.getHighWaterId() != null) {
+            synchronized (this) {
+                checkpointed = Sketches.restore(snapshot);
+            }
+        }
+        catchUp();
+        ready = true;
+        save();
+    }
+
+    @Scheduled(fixedDelayString = "${analytics.sketch.persist-interval-ms:60000}")
+    public void persist() {
+        if (!ready) {
+            return;
+        }
+        catchUp();
+        save();
+    }
+
+    /**
+     * Folds the SALE transactions between the high-water mark and {@link #CATCH_UP_LAG} ago
+     * into a copy of the checkpointed sketches, swaps it in and layers this node's newer
+     * sales back on top. Reverts that race with the scan are applied to the copy only for
+     * rows the scan counted.
+     */
+    private void catchUp() {
+        synchronized (catchUpMonitor) {
+            CatchUp run;
+            Sketches next;
+            synchronized (this) {
+                run = new CatchUp(checkpointed.highWaterId, Instant.now().minus(CATCH_UP_LAG));
+                next = checkpointed.copy();
+                catchUp = run;
+            }
+
+            boolean complete = false;
+            try {
+                if (run.from == null || run.from.compareTo(run.to) < 0) {
+                    Criteria ids = Criteria.where("_id").lt(new ObjectId(run.to));
+                    if (run.from != null) {
+                        ids.gte(new ObjectId(run.from));
+                    }
+                    Query query = Query.query(ids.and("type").is(TransactionType.SALE))
+                        .with(Sort.by(Sort.Direction.ASC, "_id"));
+                    query.fields().include("productId", "type", "quantity", "totalAmount", "billId", "transactionDate");
+                    try (Stream<Transaction> sales = mongoTemplate.stream(query, Transaction.class)) {
+                        sales.forEach(sale -> {
+                            if (run.scanned(sale)) {
+                                next.add(sale, 1);
+                            }
+                        });
+                    }
+                    next.highWaterId = run.to;
+                }
+                complete = true;
+            } finally {
+                synchronized (this) {
+                    if (complete) {
+                        for (Reverted reverted : run.reverted) {
+                            if (run.counted(reverted)) {
+                                next.add(reverted.sale(), -1);
+                            }
+                        }
+                        next.foldBasketsIdleSince(LocalDateTime.ofInstant(run.toTime, ZoneId.systemDefault()).minus(BASKET_IDLE));
+                        checkpointed = next;
+                        recent.keySet().removeIf(id -> below(id, next.highWaterId));
+                        sketches = next.copy();
+                        recent.values().forEach(sale -> sketches.add(sale, 1));
+                    }
+                    catchUp = null;
+                }
+            }
+        }
+    }
+
+    private void save() {
+        SalesSketchSnapshot snapshot;
+        synchronized (this) {
+            if (checkpointed.highWaterId == null) {
+                return;
+            }
+            snapshot = checkpointed.toSnapshot();
+        }
+        // Nodes share one checkpoint; only one with an equal or higher mark may replace it
+        Query notNewer = Query.query(Criteria.where("_id").is(SNAPSHOT_ID).orOperator(
+            Criteria.where("highWaterId").lte(snapshot.getHighWaterId()),
+            Criteria.where("highWaterId").exists(false)));
+        try {
+            mongoTemplate.findAndReplace(notNewer, snapshot, FindAndReplaceOptions.options().upsert());
+        } catch (DuplicateKeyException e) {
+            // Another node already stored a newer checkpoint
+        }
+    }
+
+    private static boolean below(String id, String mark) {
+        return mark != null && id.compareTo(mark) < 0;
+    }
+
+    private static double amount(Transaction sale) {
+        return sale.getTotalAmount() != null ? sale.getTotalAmount() : 0.0;
+    }
+
+    private record Reverted(Transaction sale, boolean scannedBefore) {
+    }
+
+    /** One catch-up scan over the ids [from, to) in id order, with the reverts that raced it. */
+    private static final class CatchUp {
+        private final String from; // null on the first run
+        private final String to;
+        private final Instant toTime;
+        private final List<Reverted> reverted = new ArrayList<>();
+        private final Set<String> revertedIds = ConcurrentHashMap.newKeySet();
+        private final Set<String> skipped = ConcurrentHashMap.newKeySet();
+        private volatile String position;
+
+        private CatchUp(String from, Instant toTime) {
+            this.from = from;
+            this.toTime = toTime;
+            this.to = ObjectId.getSmallestWithDate(Date.from(toTime)).toHexString();
+        }
+
+        /** Called by the scan for each row; false when the row is being reverted and must be left out. */
+        private boolean scanned(Transaction sale) {
+            position = sale.getId();
+            if (revertedIds.contains(sale.getId())) {
+                skipped.add(sale.getId());
+                return false;
+            }
+            return true;
+        }
+
+        private void revert(Transaction sale) {
+            revertedIds.add(sale.getId());
+            String scannedUpTo = position;
+            reverted.add(new Reverted(sale, scannedUpTo != null && sale.getId().compareTo(scannedUpTo) <= 0));
+        }
+
+        /** Whether the caught-up sketches include a row reverted while the scan ran. */
+        private boolean counted(Reverted reverted) {
+            String id = reverted.sale().getId();
+            if (below(id, from)) {
+                // Part of the checkpoint the scan started from
+                return true;
+            }
+            return below(id, to) && reverted.scannedBefore() && !skipped.contains(id);
+        }
+    }
+
+    private static final class OpenBasket {
+        private double total;
+        private LocalDateTime lastLineAt;
+
+        private OpenBasket(double total, LocalDateTime lastLineAt) {
+            this.total = total;
+            this.lastLineAt = lastLineAt;
+        }
+    }
+
+    private static final class Sketches {
+        private final HeavyHitters revenueByProduct;
+        private final CountMinSketch quantityByProduct;
+        private final HyperLogLog distinctBills;
+        private final HyperLogLog distinctProducts;
+        private final TDigest basketValues;
+        // A bill's lines arrive separately; its basket value is folded in once it goes idle
+        private final Map<String, OpenBasket> openBaskets = new HashMap<>();
+        private long salesRecorded;
+        private String highWaterId;
+
+        private Sketches() {
+            this(
+                new HeavyHitters(new CountMinSketch(COUNT_MIN_EPSILON, COUNT_MIN_DELTA), HEAVY_HITTER_CAPACITY),
+                new CountMinSketch(COUNT_MIN_EPSILON, COUNT_MIN_DELTA),
+                new HyperLogLog(HLL_PRECISION),
+                new HyperLogLog(HLL_PRECISION),
+                new TDigest(DIGEST_COMPRESSION)
+            );
+        }
+
+        private Sketches(HeavyHitters revenueByProduct, CountMinSketch quantityByProduct,
+                         HyperLogLog distinctBills, HyperLogLog distinctProducts, TDigest basketValues) {
+            this.revenueByProduct = revenueByProduct;
+            this.quantityByProduct = quantityByProduct;
+            this.distinctBills = distinctBills;
+            this.distinctProducts = distinctProducts;
+            this.basketValues = basketValues;
+        }
+
+        /** Adds ({@code sign} 1) or takes back ({@code sign} -1) one sale. */
+        private void add(Transaction sale, int sign) {
+            if (sale.getType() != TransactionType.SALE || sale.getProductId() == null) {
+                return;
+            }
+            revenueByProduct.add(sale.getProductId(), sign * Math.round(amount(sale) * 100));
+            quantityByProduct.add(sale.getProductId(), sign * (sale.getQuantity() != null ? Math.abs(sale.getQuantity()) : 0));
+            if (sign > 0) {
+                distinctProducts.add(sale.getProductId());
+            }
+            if (sale.getBillId() != null) {
+                OpenBasket basket = openBaskets.get(sale.getBillId());
+                if (sign > 0) {
+                    distinctBills.add(sale.getBillId());
+                    if (basket == null) {
+                        openBaskets.put(sale.getBillId(), new OpenBasket(amount(sale), sale.getTransactionDate()));
+                    } else {
+                        basket.total += amount(sale);
+                        if (sale.getTransactionDate() != null
+                                && (basket.lastLineAt == null || sale.getTransactionDate().isAfter(basket.lastLineAt))) {
+                            basket.lastLineAt = sale.getTransactionDate();
+                        }
+                    }
+                } else if (basket != null) {
+                    basket.total -= amount(sale);
+                }
+            } else if (sign > 0) {
+                // A sale without a bill is a single-line basket of its own
+                distinctBills.add("transaction:" + sale.getId());
+                basketValues.add(amount(sale));
+            }
+            salesRecorded += sign;
+        }
+
+        private void foldBasketsIdleSince(LocalDateTime idleSince) {
+            Iterator<OpenBasket> baskets = openBaskets.values().iterator();
+            while (baskets.hasNext()) {
+                OpenBasket basket = baskets.next();
+                if (basket.lastLineAt == null || basket.lastLineAt.isBefore(idleSince)) {
+                    if (basket.total > 0) {
+                        basketValues.add(basket.total);
+                    }
+                    baskets.remove();
+                }
+            }
+        }
+
+        private Sketches copy() {
+            return restore(toSnapshot());
+        }
+
+        private SalesSketchSnapshot toSnapshot() {
+            List<SalesSketchSnapshot.OpenBasket> open = new ArrayList<>();
+            openBaskets.forEach((billId, basket) ->
+                open.add(new SalesSketchSnapshot.OpenBasket(billId, basket.total, basket.lastLineAt)));
+            return new SalesSketchSnapshot(
+                SNAPSHOT_ID,
+                revenueByProduct.getSketch().toBytes(),
+                revenueByProduct.getCandidates(),
+                quantityByProduct.toBytes(),
+                distinctBills.toBytes(),
+                distinctProducts.toBytes(),
+                basketValues.toBytes(),
+                open,
+                salesRecorded,
+                highWaterId,
+                LocalDateTime.now()
+            );
+        }
+
+        private static Sketches restore(SalesSketchSnapshot snapshot) {
+            Sketches restored = new Sketches(
+                HeavyHitters.restore(CountMinSketch.fromBytes(snapshot.getRevenueByProduct()),
+                    HEAVY_HITTER_CAPACITY, snapshot.getRevenueLeaders()),
+                CountMinSketch.fromBytes(snapshot.getQuantityByProduct()),
+                HyperLogLog.fromBytes(snapshot.getDistinctBills()),
+                HyperLogLog.fromBytes(snapshot.getDistinctProducts()),
+                TDigest.fromBytes(snapshot.getBasketValues())
+            );
+            if (snapshot.getOpenBaskets() != null) {
+                for (SalesSketchSnapshot.OpenBasket basket : snapshot.getOpenBaskets()) {
+                    restored.openBaskets.put(basket.getBillId(), new OpenBasket(
+                        basket.getTotal() != null ? basket.getTotal() : 0.0, basket.getLastLineAt()));
+                }
+            }
+            restored.salesRecorded = snapshot.getSalesRecorded() != null ? snapshot.getSalesRecorded() : 0L;
+            restored.highWaterId = snapshot.getHighWaterId();
+            return restored;
+        }
+    }
+}
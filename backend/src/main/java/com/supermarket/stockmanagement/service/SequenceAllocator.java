@@ -0,0 +1,123 @@
+package com.supermarket.stockmanagement.service;
+
+import com.supermarket.stockmanagement.model.SequenceCounter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Hands out unique, increasing numbers per named sequence. Each node reserves a block of
+ * numbers with one atomic {@code $inc} on the sequence's counter document and serves the
+ * block from memory, so numbers never collide across nodes and the database is hit once
+ * per block. Numbers left in a block when a node stops are skipped, not reused.
+ */
+@Component
+public class SequenceAllocator {
+    private final MongoTemplate mongoTemplate;
+    private final int blockSize;
+    private final Map<String, Sequence> sequences = new ConcurrentHashMap<>(); // by family
+
+    public SequenceAllocator(MongoTemplate mongoTemplate,
+                             @Value("${sequences.block-size:100}") int blockSize) {
+        this.mongoTemplate = mongoTemplate;
+        this.blockSize = blockSize;
+    }
+
+    public long next(String sequence) {
+        return next(sequence, () -> 0L);
+    }
+
+    /**
+     * Next number of the sequence, never at or below {@code floor}. The floor is read once per
+     * sequence per node, before its first block is reserved, and raises the shared counter with
+     * {@code $max}; it lets a sequence start above numbers that were issued without it.
+     */
+    public long next(String sequence, LongSupplier floor) {
+        return next(sequence, null, floor);
+    }
+
+    /**
+     * Next number of {@code family}'s sequence for {@code period} (say, a day), counted apart
+     * from every other period. A node keeps only the current period of each family: the first
+     * call for a new period drops the old one, and a late caller of an old period just starts a
+     * fresh block of it.
+     */
+    public long next(String family, String period, LongSupplier floor) {
+        String name = period == null ? family : family + "-" + period;
+        Sequence state = sequences.get(family);
+        if (state == null || !state.name.equals(name)) {
+            state = sequences.compute(family,
+                (key, current) -> current != null && current.name.equals(name) ? current : new Sequence(name));
+        }
+        while (true) {
+            Block block = state.block;
+            if (block != null) {
+                long value = block.next.getAndIncrement();
+                if (value < block.end) {
+                    return value;
+                }
+            }
+            // Only callers of this sequence wait while its next block is reserved
+            synchronized (state) {
+                Block current = state.block;
+                if (current == null || current.next.get() >= current.end) {
+                    if (!state.seeded) {
+                        raiseTo(name, floor.getAsLong());
+                        state.seeded = true;
+                    }
+                    state.block = reserve(name);
+                }
+            }
+        }
+    }
+
+    private void raiseTo(String sequence, long floor) {
+        if (floor > 0) {
+            mongoTemplate.upsert(
+                Query.query(Criteria.where("_id").is(sequence)),
+                new Update().max("value", floor),
+                SequenceCounter.class
+            );
+        }
+    }
+
+    private Block reserve(String sequence) {
+        SequenceCounter counter = mongoTemplate.findAndModify(
+            Query.query(Criteria.where("_id").is(sequence)),
+            new Update().inc("value", blockSize),
+            FindAndModifyOptions.options().upsert(true).returnNew(true),
+            SequenceCounter.class
+        );
+        long end = counter.getValue() + 1;
+        return new Block(end - blockSize, end);
+    }
+
+    private static final class Sequence {
+        private final String name;
+        private volatile Block block;
+        private boolean seeded; // guarded by this
+
+        private Sequence(String name) {
+            this.name = name;
+        }
+    }
+
+    private static final class Block {
+        private final AtomicLong next;
+        private final long end; // exclusive
+
+        private Block(long start, long end) {
+            this.next = new AtomicLong(start);
+            this.end = end;
+        }
+    }
+}
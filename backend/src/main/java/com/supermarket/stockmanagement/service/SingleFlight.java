@@ -0,0 +1,60 @@
+package com.supermarket.stockmanagement.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls with the same key: the first caller runs the computation
+ * and every caller that arrives while it is running waits for and shares that result.
+ * Nothing is retained once the call completes, so results are never stale.
+ */
+@Component
+public class SingleFlight {
+    private final Map<String, CompletableFuture<Object>> calls = new ConcurrentHashMap<>();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder shared = new LongAdder();
+
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String key, Supplier<T> computation) {
+        CompletableFuture<Object> created = new CompletableFuture<>();
+        CompletableFuture<Object> existing = calls.putIfAbsent(key, created);
+        if (existing != null) {
+            shared.increment();
+            try {
+                return (T) existing.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        executions.increment();
+        try {
+            T value = computation.get();
+            created.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            created.completeExceptionally(e);
+            throw e;
+        } finally {
+            calls.remove(key, created);
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("inFlight", calls.size());
+        stats.put("executions", executions.sum());
+        stats.put("sharedResults", shared.sum());
+        return stats;
+    }
+}
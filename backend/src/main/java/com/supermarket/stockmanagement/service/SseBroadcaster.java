@@ -0,0 +1,153 @@
+package com.supermarket.stockmanagement.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Server-Sent Events fan-out shared by the event streams. Each client has a bounded queue
+ * drained by a small sender pool, so publishing never blocks on a network write, and a
+ * client whose queue overflows is disconnected rather than slowing the writers or other
+ * clients. Callers that need a subscriber's first events ordered against broadcasts queue
+ * them before {@link #attach(Subscriber)}, under the same lock they broadcast with.
+ * Events are queued as suppliers: an event builder is changed by sending it, so every
+ * client is sent a builder of its own.
+ */
+class SseBroadcaster {
+    private final int clientQueueSize;
+    private final long streamTimeoutMillis;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final ExecutorService senders;
+
+    SseBroadcaster(String threadName, int clientQueueSize, int senderThreads, long streamTimeoutMillis) {
+        this.clientQueueSize = clientQueueSize;
+        this.streamTimeoutMillis = streamTimeoutMillis;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.senders = Executors.newFixedThreadPool(senderThreads, runnable -> {
+            Thread thread = new Thread(runnable, threadName + "-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /** A subscriber with its own emitter; it receives broadcasts once attached. */
+    Subscriber open() {
+        SseEmitter emitter = new SseEmitter(streamTimeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter);
+        emitter.onCompletion(subscriber::detach);
+        emitter.onTimeout(subscriber::detach);
+        emitter.onError(error -> subscriber.detach());
+        return subscriber;
+    }
+
+    void attach(Subscriber subscriber) {
+        subscribers.add(subscriber);
+    }
+
+    boolean hasSubscribers() {
+        return !subscribers.isEmpty();
+    }
+
+    /** Queues an event for every client, evicting those that cannot keep up. */
+    void broadcast(Supplier<SseEmitter.SseEventBuilder> event) {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(event, true);
+        }
+    }
+
+    /** Keeps idle streams alive through proxies and surfaces clients that went away. */
+    void heartbeat() {
+        for (Subscriber subscriber : subscribers) {
+            subscriber.offer(() -> SseEmitter.event().comment("heartbeat"), false);
+        }
+    }
+
+    void shutdown() {
+        subscribers.forEach(Subscriber::close);
+        senders.shutdownNow();
+    }
+
+    final class Subscriber {
+        private final SseEmitter emitter;
+        private final BlockingQueue<Supplier<SseEmitter.SseEventBuilder>> queue =
+            new ArrayBlockingQueue<>(clientQueueSize);
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean closed;
+
+        private Subscriber(SseEmitter emitter) {
+            this.emitter = emitter;
+        }
+
+        SseEmitter emitter() {
+            return emitter;
+        }
+
+        int capacity() {
+            return clientQueueSize;
+        }
+
+        /** Queues an event; a full queue evicts the client when {@code evictWhenFull}, else drops it. */
+        void offer(Supplier<SseEmitter.SseEventBuilder> event, boolean evictWhenFull) {
+            if (closed) {
+                return;
+            }
+            if (!queue.offer(event)) {
+                if (evictWhenFull) {
+                    // The client reconnects and catches up from its stream's replay or snapshot
+                    close();
+                }
+                return;
+            }
+            schedule();
+        }
+
+        /** Starts sending whatever was queued before the subscriber was attached. */
+        void start() {
+            schedule();
+        }
+
+        private void schedule() {
+            if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+                senders.execute(this::drain);
+            }
+        }
+
+        private void drain() {
+            try {
+                Supplier<SseEmitter.SseEventBuilder> event;
+                while (!closed && (event = queue.poll()) != null) {
+                    emitter.send(event.get());
+                }
+            } catch (IOException | RuntimeException e) {
+                // The stream is unusable after a failed send; the client reconnects and catches up
+                detach();
+            } finally {
+                scheduled.set(false);
+            }
+            if (!closed) {
+                schedule();
+            }
+        }
+
+        private void close() {
+            detach();
+            // Completing waits for any send in progress, so it never runs on the publishing thread
+            senders.execute(emitter::complete);
+        }
+
+        private void detach() {
+            closed = true;
+            subscribers.remove(this);
+            queue.clear();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.supermarket.stockmanagement.service;
+
+import com.supermarket.stockmanagement.dto.StockChangeEventDTO;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * Publishes compact stock-change events to Server-Sent Events subscribers. Recent events are
+ * kept in a ring buffer so a reconnecting client resumes from its Last-Event-ID; each client
+ * has a bounded queue drained by a small sender pool, and a client whose queue overflows is
+ * disconnected rather than slowing the writers or other clients.
+ */
+@Service
+public class StockEventService {
+    // Event ids carry the process start so ids from before a restart are recognised as stale
+    private final String epoch = Long.toString(System.currentTimeMillis(), 36);
+    private final StockChangeEventDTO[] ring;
+    private final SseBroadcaster broadcaster;
+    private long nextSequence = 1;
+
+    public StockEventService(@Value("${stock.events.buffer-size:10000}") int bufferSize,
+                             @Value("${stock.events.client-queue-size:1000}") int clientQueueSize,
+                             @Value("${stock.events.sender-threads:4}") int senderThreads,
+                             @Value("${stock.events.stream-timeout-ms:1800000}") long streamTimeoutMillis) {
+        this.ring = new StockChangeEventDTO[bufferSize];
+        this.broadcaster = new SseBroadcaster("stock-events", clientQueueSize, senderThreads, streamTimeoutMillis);
+    }
+
+    /**
+     * Publishes a product's stock as of {@code stockVersion}. Events of one product may go out
+     * in a different order than their writes committed; clients keep the highest version.
+     */
+    public void publish(String productId, Integer newStock, Long stockVersion, Integer delta, String cause) {
+        if (productId == null) {
+            return;
+        }
+        synchronized (this) {
+            StockChangeEventDTO event = new StockChangeEventDTO(nextSequence++, productId, newStock, stockVersion,
+                delta, cause, LocalDateTime.now());
+            ring[(int) (event.getSequence() % ring.length)] = event;
+            broadcaster.broadcast(() -> toSse(event));
+        }
+    }
+
+    /**
+     * Opens a stream of "stock" events. With the id of the last event a client saw, the
+     * events it missed are replayed first; when they are no longer buffered (or the id is from
+     * before a restart) a "reset" event tells the client to reload stock once instead.
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        SseBroadcaster.Subscriber subscriber = broadcaster.open();
+        synchronized (this) {
+            if (lastEventId != null && !lastEventId.isBlank()) {
+                long after = resumePoint(lastEventId);
+                long oldest = Math.max(1, nextSequence - ring.length);
+                if (after < 0 || after + 1 < oldest || after >= nextSequence
+                        || nextSequence - after - 1 > subscriber.capacity()) {
+                    subscriber.offer(() -> SseEmitter.event().name("reset").data(Map.of("reason", "events missed")),
+                        false);
+                } else {
+                    for (long sequence = after + 1; sequence < nextSequence; sequence++) {
+                        StockChangeEventDTO missed = ring[(int) (sequence % ring.length)];
+                        subscriber.offer(() -> toSse(missed), false);
+                    }
+                }
+            }
+            broadcaster.attach(subscriber);
+        }
+        subscriber.start();
+        return subscriber.emitter();
+    }
+
+    /** Keeps idle streams alive through proxies and surfaces clients that went away. */
+    @Scheduled(fixedDelayString = "${stock.events.heartbeat-interval-ms:30000}")
+    public void heartbeat() {
+        broadcaster.heartbeat();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        broadcaster.shutdown();
+    }
+
+    private long resumePoint(String lastEventId) {
+        int separator = lastEventId.indexOf(':');
+        if (separator < 0 || !lastEventId.substring(0, separator).equals(epoch)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(lastEventId.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private SseEmitter.SseEventBuilder toSse(StockChangeEventDTO event) {
+        return SseEmitter.event()
+            .id(epoch + ":" + event.getSequence())
+            .name("stock")
+            .data(event, MediaType.APPLICATION_JSON);
+    }
+}
@@ -0,0 +1,335 @@
+package com.supermarket.stockmanagement.service;
+
+import com.supermarket.stockmanagement.dto.StockAsOfDTO;
+import com.supermarket.stockmanagement.dto.StockDriftDTO;
+import com.supermarket.stockmanagement.dto.StockDriftReportDTO;
+import com.supermarket.stockmanagement.model.Product;
+import com.supermarket.stockmanagement.model.StockSnapshot;
+import com.supermarket.stockmanagement.model.Transaction;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.FindAndReplaceOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationExpression;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+/**
+ * Point-in-time stock from the transaction ledger. A snapshot of every product's stock is
+ * taken at the start of each day; stock as of any moment is the nearest snapshot plus (or,
+ * before the first snapshot, minus) only the ledger rows between the two.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockLedgerService {
+    private static final int SNAPSHOT_BATCH_SIZE = 1000;
+    private static final long[] NO_DELTA = {0, 0};
+
+    // Signed stock effect of one ledger row, the same createTransaction applies
+    private static final AggregationExpression STOCK_DELTA = context -> new Document("$switch", new Document()
+        .append("branches", List.of(
+            new Document("case", new Document("$eq", List.of("$type", "PURCHASE")))
+                .append("then", new Document("$abs", "$quantity")),
+            new Document("case", new Document("$eq", List.of("$type", "SALE")))
+                .append("then", new Document("$multiply", List.of(new Document("$abs", "$quantity"), -1)))))
+        .append("default", new Document("$ifNull", List.of("$quantity", 0))));
+
+    private final MongoTemplate mongoTemplate;
+    private final ProjectionRebuilder projectionRebuilder;
+
+    private volatile StockDriftReportDTO lastDriftReport;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void snapshotIfMissing() {
+        mongoTemplate.indexOps(StockSnapshot.class).ensureIndex(new Index()
+            .on("productId", Sort.Direction.ASC)
+            .on("snapshotDate", Sort.Direction.DESC));
+        mongoTemplate.indexOps(StockSnapshot.class).ensureIndex(new Index().on("snapshotDate", Sort.Direction.DESC));
+        LocalDate today = LocalDate.now();
+        if (!mongoTemplate.exists(Query.query(Criteria.where("snapshotDate").is(today)), StockSnapshot.class)) {
+            snapshot(today);
+        }
+    }
+
+    @Scheduled(cron = "${stock.snapshot.cron:0 5 0 * * *}")
+    public void takeDailySnapshot() {
+        snapshot(LocalDate.now());
+    }
+
+    /**
+     * Writes every product's stock as of the start of {@code day}: current stock minus the
+     * ledger booked since. Re-running for the same day overwrites that day's snapshot.
+     * Stock and ledger are read as of one cutoff taken while no write is in flight; products
+     * written during the stream are read again, with their ledger, with writers held off.
+     */
+    public long snapshot(LocalDate day) {
+        if (day.isAfter(LocalDate.now())) {
+            throw new IllegalArgumentException("Cannot snapshot a future day");
+        }
+        LocalDateTime from = day.atStartOfDay();
+        ObjectId cutoff = projectionRebuilder.withoutWritesInFlight(ObjectId::new);
+        Query query = new Query();
+        query.fields().include("currentStock");
+        Map<String, Long> stock = new HashMap<>();
+        try (Stream<Product> products = mongoTemplate.stream(query, Product.class)) {
+            products.forEach(product -> stock.put(product.getId(), currentStock(product)));
+        }
+        Map<String, long[]> since = ledgerDeltas(null, from, null, cutoff);
+
+        Set<String> written = writtenSince(cutoff);
+        written.retainAll(stock.keySet());
+        if (!written.isEmpty()) {
+            projectionRebuilder.withoutWritesInFlight(() -> {
+                Query writtenQuery = Query.query(Criteria.where("_id").in(written));
+                writtenQuery.fields().include("currentStock");
+                for (Product product : mongoTemplate.find(writtenQuery, Product.class)) {
+                    stock.put(product.getId(), currentStock(product));
+                }
+                since.keySet().removeAll(written);
+                since.putAll(ledgerDeltas(written, from, null, null));
+                return null;
+            });
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        BulkOperations bulk = null;
+        int pending = 0;
+        for (Map.Entry<String, Long> product : stock.entrySet()) {
+            long level = product.getValue() - since.getOrDefault(product.getKey(), NO_DELTA)[0];
+            StockSnapshot snapshot = new StockSnapshot(day + ":" + product.getKey(), product.getKey(), day,
+                (int) level, now);
+            if (bulk == null) {
+                bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, StockSnapshot.class);
+            }
+            bulk.replaceOne(Query.query(Criteria.where("_id").is(snapshot.getId())), snapshot,
+                FindAndReplaceOptions.options().upsert());
+            if (++pending == SNAPSHOT_BATCH_SIZE) {
+                bulk.execute();
+                bulk = null;
+                pending = 0;
+            }
+        }
+        if (bulk != null) {
+            bulk.execute();
+        }
+        return stock.size();
+    }
+
+    /** Products with ledger rows inserted after {@code cutoff}. */
+    private Set<String> writtenSince(ObjectId cutoff) {
+        Set<String> productIds = new HashSet<>();
+        mongoTemplate.getCollection(mongoTemplate.getCollectionName(Transaction.class))
+            .distinct("productId", new Document("_id", new Document("$gte", cutoff)), String.class)
+            .into(productIds);
+        productIds.remove(null);
+        return productIds;
+    }
+
+    /** Stock of one product as of {@code asOf}, or null when the product does not exist. */
+    public StockAsOfDTO getProductStockAsOf(String productId, LocalDateTime asOf) {
+        Query productQuery = Query.query(Criteria.where("_id").is(productId));
+        productQuery.fields().include("name", "currentStock");
+        Product product = mongoTemplate.findOne(productQuery, Product.class);
+        if (product == null) {
+            return null;
+        }
+
+        LocalDate day = asOf.toLocalDate();
+        StockSnapshot before = mongoTemplate.findOne(Query.query(Criteria.where("productId").is(productId)
+            .and("snapshotDate").lte(day)).with(Sort.by(Sort.Direction.DESC, "snapshotDate")), StockSnapshot.class);
+        if (before != null) {
+            long[] delta = ledgerDeltas(List.of(productId), before.getSnapshotDate().atStartOfDay(), asOf)
+                .getOrDefault(productId, NO_DELTA);
+            return asOf(product, asOf, before.getStock() + delta[0], before.getSnapshotDate(), delta[1]);
+        }
+
+        // Before the first snapshot: walk back from the next snapshot, or from current stock
+        StockSnapshot after = mongoTemplate.findOne(Query.query(Criteria.where("productId").is(productId)
+            .and("snapshotDate").gt(day)).with(Sort.by(Sort.Direction.ASC, "snapshotDate")), StockSnapshot.class);
+        long base = after != null ? after.getStock() : currentStock(product);
+        long[] delta = ledgerDeltas(List.of(productId), asOf, after != null ? after.getSnapshotDate().atStartOfDay() : null)
+            .getOrDefault(productId, NO_DELTA);
+        return asOf(product, asOf, base - delta[0], after != null ? after.getSnapshotDate() : null, delta[1]);
+    }
+
+    /**
+     * Stock of every product that existed at {@code asOf}, from one snapshot day and one
+     * aggregation over the ledger rows between that day and {@code asOf}.
+     */
+    public List<StockAsOfDTO> getCatalogStockAsOf(LocalDateTime asOf) {
+        LocalDate day = asOf.toLocalDate();
+        LocalDate before = nearestSnapshotDate(Criteria.where("snapshotDate").lte(day), Sort.Direction.DESC);
+        LocalDate after = before == null
+            ? nearestSnapshotDate(Criteria.where("snapshotDate").gt(day), Sort.Direction.ASC)
+            : null;
+        LocalDate base = before != null ? before : after;
+
+        Map<String, Integer> snapshotStock = new HashMap<>();
+        Map<String, long[]> snapshotDeltas = Map.of();
+        if (base != null) {
+            Query snapshotQuery = Query.query(Criteria.where("snapshotDate").is(base));
+            snapshotQuery.fields().include("productId", "stock");
+            try (Stream<StockSnapshot> snapshots = mongoTemplate.stream(snapshotQuery, StockSnapshot.class)) {
+                snapshots.forEach(snapshot -> snapshotStock.put(snapshot.getProductId(), snapshot.getStock()));
+            }
+            snapshotDeltas = before != null
+                ? ledgerDeltas(null, before.atStartOfDay(), asOf)
+                : ledgerDeltas(null, asOf, after.atStartOfDay());
+        }
+
+        Query productQuery = new Query().with(Sort.by(Sort.Direction.ASC, "name"));
+        productQuery.fields().include("name", "currentStock", "createdAt");
+        List<Product> products = new ArrayList<>();
+        List<String> unsnapshotted = new ArrayList<>();
+        for (Product product : mongoTemplate.find(productQuery, Product.class)) {
+            if (product.getCreatedAt() != null && product.getCreatedAt().isAfter(asOf)) {
+                continue;
+            }
+            products.add(product);
+            if (!snapshotStock.containsKey(product.getId())) {
+                unsnapshotted.add(product.getId());
+            }
+        }
+        // Products missing from the snapshot day are walked back from their current stock
+        Map<String, long[]> currentDeltas = base == null
+            ? ledgerDeltas(null, asOf, null)
+            : unsnapshotted.isEmpty() ? Map.of() : ledgerDeltas(unsnapshotted, asOf, null);
+
+        List<StockAsOfDTO> stock = new ArrayList<>(products.size());
+        for (Product product : products) {
+            Integer snapshot = snapshotStock.get(product.getId());
+            if (snapshot != null) {
+                long[] delta = snapshotDeltas.getOrDefault(product.getId(), NO_DELTA);
+                long value = before != null ? snapshot + delta[0] : snapshot - delta[0];
+                stock.add(asOf(product, asOf, value, base, delta[1]));
+            } else {
+                long[] delta = currentDeltas.getOrDefault(product.getId(), NO_DELTA);
+                stock.add(asOf(product, asOf, currentStock(product) - delta[0], null, delta[1]));
+            }
+        }
+        return stock;
+    }
+
+    public StockDriftReportDTO getLastDriftReport() {
+        StockDriftReportDTO report = lastDriftReport;
+        return report != null ? report : checkDrift();
+    }
+
+    @Scheduled(cron = "${stock.drift-check.cron:0 30 0 * * *}")
+    public void scheduledDriftCheck() {
+        StockDriftReportDTO report = checkDrift();
+        if (report.getDriftedProducts() > 0) {
+            log.warn("Stock drift check: {} of {} products differ from the ledger",
+                report.getDriftedProducts(), report.getProductsChecked());
+        }
+    }
+
+    /**
+     * Compares every product's currentStock with the net of its ledger. The ledger is
+     * summed per product on the server and streamed back in a single pass. Opening stock and
+     * stock edited on a product are booked as ADJUSTMENT rows, so only real drift shows.
+     */
+    public StockDriftReportDTO checkDrift() {
+        Map<String, long[]> ledger = ledgerDeltas(null, null, null);
+        Query productQuery = new Query().with(Sort.by(Sort.Direction.ASC, "name"));
+        productQuery.fields().include("name", "currentStock");
+
+        int checked = 0;
+        List<StockDriftDTO> drifts = new ArrayList<>();
+        try (Stream<Product> products = mongoTemplate.stream(productQuery, Product.class)) {
+            for (Product product : (Iterable<Product>) products::iterator) {
+                checked++;
+                long ledgerStock = ledger.getOrDefault(product.getId(), NO_DELTA)[0];
+                long drift = currentStock(product) - ledgerStock;
+                if (drift != 0) {
+                    drifts.add(new StockDriftDTO(product.getId(), product.getName(), product.getCurrentStock(),
+                        ledgerStock, drift));
+                }
+            }
+        }
+        StockDriftReportDTO report = new StockDriftReportDTO(LocalDateTime.now(), checked, drifts.size(), drifts);
+        lastDriftReport = report;
+        return report;
+    }
+
+    private Map<String, long[]> ledgerDeltas(Collection<String> productIds, LocalDateTime from, LocalDateTime to) {
+        return ledgerDeltas(productIds, from, to, null);
+    }
+
+    /**
+     * Net stock change and row count per product over ledger rows dated in [from, to),
+     * limited to rows inserted before {@code before} when it is given.
+     */
+    private Map<String, long[]> ledgerDeltas(Collection<String> productIds, LocalDateTime from, LocalDateTime to,
+                                             ObjectId before) {
+        Criteria criteria = new Criteria();
+        if (before != null) {
+            criteria = criteria.and("_id").lt(before);
+        }
+        if (productIds != null) {
+            criteria = criteria.and("productId").in(productIds);
+        }
+        if (from != null && to != null) {
+            criteria = criteria.and("transactionDate").gte(from).lt(to);
+        } else if (from != null) {
+            criteria = criteria.and("transactionDate").gte(from);
+        } else if (to != null) {
+            criteria = criteria.and("transactionDate").lt(to);
+        }
+        Aggregation aggregation = Aggregation.newAggregation(
+            Aggregation.match(criteria),
+            Aggregation.group("productId").sum(STOCK_DELTA).as("delta").count().as("count")
+        );
+
+        Map<String, long[]> deltas = new HashMap<>();
+        try (Stream<Document> groups = mongoTemplate.aggregateStream(aggregation, Transaction.class, Document.class)) {
+            groups.forEach(group -> {
+                if (group.get("_id") != null) {
+                    deltas.put(group.get("_id").toString(), new long[] {
+                        ((Number) group.get("delta")).longValue(),
+                        ((Number) group.get("count")).longValue()
+                    });
+                }
+            });
+        }
+        return deltas;
+    }
+
+    private LocalDate nearestSnapshotDate(Criteria criteria, Sort.Direction direction) {
+        Query query = Query.query(criteria).with(Sort.by(direction, "snapshotDate"));
+        query.fields().include("snapshotDate");
+        StockSnapshot snapshot = mongoTemplate.findOne(query, StockSnapshot.class);
+        return snapshot != null ? snapshot.getSnapshotDate() : null;
+    }
+
+    private static StockAsOfDTO asOf(Product product, LocalDateTime asOf, long stock, LocalDate snapshotDate,
+                                     long replayed) {
+        return new StockAsOfDTO(product.getId(), product.getName(), asOf, (int) stock, snapshotDate, replayed);
+    }
+
+    private static long currentStock(Product product) {
+        return product.getCurrentStock() != null ? product.getCurrentStock() : 0;
+    }
+}
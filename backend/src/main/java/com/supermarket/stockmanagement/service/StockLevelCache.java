@@ -0,0 +1,123 @@
+package com.supermarket.stockmanagement.service;
+
+import com.supermarket.stockmanagement.model.Product;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * In-memory copy of every product's currentStock. Stock writes on this node update it
+ * directly; a periodic reload picks up writes made elsewhere. Every entry carries the
+ * version of its last write, so a reload never replaces a value written after it began.
+ */
+@Component
+public class StockLevelCache {
+    private final MongoTemplate mongoTemplate;
+    private final StockEventService stockEventService;
+    private final Map<String, Entry> stock = new ConcurrentHashMap<>();
+    private final AtomicLong versions = new AtomicLong();
+    private final Object refreshLock = new Object();
+
+    /** A level of null marks a product removed on this node since the last reload. */
+    private record Entry(Integer level, long version) {
+    }
+
+    public StockLevelCache(MongoTemplate mongoTemplate, StockEventService stockEventService) {
+        this.mongoTemplate = mongoTemplate;
+        this.stockEventService = stockEventService;
+    }
+
+    /** Current stock of a product, loading it once if this node has not seen it yet. */
+    public Integer get(String productId) {
+        Integer level = peek(productId);
+        if (level != null) {
+            return level;
+        }
+        long readFrom = versions.get();
+        Product product = mongoTemplate.findById(productId, Product.class);
+        if (product == null) {
+            return null;
+        }
+        applyIfUnchangedSince(productId, product.getCurrentStock() != null ? product.getCurrentStock() : 0, readFrom);
+        return peek(productId);
+    }
+
+    /** Stock of a product if this node holds it, without going to the database. */
+    public Integer peek(String productId) {
+        Entry entry = stock.get(productId);
+        return entry != null ? entry.level() : null;
+    }
+
+    public void set(String productId, Integer level) {
+        if (productId != null) {
+            stock.put(productId, new Entry(level != null ? level : 0, versions.incrementAndGet()));
+        }
+    }
+
+    public void adjust(String productId, int delta) {
+        stock.computeIfPresent(productId, (id, entry) -> entry.level() == null ? entry
+            : new Entry(entry.level() + delta, versions.incrementAndGet()));
+    }
+
+    public void remove(String productId) {
+        // Kept as a marker until a reload that began after it, so that reload cannot bring it back
+        stock.put(productId, new Entry(null, versions.incrementAndGet()));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${stock.cache.refresh-interval-ms:60000}",
+            initialDelayString = "${stock.cache.refresh-interval-ms:60000}")
+    public void refresh() {
+        synchronized (refreshLock) {
+            long startedAt = versions.get();
+            Query query = new Query();
+            query.fields().include("currentStock", "stockVersion");
+            Set<String> seen = new HashSet<>();
+            try (Stream<Product> products = mongoTemplate.stream(query, Product.class)) {
+                products.forEach(product -> {
+                    int level = product.getCurrentStock() != null ? product.getCurrentStock() : 0;
+                    Integer previous = applyIfUnchangedSince(product.getId(), level, startedAt);
+                    if (previous != null && previous != level) {
+                        // Written by another node since the last reload
+                        stockEventService.publish(product.getId(), level, product.getStockVersion(),
+                            level - previous, "SYNC");
+                    }
+                    seen.add(product.getId());
+                });
+            }
+            // Products gone from the database, unless this node wrote them after the reload began
+            for (String productId : List.copyOf(stock.keySet())) {
+                if (!seen.contains(productId)) {
+                    stock.computeIfPresent(productId, (id, entry) -> entry.version() <= startedAt ? null : entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stores a level read from the database unless the entry was written after version
+     * {@code since}. Returns the level it replaced, or null if it was skipped or new.
+     */
+    private Integer applyIfUnchangedSince(String productId, int level, long since) {
+        Integer[] previous = new Integer[1];
+        stock.compute(productId, (id, entry) -> {
+            if (entry != null && entry.version() > since) {
+                return entry;
+            }
+            previous[0] = entry != null ? entry.level() : null;
+            return new Entry(level, since);
+        });
+        return previous[0];
+    }
+}
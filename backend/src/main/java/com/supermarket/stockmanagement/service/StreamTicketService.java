@@ -0,0 +1,61 @@
+package com.supermarket.stockmanagement.service;
+
+import com.supermarket.stockmanagement.model.StreamTicket;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.security.SecureRandom;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Short-lived, single-use tickets for the Server-Sent Events endpoints. EventSource cannot
+ * send headers, so the stream URL carries a ticket instead of the long-lived access token;
+ * a ticket in a log or browser history is already spent or expires within seconds. Tickets
+ * live in Mongo so a stream may be opened on any node.
+ */
+@Service
+public class StreamTicketService {
+    private final MongoTemplate mongoTemplate;
+    private final Duration ttl;
+    private final SecureRandom random = new SecureRandom();
+
+    public StreamTicketService(MongoTemplate mongoTemplate,
+                               @Value("${stream.ticket-ttl-seconds:30}") long ttlSeconds) {
+        this.mongoTemplate = mongoTemplate;
+        this.ttl = Duration.ofSeconds(ttlSeconds);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        mongoTemplate.indexOps(StreamTicket.class)
+            .ensureIndex(new Index().on("createdAt", Sort.Direction.ASC).expire(ttl));
+    }
+
+    /** Issues a ticket to a caller that has already authenticated with its access token. */
+    public String issue() {
+        byte[] bytes = new byte[32];
+        random.nextBytes(bytes);
+        String ticket = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+        mongoTemplate.insert(new StreamTicket(ticket, LocalDateTime.now()));
+        return ticket;
+    }
+
+    /** True once for an unexpired ticket; the TTL index only removes expired ones eventually. */
+    public boolean redeem(String ticket) {
+        if (ticket == null || ticket.isBlank()) {
+            return false;
+        }
+        Query unexpired = Query.query(Criteria.where("_id").is(ticket)
+            .and("createdAt").gte(LocalDateTime.now().minus(ttl)));
+        return mongoTemplate.findAndRemove(unexpired, StreamTicket.class) != null;
+    }
+}
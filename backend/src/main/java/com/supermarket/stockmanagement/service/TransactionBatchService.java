@@ -0,0 +1,350 @@
+package com.supermarket.stockmanagement.service;
+
+import com.mongodb.bulk.BulkWriteError;
+import com.supermarket.stockmanagement.dto.TransactionBatchItemDTO;
+import com.supermarket.stockmanagement.dto.TransactionBatchResultDTO;
+import com.supermarket.stockmanagement.model.Product;
+import com.supermarket.stockmanagement.model.Transaction;
+import lombok.RequiredArgsConstructor;
+import org.bson.types.ObjectId;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.Lock;
+
+/**
+ * Bulk ingestion for back-office imports. Stock effects are netted per product and
+ * applied with one update per product, and all accepted transactions are inserted with one
+ * insert, instead of a product read, product save and transaction save per row.
+ */
+@Service
+@RequiredArgsConstructor
+public class TransactionBatchService {
+    private static final String STOCK_CHANGED = "Stock changed while the batch was applied";
+
+    private final MongoTemplate mongoTemplate;
+    private final TransactionService transactionService;
+    private final StockLevelCache stockLevelCache;
+    private final LowStockService lowStockService;
+    private final ProductService productService;
+    private final ProjectionRebuilder projectionRebuilder;
+
+    /**
+     * Creates every valid transaction of the batch. Rows are checked in submission order
+     * against the running stock, exactly as if they had been posted one by one; a row that
+     * would take stock below zero is rejected and the rest of the batch still applies.
+     */
+    public TransactionBatchResultDTO createBatch(List<Transaction> transactions) {
+        String[] errors = new String[transactions.size()];
+        Set<String> productIds = new LinkedHashSet<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (int i = 0; i < transactions.size(); i++) {
+            Transaction transaction = transactions.get(i);
+            errors[i] = validate(transaction);
+            if (errors[i] != null) {
+                continue;
+            }
+            if (transaction.getTransactionDate() == null) {
+                transaction.setTransactionDate(now);
+            } else if (transaction.getTransactionDate().isAfter(now)) {
+                errors[i] = "Transaction date cannot be in the future";
+                continue;
+            }
+            transaction.setTotalAmount(Math.abs(transaction.getQuantity()) * transaction.getUnitPrice());
+            productIds.add(transaction.getProductId());
+        }
+
+        Query productQuery = Query.query(Criteria.where("_id").in(productIds));
+        productQuery.fields().include("name", "currentStock", "purchasePrice");
+        Map<String, Product> products = new HashMap<>();
+        for (Product product : mongoTemplate.find(productQuery, Product.class)) {
+            products.put(product.getId(), product);
+        }
+
+        // Rows that passed validation and name a product; only their stock check is left
+        boolean[] stockChecked = new boolean[transactions.size()];
+        for (int i = 0; i < transactions.size(); i++) {
+            if (errors[i] == null) {
+                if (products.containsKey(transactions.get(i).getProductId())) {
+                    stockChecked[i] = true;
+                } else {
+                    errors[i] = "Product not found";
+                }
+            }
+        }
+        Map<String, Integer> stockLevels = new HashMap<>();
+        products.forEach((id, product) -> stockLevels.put(id, product.getCurrentStock() != null ? product.getCurrentStock() : 0));
+
+        Map<String, Integer> netDelta = checkStock(transactions, stockChecked, errors, products, stockLevels, products.keySet(), false);
+        List<Transaction> accepted = new ArrayList<>();
+        Collection<Transaction> saved;
+        Lock writeGate = projectionRebuilder.writeGate();
+        writeGate.lock();
+        try {
+            Set<String> applied = applyStockDeltas(netDelta);
+            try {
+                Set<String> missed = missed(netDelta, applied);
+                for (int attempt = 0; attempt < 2 && !missed.isEmpty(); attempt++) {
+                    // Another writer took stock between the read and the bulk write: re-check those
+                    // products against fresh stock once, then fall back to their additions alone
+                    boolean additionsOnly = attempt > 0;
+                    if (!additionsOnly) {
+                        stockLevels.putAll(readStock(missed));
+                    }
+                    Map<String, Integer> retry = checkStock(transactions, stockChecked, errors, products, stockLevels, missed, additionsOnly);
+                    netDelta.putAll(retry);
+                    applied.addAll(applyStockDeltas(retry));
+                    missed = missed(retry, applied);
+                }
+            } catch (RuntimeException e) {
+                restoreStock(applied, netDelta);
+                throw e;
+            }
+            for (int i = 0; i < transactions.size(); i++) {
+                if (errors[i] == null && !applied.contains(transactions.get(i).getProductId())) {
+                    errors[i] = STOCK_CHANGED;
+                }
+            }
+
+            for (int i = 0; i < transactions.size(); i++) {
+                if (errors[i] == null) {
+                    // Assigned up front so the stored rows can be told apart if the insert fails
+                    transactions.get(i).setId(new ObjectId().toHexString());
+                    accepted.add(transactions.get(i));
+                }
+            }
+            try {
+                if (!accepted.isEmpty()) {
+                    mongoTemplate.insertAll(accepted);
+                }
+            } catch (RuntimeException e) {
+                // The insert is ordered, so rows before the failure are stored and keep their stock change
+                Set<String> stored = storedIds(accepted);
+                Map<String, Integer> unstored = new HashMap<>();
+                for (int i = 0; i < transactions.size(); i++) {
+                    if (errors[i] == null && !stored.contains(transactions.get(i).getId())) {
+                        errors[i] = "Could not be stored: " + e.getMessage();
+                        unstored.merge(transactions.get(i).getProductId(), stockDelta(transactions.get(i)), Integer::sum);
+                    }
+                }
+                restoreStock(unstored.keySet(), unstored);
+                unstored.forEach((productId, delta) -> netDelta.merge(productId, -delta, Integer::sum));
+                accepted.removeIf(transaction -> !stored.contains(transaction.getId()));
+            }
+            saved = accepted;
+
+            Map<String, Integer> deltaByProduct = new HashMap<>();
+            applied.forEach(productId -> {
+                stockLevelCache.adjust(productId, netDelta.get(productId));
+                lowStockService.stockChanged(productId, stockLevelCache.get(productId));
+                deltaByProduct.put(productId, netDelta.get(productId));
+            });
+            productService.publishWrittenStock(deltaByProduct, "BATCH_IMPORT");
+            transactionService.recordWritten(new ArrayList<>(saved), products);
+        } finally {
+            writeGate.unlock();
+        }
+
+        List<TransactionBatchItemDTO> results = new ArrayList<>();
+        Iterator<Transaction> created = saved.iterator();
+        for (int i = 0; i < transactions.size(); i++) {
+            if (errors[i] == null) {
+                results.add(new TransactionBatchItemDTO(i, "CREATED", created.next().getId(), null));
+            } else {
+                results.add(new TransactionBatchItemDTO(i, "REJECTED", null, errors[i]));
+            }
+        }
+        return new TransactionBatchResultDTO(accepted.size(), transactions.size() - accepted.size(), results);
+    }
+
+    /**
+     * Checks the rows of the products in {@code scope} in submission order against the running
+     * stock, setting or clearing their errors, and returns the net stock change per product.
+     * With {@code additionsOnly}, rows that take stock away are rejected without a check.
+     */
+    private static Map<String, Integer> checkStock(List<Transaction> transactions, boolean[] stockChecked, String[] errors,
+                                                  Map<String, Product> products, Map<String, Integer> stockLevels,
+                                                  Set<String> scope, boolean additionsOnly) {
+        Map<String, Integer> runningStock = new HashMap<>();
+        Map<String, Integer> netDelta = new LinkedHashMap<>();
+        for (int i = 0; i < transactions.size(); i++) {
+            String productId = transactions.get(i).getProductId();
+            if (!stockChecked[i] || !scope.contains(productId)) {
+                continue;
+            }
+            errors[i] = null;
+            int stock = runningStock.computeIfAbsent(productId, stockLevels::get);
+            int delta = stockDelta(transactions.get(i));
+            if (additionsOnly && delta < 0) {
+                errors[i] = STOCK_CHANGED;
+                continue;
+            }
+            if (stock + delta < 0) {
+                errors[i] = String.format("Insufficient stock for product '%s'. Available: %d, Requested: %d",
+                        products.get(productId).getName(), stock, -delta);
+                continue;
+            }
+            runningStock.put(productId, stock + delta);
+            netDelta.merge(productId, delta, Integer::sum);
+        }
+        return netDelta;
+    }
+
+    private static Set<String> missed(Map<String, Integer> netDelta, Set<String> applied) {
+        Set<String> missed = new LinkedHashSet<>(netDelta.keySet());
+        missed.removeAll(applied);
+        return missed;
+    }
+
+    private Map<String, Integer> readStock(Collection<String> productIds) {
+        Query query = Query.query(Criteria.where("_id").in(productIds));
+        query.fields().include("currentStock");
+        Map<String, Integer> levels = new HashMap<>();
+        for (String productId : productIds) {
+            levels.put(productId, 0); // deleted since the first read
+        }
+        for (Product product : mongoTemplate.find(query, Product.class)) {
+            levels.put(product.getId(), product.getCurrentStock() != null ? product.getCurrentStock() : 0);
+        }
+        return levels;
+    }
+
+    /**
+     * Applies the net stock change per product and returns the products that were updated.
+     * Decrements only match while enough stock remains, so each is its own conditional
+     * update; additions can only miss a product deleted since the read and go out in one
+     * bulk write. Products that are gone are left out rather than written.
+     */
+    private Set<String> applyStockDeltas(Map<String, Integer> netDelta) {
+        Set<String> applied = new LinkedHashSet<>();
+        List<String> additions = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        try {
+            for (Map.Entry<String, Integer> entry : netDelta.entrySet()) {
+                String productId = entry.getKey();
+                int delta = entry.getValue();
+                if (delta == 0) {
+                    applied.add(productId);
+                } else if (delta > 0) {
+                    additions.add(productId);
+                } else if (mongoTemplate.updateFirst(
+                        Query.query(Criteria.where("_id").is(productId).and("currentStock").gte(-delta)),
+                        stockUpdate(delta, now), Product.class).getMatchedCount() > 0) {
+                    applied.add(productId);
+                }
+            }
+            if (!additions.isEmpty()) {
+                applied.addAll(applyAdditions(additions, netDelta, now));
+            }
+        } catch (RuntimeException e) {
+            restoreStock(applied, netDelta);
+            throw e;
+        }
+        return applied;
+    }
+
+    private Collection<String> applyAdditions(List<String> productIds, Map<String, Integer> netDelta, LocalDateTime now) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        for (String productId : productIds) {
+            bulk.updateOne(Query.query(Criteria.where("_id").is(productId)), stockUpdate(netDelta.get(productId), now));
+        }
+        try {
+            if (bulk.execute().getMatchedCount() == productIds.size()) {
+                return productIds;
+            }
+        } catch (BulkOperationException e) {
+            // Unordered: every update but the failed ones went through; undo those before giving up
+            Set<Integer> failed = new HashSet<>();
+            for (BulkWriteError error : e.getErrors()) {
+                failed.add(error.getIndex());
+            }
+            List<String> written = new ArrayList<>();
+            for (int i = 0; i < productIds.size(); i++) {
+                if (!failed.contains(i)) {
+                    written.add(productIds.get(i));
+                }
+            }
+            restoreStock(written, netDelta);
+            throw e;
+        }
+        // Some products were deleted since they were read, and their updates matched nothing
+        Query query = Query.query(Criteria.where("_id").in(productIds));
+        query.fields().include("_id");
+        List<String> existing = new ArrayList<>();
+        for (Product product : mongoTemplate.find(query, Product.class)) {
+            existing.add(product.getId());
+        }
+        return existing;
+    }
+
+    private Set<String> storedIds(List<Transaction> transactions) {
+        Query query = Query.query(Criteria.where("_id").in(transactions.stream().map(Transaction::getId).toList()));
+        query.fields().include("_id");
+        Set<String> stored = new HashSet<>();
+        for (Transaction transaction : mongoTemplate.find(query, Transaction.class)) {
+            stored.add(transaction.getId());
+        }
+        return stored;
+    }
+
+    private static Update stockUpdate(int delta, LocalDateTime now) {
+        return new Update().inc("currentStock", delta).inc("stockVersion", 1).set("updatedAt", now);
+    }
+
+    private void restoreStock(Collection<String> productIds, Map<String, Integer> netDelta) {
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkOperations.BulkMode.UNORDERED, Product.class);
+        int pending = 0;
+        for (String productId : productIds) {
+            int delta = netDelta.get(productId);
+            if (delta != 0) {
+                bulk.updateOne(Query.query(Criteria.where("_id").is(productId)), new Update().inc("currentStock", -delta).inc("stockVersion", 1));
+                pending++;
+            }
+        }
+        if (pending > 0) {
+            bulk.execute();
+        }
+    }
+
+    private static String validate(Transaction transaction) {
+        if (transaction == null) {
+            return "Transaction is empty";
+        }
+        if (transaction.getProductId() == null || transaction.getType() == null) {
+            return "Transaction needs a product and a type";
+        }
+        if (transaction.getQuantity() == null || transaction.getQuantity() == 0) {
+            return "Transaction needs a non-zero quantity";
+        }
+        if (transaction.getUnitPrice() == null) {
+            return "Transaction needs a unit price";
+        }
+        return null;
+    }
+
+    /** Same stock effect createTransaction applies for each transaction type. */
+    private static int stockDelta(Transaction transaction) {
+        int quantity = Math.abs(transaction.getQuantity());
+        return switch (transaction.getType()) {
+            case PURCHASE -> quantity;
+            case SALE -> -quantity;
+            case ADJUSTMENT -> transaction.getQuantity() > 0 ? quantity : -quantity;
+        };
+    }
+}
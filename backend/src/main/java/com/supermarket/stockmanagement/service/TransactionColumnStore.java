@@ -0,0 +1,404 @@
+package com.supermarket.stockmanagement.service;
+
+import com.supermarket.stockmanagement.model.Transaction;
+import com.supermarket.stockmanagement.model.Transaction.TransactionType;
+import com.supermarket.stockmanagement.service.AnalyticsEngine.ProductTotals;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Optional column-oriented copy of the transactions collection for analytics scans.
+ * Each transaction is one row across parallel primitive arrays; product ids are
+ * dictionary-encoded and amounts are stored in cents. Loaded at startup when
+ * {@code analytics.columnar.enabled} is set and appended to on every write.
+ */
+@Component
+public class TransactionColumnStore {
+    private static final byte DELETED = -1;
+    private static final int INITIAL_CAPACITY = 1 << 14;
+    private static final int MIN_COMPACT_ROWS = 1024;
+
+    private final MongoTemplate mongoTemplate;
+    private final ProjectionRebuilder projectionRebuilder;
+    private final boolean enabled;
+    private final int parallelThreshold;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Columns columns = new Columns(INITIAL_CAPACITY);
+    private Pending pendingWhileLoading;
+    private volatile boolean loaded;
+
+    public TransactionColumnStore(MongoTemplate mongoTemplate, ProjectionRebuilder projectionRebuilder,
+                                  @Value("${analytics.columnar.enabled:false}") boolean enabled,
+                                  @Value("${analytics.columnar.parallel-threshold:200000}") int parallelThreshold) {
+        this.mongoTemplate = mongoTemplate;
+        this.projectionRebuilder = projectionRebuilder;
+        this.enabled = enabled;
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    public boolean isAvailable() {
+        return enabled && loaded;
+    }
+
+    /**
+     * Streams the collection into a fresh set of columns without holding the lock, then
+     * swaps it in. The load only reads ids below a cutoff taken while no write is in flight;
+     * appends and removals that arrive meanwhile are queued and replayed onto the new
+     * columns, skipping appends the load already read.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        Pending pending = projectionRebuilder.withoutWritesInFlight(() -> {
+            lock.writeLock().lock();
+            try {
+                pendingWhileLoading = new Pending();
+                return pendingWhileLoading;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+
+        Columns fresh = new Columns(INITIAL_CAPACITY);
+        boolean complete = false;
+        try {
+            Query query = Query.query(Criteria.where("_id").lt(new ObjectId(pending.cutoffId)));
+            query.fields().include("productId", "type", "quantity", "totalAmount", "transactionDate");
+            try (Stream<Transaction> transactions = mongoTemplate.stream(query, Transaction.class)) {
+                transactions.forEach(fresh::append);
+            }
+            complete = true;
+        } finally {
+            lock.writeLock().lock();
+            try {
+                if (complete) {
+                    for (Pending.Change change : pending.changes) {
+                        if (change.removed()) {
+                            fresh.remove(change.transaction());
+                        } else if (change.transaction().getId() == null
+                                || change.transaction().getId().compareTo(pending.cutoffId) > 0) {
+                            fresh.append(change.transaction());
+                        }
+                    }
+                    fresh.compactIfSparse();
+                    columns = fresh;
+                    loaded = true;
+                }
+                pendingWhileLoading = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    public void append(Transaction transaction) {
+        if (!enabled) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (pendingWhileLoading != null) {
+                pendingWhileLoading.changes.add(new Pending.Change(transaction, false));
+            }
+            columns.append(transaction);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Tombstones the row of a deleted transaction, found by id. Deletes are rare, so a scan
+     * is acceptable; once tombstones make up a quarter of the rows they are compacted away.
+     */
+    public void remove(Transaction transaction) {
+        if (!enabled || transaction.getId() == null) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (pendingWhileLoading != null) {
+                pendingWhileLoading.changes.add(new Pending.Change(transaction, true));
+            }
+            columns.remove(transaction);
+            columns.compactIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /** Quantity and revenue per product for sales in [from, to); null bounds are open. */
+    public List<ProductTotals> topProducts(int limit, LocalDateTime from, LocalDateTime to) {
+        Partial totals = scanSales(from, to);
+        PriorityQueue<ProductTotals> topK = new PriorityQueue<>(limit + 1,
+                Comparator.comparingDouble(ProductTotals::revenue));
+        for (int p = 0; p < totals.rows.length; p++) {
+            if (totals.rows[p] == 0) {
+                continue;
+            }
+            double revenue = totals.cents[p] / 100.0;
+            if (topK.size() < limit) {
+                topK.offer(new ProductTotals(totals.productIds.get(p), (int) totals.quantity[p], revenue));
+            } else if (revenue > topK.peek().revenue()) {
+                topK.poll();
+                topK.offer(new ProductTotals(totals.productIds.get(p), (int) totals.quantity[p], revenue));
+            }
+        }
+        List<ProductTotals> winners = new ArrayList<>(topK);
+        winners.sort(Comparator.comparingDouble(ProductTotals::revenue).reversed());
+        return winners;
+    }
+
+    /** Sold quantity per product for sales after {@code from}. */
+    public Map<String, Integer> quantitySold(LocalDateTime from) {
+        Partial totals = scanSales(from, null);
+        Map<String, Integer> sold = new HashMap<>();
+        for (int p = 0; p < totals.rows.length; p++) {
+            if (totals.rows[p] > 0) {
+                sold.put(totals.productIds.get(p), (int) totals.quantity[p]);
+            }
+        }
+        return sold;
+    }
+
+    private Partial scanSales(LocalDateTime from, LocalDateTime to) {
+        long fromSeconds = from != null ? from.atZone(zone).toEpochSecond() : Long.MIN_VALUE;
+        long toSeconds = to != null ? to.atZone(zone).toEpochSecond() : Long.MAX_VALUE;
+
+        lock.readLock().lock();
+        try {
+            Columns scanned = columns;
+            List<String> dictionary = List.copyOf(scanned.productIds);
+            ScanTask task = new ScanTask(scanned, 0, scanned.size, dictionary.size(), fromSeconds, toSeconds);
+            Partial result = scanned.size >= parallelThreshold
+                    ? ForkJoinPool.commonPool().invoke(task)
+                    : task.compute();
+            result.productIds = dictionary;
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static long toCents(Double amount) {
+        return amount != null ? Math.round(amount * 100) : 0L;
+    }
+
+    /** Appends and removals made while a load is streaming, in arrival order. */
+    private static final class Pending {
+        private final String cutoffId = new ObjectId().toHexString();
+        private final List<Change> changes = new ArrayList<>();
+
+        private record Change(Transaction transaction, boolean removed) {
+        }
+    }
+
+    /**
+     * One set of parallel row arrays. Ids are kept as the 12 bytes of the ObjectId split
+     * across a long and an int, so rows can be found by id without boxing.
+     */
+    private final class Columns {
+        private final Map<String, Integer> productDictionary = new HashMap<>();
+        private final List<String> productIds = new ArrayList<>();
+        private long[] idHigh;
+        private int[] idLow;
+        private long[] epochSeconds;
+        private int[] productIndex;
+        private byte[] type;
+        private int[] quantity;
+        private long[] cents;
+        private int size;
+        private int deleted;
+
+        private Columns(int capacity) {
+            idHigh = new long[capacity];
+            idLow = new int[capacity];
+            epochSeconds = new long[capacity];
+            productIndex = new int[capacity];
+            type = new byte[capacity];
+            quantity = new int[capacity];
+            cents = new long[capacity];
+        }
+
+        private void append(Transaction transaction) {
+            if (transaction.getTransactionDate() == null || transaction.getType() == null) {
+                return;
+            }
+            if (size == epochSeconds.length) {
+                int capacity = size * 2;
+                idHigh = Arrays.copyOf(idHigh, capacity);
+                idLow = Arrays.copyOf(idLow, capacity);
+                epochSeconds = Arrays.copyOf(epochSeconds, capacity);
+                productIndex = Arrays.copyOf(productIndex, capacity);
+                type = Arrays.copyOf(type, capacity);
+                quantity = Arrays.copyOf(quantity, capacity);
+                cents = Arrays.copyOf(cents, capacity);
+            }
+            ByteBuffer id = idBytes(transaction.getId());
+            idHigh[size] = id.getLong(0);
+            idLow[size] = id.getInt(8);
+            epochSeconds[size] = transaction.getTransactionDate().atZone(zone).toEpochSecond();
+            productIndex[size] = encode(transaction.getProductId());
+            type[size] = (byte) transaction.getType().ordinal();
+            quantity[size] = transaction.getQuantity() != null ? transaction.getQuantity() : 0;
+            cents[size] = toCents(transaction.getTotalAmount());
+            size++;
+        }
+
+        private void remove(Transaction transaction) {
+            ByteBuffer id = idBytes(transaction.getId());
+            long high = id.getLong(0);
+            int low = id.getInt(8);
+            for (int row = size - 1; row >= 0; row--) {
+                if (idHigh[row] == high && idLow[row] == low && type[row] != DELETED) {
+                    type[row] = DELETED;
+                    deleted++;
+                    return;
+                }
+            }
+        }
+
+        /** Drops tombstoned rows in place once they make up a quarter of the columns. */
+        private void compactIfSparse() {
+            if (deleted < MIN_COMPACT_ROWS || deleted * 4 < size) {
+                return;
+            }
+            int kept = 0;
+            for (int row = 0; row < size; row++) {
+                if (type[row] == DELETED) {
+                    continue;
+                }
+                idHigh[kept] = idHigh[row];
+                idLow[kept] = idLow[row];
+                epochSeconds[kept] = epochSeconds[row];
+                productIndex[kept] = productIndex[row];
+                type[kept] = type[row];
+                quantity[kept] = quantity[row];
+                cents[kept] = cents[row];
+                kept++;
+            }
+            size = kept;
+            deleted = 0;
+        }
+
+        private int encode(String productId) {
+            if (productId == null) {
+                return -1;
+            }
+            return productDictionary.computeIfAbsent(productId, id -> {
+                productIds.add(id);
+                return productIds.size() - 1;
+            });
+        }
+    }
+
+    /** The 12 id bytes: the ObjectId itself, or a digest for ids that are not ObjectIds. */
+    private static ByteBuffer idBytes(String id) {
+        if (id == null) {
+            return ByteBuffer.allocate(12);
+        }
+        if (ObjectId.isValid(id)) {
+            return ByteBuffer.wrap(new ObjectId(id).toByteArray());
+        }
+        UUID digest = UUID.nameUUIDFromBytes(id.getBytes(StandardCharsets.UTF_8));
+        return ByteBuffer.allocate(12).putLong(0, digest.getMostSignificantBits())
+                .putInt(8, (int) digest.getLeastSignificantBits());
+    }
+
+    private static final class Partial {
+        private final long[] rows;
+        private final long[] quantity;
+        private final long[] cents;
+        private List<String> productIds;
+
+        private Partial(int products) {
+            this.rows = new long[products];
+            this.quantity = new long[products];
+            this.cents = new long[products];
+        }
+
+        private Partial merge(Partial other) {
+            for (int p = 0; p < rows.length; p++) {
+                rows[p] += other.rows[p];
+                quantity[p] += other.quantity[p];
+                cents[p] += other.cents[p];
+            }
+            return this;
+        }
+    }
+
+    /** Sums SALE rows per product over a row range, splitting large ranges across the fork-join pool. */
+    private static final class ScanTask extends RecursiveTask<Partial> {
+        private static final int SPLIT_ROWS = 50_000;
+        private static final byte SALE = (byte) TransactionType.SALE.ordinal();
+
+        private final Columns columns;
+        private final int start;
+        private final int end;
+        private final int products;
+        private final long fromSeconds;
+        private final long toSeconds;
+
+        private ScanTask(Columns columns, int start, int end, int products, long fromSeconds, long toSeconds) {
+            this.columns = columns;
+            this.start = start;
+            this.end = end;
+            this.products = products;
+            this.fromSeconds = fromSeconds;
+            this.toSeconds = toSeconds;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (end - start > SPLIT_ROWS && getPool() != null) {
+                int middle = (start + end) >>> 1;
+                ScanTask left = new ScanTask(columns, start, middle, products, fromSeconds, toSeconds);
+                ScanTask right = new ScanTask(columns, middle, end, products, fromSeconds, toSeconds);
+                left.fork();
+                return right.compute().merge(left.join());
+            }
+            Partial partial = new Partial(products);
+            for (int row = start; row < end; row++) {
+                int product = columns.productIndex[row];
+                if (columns.type[row] != SALE || product < 0 || product >= products) {
+                    continue;
+                }
+                long seconds = columns.epochSeconds[row];
+                if (seconds < fromSeconds || seconds >= toSeconds) {
+                    continue;
+                }
+                partial.rows[product]++;
+                partial.quantity[product] += columns.quantity[row];
+                partial.cents[product] += columns.cents[row];
+            }
+            return partial;
+        }
+    }
+}
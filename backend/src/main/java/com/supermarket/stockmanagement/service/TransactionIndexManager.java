@@ -0,0 +1,232 @@
+package com.supermarket.stockmanagement.service;
+
+import com.supermarket.stockmanagement.dto.IndexStatusDTO;
+import com.supermarket.stockmanagement.dto.QueryPlanDTO;
+import com.supermarket.stockmanagement.model.Transaction;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.Document;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexField;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The catalogue of indexes on the transactions collection. Missing indexes are built one at
+ * a time on a background thread after startup, so a large collection does not hold up the
+ * application; build state is kept per index and read back through {@link #getStatus()}.
+ * Indexes are matched by key pattern, so one created earlier under another name counts.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TransactionIndexManager {
+    private static final String COLLECTION = "transactions";
+
+    // Every compound index ends in the keyset order so filtered pages are index-ordered as well
+    private static final List<IndexSpec> CATALOGUE = List.of(
+        new IndexSpec("transactionDate_id", keys("transactionDate", -1, "_id", -1)),
+        new IndexSpec("type_transactionDate_id", keys("type", 1, "transactionDate", -1, "_id", -1)),
+        new IndexSpec("productId_transactionDate_id", keys("productId", 1, "transactionDate", -1, "_id", -1)),
+        new IndexSpec("billId", keys("billId", 1)),
+        new IndexSpec("type_billId", keys("type", 1, "billId", 1))
+    );
+
+    private final MongoTemplate mongoTemplate;
+
+    // Entries are replaced, never mutated, so readers on other threads see whole states
+    private final Map<String, IndexStatusDTO> status = new ConcurrentHashMap<>();
+
+    private record IndexSpec(String name, Map<String, Integer> keys) {
+        private Index toIndex() {
+            Index index = new Index().named(name);
+            keys.forEach((field, direction) -> index.on(field, direction > 0 ? Sort.Direction.ASC : Sort.Direction.DESC));
+            return index;
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexes() {
+        IndexOperations indexes = mongoTemplate.indexOps(Transaction.class);
+        Map<List<Map.Entry<String, Integer>>, String> existing = new LinkedHashMap<>();
+        for (IndexInfo info : indexes.getIndexInfo()) {
+            existing.put(pattern(keys(info)), info.getName());
+        }
+        List<IndexSpec> missing = new ArrayList<>();
+        for (IndexSpec spec : CATALOGUE) {
+            String existingName = existing.get(pattern(spec.keys()));
+            if (existingName == null) {
+                setStatus(spec, "PENDING", null, null);
+                missing.add(spec);
+                continue;
+            }
+            if (!existingName.equals(spec.name())) {
+                log.info("Index {} on {} exists as {}; keeping it", spec.name(), COLLECTION, existingName);
+            }
+            setStatus(spec, "READY", null, null);
+        }
+        if (missing.isEmpty()) {
+            return;
+        }
+
+        Thread builder = new Thread(() -> build(indexes, missing), "transaction-index-builder");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    /** Catalogue entries with their build state; in-flight builds include server-side progress. */
+    public List<IndexStatusDTO> getStatus() {
+        Map<String, long[]> progress = null;
+        List<IndexStatusDTO> result = new ArrayList<>();
+        for (IndexSpec spec : CATALOGUE) {
+            IndexStatusDTO current = status.get(spec.name());
+            if (current == null) {
+                continue;
+            }
+            IndexStatusDTO copy = new IndexStatusDTO(current.getName(), current.getKeys(), current.getState(),
+                null, null, current.getFinishedAt(), current.getError());
+            if ("BUILDING".equals(copy.getState())) {
+                if (progress == null) {
+                    progress = buildProgress();
+                }
+                long[] done = progress.get(spec.name());
+                if (done != null) {
+                    copy.setDocumentsDone(done[0]);
+                    copy.setDocumentsTotal(done[1]);
+                }
+            }
+            result.add(copy);
+        }
+        return result;
+    }
+
+    /**
+     * Runs explain on the main transaction query paths and reports the winning plan of
+     * each, so a missing or unused index shows up as a COLLSCAN.
+     */
+    public List<QueryPlanDTO> explainQueryPaths() {
+        Date monthAgo = new Date(System.currentTimeMillis() - 30L * 24 * 60 * 60 * 1000);
+        Document newestFirst = new Document("transactionDate", -1).append("_id", -1);
+        List<QueryPlanDTO> plans = new ArrayList<>();
+        plans.add(explain("transaction page", new Document(), newestFirst));
+        plans.add(explain("sales in date range",
+            new Document("type", "SALE").append("transactionDate", new Document("$gte", monthAgo)), null));
+        plans.add(explain("product history",
+            new Document("productId", "").append("transactionDate", new Document("$gte", monthAgo)), newestFirst));
+        plans.add(explain("bill lines", new Document("billId", ""), null));
+        plans.add(explain("billed sales",
+            new Document("type", "SALE").append("billId", new Document("$ne", null)), null));
+        return plans;
+    }
+
+    private void build(IndexOperations indexes, List<IndexSpec> missing) {
+        for (int i = 0; i < missing.size(); i++) {
+            IndexSpec spec = missing.get(i);
+            setStatus(spec, "BUILDING", null, null);
+            log.info("Building index {} on {} ({}/{})", spec.name(), COLLECTION, i + 1, missing.size());
+            long startedAt = System.currentTimeMillis();
+            try {
+                indexes.ensureIndex(spec.toIndex());
+                setStatus(spec, "READY", LocalDateTime.now(), null);
+                log.info("Built index {} in {} ms", spec.name(), System.currentTimeMillis() - startedAt);
+            } catch (RuntimeException e) {
+                setStatus(spec, "FAILED", LocalDateTime.now(), e.getMessage());
+                log.error("Failed to build index {}", spec.name(), e);
+            }
+        }
+    }
+
+    private void setStatus(IndexSpec spec, String state, LocalDateTime finishedAt, String error) {
+        status.put(spec.name(), new IndexStatusDTO(spec.name(), spec.keys(), state, null, null, finishedAt, error));
+    }
+
+    /** Documents processed so far per index being built, from currentOp; empty when not permitted. */
+    private Map<String, long[]> buildProgress() {
+        Map<String, long[]> progress = new LinkedHashMap<>();
+        try {
+            String namespace = mongoTemplate.getDb().getName() + "." + COLLECTION;
+            Document result = mongoTemplate.getMongoDatabaseFactory().getMongoDatabase("admin")
+                .runCommand(new Document("currentOp", true).append("ns", namespace));
+            for (Document op : result.getList("inprog", Document.class, List.of())) {
+                Document command = op.get("command", Document.class);
+                Document done = op.get("progress", Document.class);
+                if (command == null || done == null || !command.containsKey("createIndexes")) {
+                    continue;
+                }
+                long[] counts = {
+                    ((Number) done.get("done")).longValue(),
+                    ((Number) done.get("total")).longValue()
+                };
+                for (Document index : command.getList("indexes", Document.class, List.of())) {
+                    progress.put(index.getString("name"), counts);
+                }
+            }
+        } catch (RuntimeException e) {
+            log.debug("Index build progress unavailable: {}", e.getMessage());
+        }
+        return progress;
+    }
+
+    private QueryPlanDTO explain(String queryPath, Document filter, Document sort) {
+        var find = mongoTemplate.getCollection(COLLECTION).find(filter).limit(50);
+        if (sort != null) {
+            find = find.sort(sort);
+        }
+        Document queryPlanner = find.explain().get("queryPlanner", Document.class);
+        Document plan = queryPlanner.get("winningPlan", Document.class);
+        if (plan.containsKey("queryPlan")) {
+            // Slot-based engine wraps the classic plan tree
+            plan = plan.get("queryPlan", Document.class);
+        }
+
+        List<String> stages = new ArrayList<>();
+        String indexName = null;
+        while (plan != null) {
+            stages.add(plan.getString("stage"));
+            if (indexName == null && plan.getString("indexName") != null) {
+                indexName = plan.getString("indexName");
+            }
+            Document input = plan.get("inputStage", Document.class);
+            if (input == null && plan.containsKey("inputStages")) {
+                List<Document> inputs = plan.getList("inputStages", Document.class);
+                input = inputs.isEmpty() ? null : inputs.get(0);
+            }
+            plan = input;
+        }
+        return new QueryPlanDTO(queryPath, stages, indexName, stages.contains("COLLSCAN"));
+    }
+
+    /** Keys in index order; map equality alone would ignore the order of compound keys. */
+    private static List<Map.Entry<String, Integer>> pattern(Map<String, Integer> keys) {
+        return List.copyOf(keys.entrySet());
+    }
+
+    private static Map<String, Integer> keys(IndexInfo info) {
+        Map<String, Integer> keys = new LinkedHashMap<>();
+        for (IndexField field : info.getIndexFields()) {
+            keys.put(field.getKey(), field.getDirection() == Sort.Direction.DESC ? -1 : 1);
+        }
+        return keys;
+    }
+
+    private static Map<String, Integer> keys(Object... fieldsAndDirections) {
+        Map<String, Integer> keys = new LinkedHashMap<>();
+        for (int i = 0; i < fieldsAndDirections.length; i += 2) {
+            keys.put((String) fieldsAndDirections[i], (Integer) fieldsAndDirections[i + 1]);
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,138 @@
+package com.supermarket.stockmanagement.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.supermarket.stockmanagement.dto.TransactionPageDTO;
+import com.supermarket.stockmanagement.model.Transaction;
+import com.supermarket.stockmanagement.model.Transaction.TransactionType;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Bounded reads over the transactions collection: keyset pages ordered by
+ * (transactionDate, id) and an NDJSON export that streams straight from a Mongo cursor.
+ * All filtering happens in the query so only matching documents leave the database; the
+ * indexes behind these paths are kept by {@link TransactionIndexManager}.
+ */
+@Service
+@RequiredArgsConstructor
+public class TransactionQueryService {
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int STREAM_BATCH_SIZE = 1000;
+
+    private final MongoTemplate mongoTemplate;
+    private final ObjectMapper objectMapper;
+
+    public record Filter(LocalDateTime from, LocalDateTime to, TransactionType type, String productId, String billId) {
+    }
+
+    /**
+     * One page of transactions. The cursor encodes the (transactionDate, id) of the last
+     * transaction on the previous page; it is only valid with the same sort and filters.
+     */
+    public TransactionPageDTO page(String cursor, int limit, String sort, Filter filter) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        boolean descending = !"asc".equalsIgnoreCase(sort);
+        Transaction after = decodeCursor(cursor);
+
+        List<Criteria> criteria = filterCriteria(filter);
+        if (after != null) {
+            criteria.add(descending
+                    ? new Criteria().orOperator(
+                            Criteria.where("transactionDate").lt(after.getTransactionDate()),
+                            Criteria.where("transactionDate").is(after.getTransactionDate()).and("_id").lt(after.getId()))
+                    : new Criteria().orOperator(
+                            Criteria.where("transactionDate").gt(after.getTransactionDate()),
+                            Criteria.where("transactionDate").is(after.getTransactionDate()).and("_id").gt(after.getId())));
+        }
+
+        // One extra row tells whether another page follows
+        Query query = query(criteria, descending).limit(pageSize + 1);
+        List<Transaction> rows = mongoTemplate.find(query, Transaction.class);
+        boolean hasMore = rows.size() > pageSize;
+        if (hasMore) {
+            rows = new ArrayList<>(rows.subList(0, pageSize));
+        }
+        String nextCursor = hasMore ? encodeCursor(rows.get(rows.size() - 1)) : null;
+        return new TransactionPageDTO(rows, nextCursor, hasMore);
+    }
+
+    /**
+     * Writes every matching transaction as one JSON document per line, newest first. Documents
+     * are serialized as the cursor yields them, so memory use does not grow with the result.
+     */
+    public void stream(Filter filter, OutputStream out) throws IOException {
+        Query query = query(filterCriteria(filter), true).cursorBatchSize(STREAM_BATCH_SIZE);
+        try (Stream<Transaction> transactions = mongoTemplate.stream(query, Transaction.class)) {
+            Iterator<Transaction> rows = transactions.iterator();
+            while (rows.hasNext()) {
+                out.write(objectMapper.writeValueAsBytes(rows.next()));
+                out.write('\n');
+            }
+        }
+        out.flush();
+    }
+
+    private static List<Criteria> filterCriteria(Filter filter) {
+        List<Criteria> criteria = new ArrayList<>();
+        if (filter.from() != null) {
+            criteria.add(Criteria.where("transactionDate").gte(filter.from()));
+        }
+        if (filter.to() != null) {
+            criteria.add(Criteria.where("transactionDate").lt(filter.to()));
+        }
+        if (filter.type() != null) {
+            criteria.add(Criteria.where("type").is(filter.type()));
+        }
+        if (filter.productId() != null && !filter.productId().isBlank()) {
+            criteria.add(Criteria.where("productId").is(filter.productId()));
+        }
+        if (filter.billId() != null && !filter.billId().isBlank()) {
+            criteria.add(Criteria.where("billId").is(filter.billId()));
+        }
+        return criteria;
+    }
+
+    private static Query query(List<Criteria> criteria, boolean descending) {
+        Sort.Direction direction = descending ? Sort.Direction.DESC : Sort.Direction.ASC;
+        Query query = new Query().with(Sort.by(direction, "transactionDate").and(Sort.by(direction, "_id")));
+        if (!criteria.isEmpty()) {
+            query.addCriteria(new Criteria().andOperator(criteria));
+        }
+        return query;
+    }
+
+    private static String encodeCursor(Transaction last) {
+        String position = last.getTransactionDate() + "|" + last.getId();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(position.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Transaction decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String position = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = position.indexOf('|');
+            Transaction after = new Transaction();
+            after.setTransactionDate(LocalDateTime.parse(position.substring(0, separator)));
+            after.setId(position.substring(separator + 1));
+            return after;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+    }
+}
@@ -1,18 +1,40 @@
 package com.supermarket.stockmanagement.service;
 
+import com.supermarket.stockmanagement.model.Product;
 import com.supermarket.stockmanagement.model.Transaction;
 import com.supermarket.stockmanagement.repository.TransactionRepository;
 import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.Range;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 public class TransactionService {
     private final TransactionRepository transactionRepository;
+    private final MongoTemplate mongoTemplate;
     private final ProductService productService;
+    private final SalesRollupService salesRollupService;
+    private final BillSummaryService billSummaryService;
+    private final BillDetailsCache billDetailsCache;
+    private final AnalyticsEngine analyticsEngine;
+    private final AnalyticsCache analyticsCache;
+    private final TransactionColumnStore columnStore;
+    private final SalesSketchService salesSketchService;
+    private final DemandForecastService demandForecastService;
+    private final ProjectionRebuilder projectionRebuilder;
+    
+    private static final Sort NEWEST_FIRST = Sort.by(Sort.Direction.DESC, "transactionDate").and(Sort.by(Sort.Direction.DESC, "_id"));
     
     public List<Transaction> getAllTransactions() {
         return transactionRepository.findAll();
@@ -30,34 +52,108 @@ public class TransactionService {
         return transactionRepository.findByType(type);
     }
     
+    /** Transactions in [from, to), newest first; either bound may be open. */
+    public List<Transaction> getTransactionsByProductId(String productId, LocalDateTime from, LocalDateTime to) {
+        return transactionRepository.findByProductIdAndTransactionDateBetween(productId, dateRange(from, to), NEWEST_FIRST);
+    }
+    
+    public List<Transaction> getTransactionsByType(Transaction.TransactionType type, LocalDateTime from, LocalDateTime to) {
+        return transactionRepository.findByTypeAndTransactionDateBetween(type, dateRange(from, to), NEWEST_FIRST);
+    }
+    
     public Transaction createTransaction(Transaction transaction) {
         // Only set current date if no date was provided
         if (transaction.getTransactionDate() == null) {
             transaction.setTransactionDate(LocalDateTime.now());
+        } else if (transaction.getTransactionDate().isAfter(LocalDateTime.now())) {
+            // Future dates would claim analytics ring slots ahead of time
+            throw new IllegalArgumentException("Transaction date cannot be in the future");
         }
         transaction.setTotalAmount(Math.abs(transaction.getQuantity()) * transaction.getUnitPrice());
         
+        Lock writeGate = projectionRebuilder.writeGate();
+        writeGate.lock();
+        try {
+            return applyAndSave(transaction);
+        } finally {
+            writeGate.unlock();
+        }
+    }
+    
+    private Transaction applyAndSave(Transaction transaction) {
         // Update product stock based on transaction type
+        Product product = null;
         switch (transaction.getType()) {
             case PURCHASE:
                 // Purchases always add to stock
-                productService.updateStock(transaction.getProductId(), Math.abs(transaction.getQuantity()), true);
+                product = productService.updateStock(transaction.getProductId(), Math.abs(transaction.getQuantity()), true, transaction.getType().name());
                 break;
             case SALE:
                 // Sales always reduce stock
-                productService.updateStock(transaction.getProductId(), Math.abs(transaction.getQuantity()), false);
+                product = productService.updateStock(transaction.getProductId(), Math.abs(transaction.getQuantity()), false, transaction.getType().name());
                 break;
             case ADJUSTMENT:
                 // Adjustments can add (positive) or reduce (negative) stock
                 boolean isAddition = transaction.getQuantity() > 0;
-                productService.updateStock(transaction.getProductId(), Math.abs(transaction.getQuantity()), isAddition);
+                product = productService.updateStock(transaction.getProductId(), Math.abs(transaction.getQuantity()), isAddition, transaction.getType().name());
                 break;
         }
         
-        return transactionRepository.save(transaction);
+        Transaction saved = transactionRepository.save(transaction);
+        recordWritten(List.of(saved), product != null ? Map.of(product.getId(), product) : Map.of());
+        return saved;
+    }
+    
+    /**
+     * Feeds newly stored transactions to the analytics read models. Products supply the
+     * purchase price used for profit figures and may be missing for some lines.
+     */
+    public void recordWritten(List<Transaction> transactions, Map<String, Product> products) {
+        salesRollupService.recordSales(transactions);
+        billSummaryService.recordSales(transactions);
+        billDetailsCache.evict(transactions.stream()
+            .map(Transaction::getBillId)
+            .filter(Objects::nonNull)
+            .collect(Collectors.toSet()));
+        for (Transaction saved : transactions) {
+            Product product = products.get(saved.getProductId());
+            analyticsEngine.record(saved, product != null ? product.getPurchasePrice() : null);
+            columnStore.append(saved);
+            salesSketchService.record(saved);
+            demandForecastService.observe(saved);
+        }
+        analyticsCache.invalidateAll();
     }
     
     public void deleteTransaction(String id) {
-        transactionRepository.deleteById(id);
+        Transaction transaction;
+        Lock writeGate = projectionRebuilder.writeGate();
+        writeGate.lock();
+        try {
+            // Only the delete that actually removed the row reverts it, however many race for it.
+            // A concurrent reload can only have scanned the row before this, and knows it counted it.
+            transaction = mongoTemplate.findAndRemove(Query.query(Criteria.where("_id").is(id)), Transaction.class);
+            if (transaction == null) {
+                return;
+            }
+            analyticsEngine.revert(transaction);
+            salesSketchService.revert(transaction);
+            demandForecastService.revert(transaction);
+            salesRollupService.revertSales(List.of(transaction));
+            billSummaryService.revertSales(List.of(transaction));
+        } finally {
+            writeGate.unlock();
+        }
+        if (transaction.getBillId() != null) {
+            billDetailsCache.evict(List.of(transaction.getBillId()));
+        }
+        columnStore.remove(transaction);
+        analyticsCache.invalidateAll();
+    }
+    
+    private static Range<LocalDateTime> dateRange(LocalDateTime from, LocalDateTime to) {
+        return Range.of(
+                from != null ? Range.Bound.inclusive(from) : Range.Bound.unbounded(),
+                to != null ? Range.Bound.exclusive(to) : Range.Bound.unbounded());
     }
 }
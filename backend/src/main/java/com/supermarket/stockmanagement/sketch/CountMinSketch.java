@@ -0,0 +1,92 @@
+package com.supermarket.stockmanagement.sketch;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Count-Min sketch over string keys. Estimates never undercount; with probability
+ * 1 - delta they overcount by at most epsilon times the total of all added counts.
+ */
+public class CountMinSketch {
+    private final int width;
+    private final int depth;
+    private final long[] counts;
+    private long total;
+
+    public CountMinSketch(double epsilon, double delta) {
+        this((int) Math.ceil(Math.E / epsilon), (int) Math.ceil(Math.log(1 / delta)));
+    }
+
+    private CountMinSketch(int width, int depth) {
+        this.width = width;
+        this.depth = depth;
+        this.counts = new long[width * depth];
+    }
+
+    public void add(String key, long count) {
+        long hash = Hashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int row = 0; row < depth; row++) {
+            counts[row * width + column(h1, h2, row)] += count;
+        }
+        total += count;
+    }
+
+    public long estimate(String key) {
+        long hash = Hashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counts[row * width + column(h1, h2, row)]);
+        }
+        return min;
+    }
+
+    public void merge(CountMinSketch other) {
+        if (other.width != width || other.depth != depth) {
+            throw new IllegalArgumentException("Cannot merge Count-Min sketches of different dimensions");
+        }
+        for (int i = 0; i < counts.length; i++) {
+            counts[i] += other.counts[i];
+        }
+        total += other.total;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    /** Upper bound on the overcount of any estimate, holding with probability 1 - delta. */
+    public double getErrorBound() {
+        return Math.E / width * total;
+    }
+
+    public double getConfidence() {
+        return 1 - Math.exp(-depth);
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(16 + counts.length * 8);
+        buffer.putInt(width).putInt(depth).putLong(total);
+        for (long count : counts) {
+            buffer.putLong(count);
+        }
+        return buffer.array();
+    }
+
+    public static CountMinSketch fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        CountMinSketch sketch = new CountMinSketch(buffer.getInt(), buffer.getInt());
+        sketch.total = buffer.getLong();
+        for (int i = 0; i < sketch.counts.length; i++) {
+            sketch.counts[i] = buffer.getLong();
+        }
+        return sketch;
+    }
+
+    /** Kirsch-Mitzenmacher double hashing: row i uses h1 + i * h2. */
+    private int column(int h1, int h2, int row) {
+        return Math.floorMod(h1 + row * h2, width);
+    }
+}
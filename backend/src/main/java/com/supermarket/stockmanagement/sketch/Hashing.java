@@ -0,0 +1,30 @@
+package com.supermarket.stockmanagement.sketch;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 64-bit string hashing shared by the sketches: FNV-1a over the UTF-8 bytes followed by
+ * the SplitMix64 finalizer, which spreads FNV's weak low bits across the whole word.
+ */
+final class Hashing {
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private Hashing() {
+    }
+
+    static long hash64(String value) {
+        long hash = FNV_OFFSET;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return mix(hash);
+    }
+
+    static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+}
@@ -0,0 +1,83 @@
+package com.supermarket.stockmanagement.sketch;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Tracks the keys with the largest totals using a Count-Min sketch for the counts and a
+ * bounded candidate set of the current leaders. Memory is the sketch plus {@code capacity} keys.
+ */
+public class HeavyHitters {
+    private final CountMinSketch sketch;
+    private final int capacity;
+    private final Map<String, Long> candidates = new HashMap<>();
+
+    public HeavyHitters(CountMinSketch sketch, int capacity) {
+        this.sketch = sketch;
+        this.capacity = capacity;
+    }
+
+    public void add(String key, long count) {
+        sketch.add(key, count);
+        long estimate = sketch.estimate(key);
+        if (candidates.containsKey(key) || candidates.size() < capacity) {
+            candidates.put(key, estimate);
+            return;
+        }
+        Map.Entry<String, Long> weakest = null;
+        for (Map.Entry<String, Long> entry : candidates.entrySet()) {
+            if (weakest == null || entry.getValue() < weakest.getValue()) {
+                weakest = entry;
+            }
+        }
+        if (weakest != null && estimate > weakest.getValue()) {
+            candidates.remove(weakest.getKey());
+            candidates.put(key, estimate);
+        }
+    }
+
+    public void merge(HeavyHitters other) {
+        sketch.merge(other.sketch);
+        Map<String, Long> union = new HashMap<>(candidates);
+        union.putAll(other.candidates);
+        candidates.clear();
+        union.keySet().stream()
+                .map(key -> Map.entry(key, sketch.estimate(key)))
+                .sorted(Map.Entry.<String, Long>comparingByValue().reversed())
+                .limit(capacity)
+                .forEach(entry -> candidates.put(entry.getKey(), entry.getValue()));
+    }
+
+    /** The {@code k} leading keys with their estimated totals, largest first. */
+    public List<Map.Entry<String, Long>> top(int k) {
+        List<Map.Entry<String, Long>> leaders = new ArrayList<>();
+        for (String key : candidates.keySet()) {
+            leaders.add(Map.entry(key, sketch.estimate(key)));
+        }
+        leaders.sort(Map.Entry.<String, Long>comparingByValue(Comparator.reverseOrder()));
+        return leaders.size() > k ? leaders.subList(0, k) : leaders;
+    }
+
+    public long estimate(String key) {
+        return sketch.estimate(key);
+    }
+
+    public CountMinSketch getSketch() {
+        return sketch;
+    }
+
+    public Map<String, Long> getCandidates() {
+        return new HashMap<>(candidates);
+    }
+
+    public static HeavyHitters restore(CountMinSketch sketch, int capacity, Map<String, Long> candidates) {
+        HeavyHitters heavyHitters = new HeavyHitters(sketch, capacity);
+        if (candidates != null) {
+            heavyHitters.candidates.putAll(candidates);
+        }
+        return heavyHitters;
+    }
+}
@@ -0,0 +1,158 @@
+package com.supermarket.stockmanagement.sketch;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Merging t-digest for streaming quantile estimates. Values are buffered and periodically
+ * merged into at most about 2 * compression centroids whose size shrinks toward the tails,
+ * so extreme quantiles stay accurate. Quantile error is typically well under 1% of rank.
+ */
+public class TDigest {
+    private final double compression;
+    private double[] means = new double[0];
+    private double[] weights = new double[0];
+    private final double[] bufferMeans;
+    private final double[] bufferWeights;
+    private int buffered;
+    private double totalWeight;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public TDigest(double compression) {
+        this.compression = compression;
+        this.bufferMeans = new double[(int) (compression * 5)];
+        this.bufferWeights = new double[bufferMeans.length];
+    }
+
+    public void add(double value) {
+        add(value, 1);
+    }
+
+    public void add(double value, double weight) {
+        if (Double.isNaN(value) || weight <= 0) {
+            return;
+        }
+        if (buffered == bufferMeans.length) {
+            compress();
+        }
+        bufferMeans[buffered] = value;
+        bufferWeights[buffered] = weight;
+        buffered++;
+        totalWeight += weight;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+    }
+
+    public void merge(TDigest other) {
+        other.compress();
+        for (int i = 0; i < other.means.length; i++) {
+            add(other.means[i], other.weights[i]);
+        }
+        if (other.totalWeight > 0) {
+            min = Math.min(min, other.min);
+            max = Math.max(max, other.max);
+        }
+    }
+
+    public long size() {
+        return Math.round(totalWeight);
+    }
+
+    public double quantile(double q) {
+        compress();
+        if (means.length == 0) {
+            return Double.NaN;
+        }
+        if (means.length == 1) {
+            return means[0];
+        }
+        double target = q * totalWeight;
+        double cumulative = 0;
+        double previousCenter = 0;
+        double previousMean = min;
+        for (int i = 0; i < means.length; i++) {
+            double center = cumulative + weights[i] / 2;
+            if (target < center) {
+                double span = center - previousCenter;
+                double fraction = span > 0 ? (target - previousCenter) / span : 0;
+                return previousMean + fraction * (means[i] - previousMean);
+            }
+            cumulative += weights[i];
+            previousCenter = center;
+            previousMean = means[i];
+        }
+        double span = totalWeight - previousCenter;
+        double fraction = span > 0 ? (target - previousCenter) / span : 1;
+        return previousMean + fraction * (max - previousMean);
+    }
+
+    private void compress() {
+        if (buffered == 0) {
+            return;
+        }
+        int n = means.length + buffered;
+        double[] allMeans = Arrays.copyOf(means, n);
+        double[] allWeights = Arrays.copyOf(weights, n);
+        System.arraycopy(bufferMeans, 0, allMeans, means.length, buffered);
+        System.arraycopy(bufferWeights, 0, allWeights, means.length, buffered);
+        buffered = 0;
+
+        Integer[] order = new Integer[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(allMeans[a], allMeans[b]));
+
+        double[] mergedMeans = new double[n];
+        double[] mergedWeights = new double[n];
+        int count = 0;
+        double weightSoFar = 0;
+        for (int index : order) {
+            double mean = allMeans[index];
+            double weight = allWeights[index];
+            if (count > 0) {
+                double proposed = mergedWeights[count - 1] + weight;
+                double q = (weightSoFar + proposed / 2) / totalWeight;
+                double limit = Math.max(1, 4 * totalWeight * q * (1 - q) / compression);
+                if (proposed <= limit) {
+                    mergedMeans[count - 1] += (mean - mergedMeans[count - 1]) * weight / proposed;
+                    mergedWeights[count - 1] = proposed;
+                    continue;
+                }
+                weightSoFar += mergedWeights[count - 1];
+            }
+            mergedMeans[count] = mean;
+            mergedWeights[count] = weight;
+            count++;
+        }
+        means = Arrays.copyOf(mergedMeans, count);
+        weights = Arrays.copyOf(mergedWeights, count);
+    }
+
+    public byte[] toBytes() {
+        compress();
+        ByteBuffer buffer = ByteBuffer.allocate(36 + means.length * 16);
+        buffer.putDouble(compression).putDouble(min).putDouble(max).putDouble(totalWeight).putInt(means.length);
+        for (int i = 0; i < means.length; i++) {
+            buffer.putDouble(means[i]).putDouble(weights[i]);
+        }
+        return buffer.array();
+    }
+
+    public static TDigest fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        TDigest digest = new TDigest(buffer.getDouble());
+        digest.min = buffer.getDouble();
+        digest.max = buffer.getDouble();
+        digest.totalWeight = buffer.getDouble();
+        int centroids = buffer.getInt();
+        digest.means = new double[centroids];
+        digest.weights = new double[centroids];
+        for (int i = 0; i < centroids; i++) {
+            digest.means[i] = buffer.getDouble();
+            digest.weights[i] = buffer.getDouble();
+        }
+        return digest;
+    }
+}
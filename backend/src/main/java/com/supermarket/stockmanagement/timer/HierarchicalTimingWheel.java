@@ -0,0 +1,167 @@
+package com.supermarket.stockmanagement.timer;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+/**
+ * Hierarchical timing wheel: {@code levels} wheels of 64 slots, each slot of a level spanning
+ * a full turn of the level below. Scheduling and cancelling are O(1); one daemon thread
+ * advances the lowest wheel every tick and cascades timeouts down as higher slots come due.
+ * Timeouts fire on that thread, within one tick of their deadline, so tasks must be short.
+ */
+@Slf4j
+public class HierarchicalTimingWheel implements AutoCloseable {
+    private static final int SLOT_BITS = 6;
+    private static final int SLOTS = 1 << SLOT_BITS;
+    private static final int SLOT_MASK = SLOTS - 1;
+
+    private final long tickMillis;
+    private final LongSupplier clock;
+    private final long startMillis;
+    private final List<List<ArrayDeque<Timeout>>> wheels;
+    private final long maxTicks;
+    private Thread ticker;
+    private long currentTick;
+    private volatile boolean running = true;
+
+    public HierarchicalTimingWheel(long tickMillis, int levels, String threadName) {
+        this(tickMillis, levels, System::currentTimeMillis);
+        this.ticker = new Thread(this::run, threadName);
+        this.ticker.setDaemon(true);
+        this.ticker.start();
+    }
+
+    /** A wheel without a ticker thread, advanced by calling {@link #runDue()}; for tests. */
+    HierarchicalTimingWheel(long tickMillis, int levels, LongSupplier clock) {
+        if (levels < 1 || levels * SLOT_BITS > 60) {
+            throw new IllegalArgumentException("Timing wheel needs between 1 and 10 levels");
+        }
+        this.tickMillis = tickMillis;
+        this.clock = clock;
+        this.startMillis = clock.getAsLong();
+        this.maxTicks = 1L << (levels * SLOT_BITS);
+        this.wheels = new ArrayList<>(levels);
+        for (int level = 0; level < levels; level++) {
+            List<ArrayDeque<Timeout>> wheel = new ArrayList<>(SLOTS);
+            for (int slot = 0; slot < SLOTS; slot++) {
+                wheel.add(new ArrayDeque<>());
+            }
+            wheels.add(wheel);
+        }
+    }
+
+    public Timeout schedule(Runnable task, long delayMillis) {
+        long elapsed = clock.getAsLong() + delayMillis - startMillis;
+        long deadlineTick = (elapsed + tickMillis - 1) / tickMillis;
+        Timeout timeout;
+        synchronized (this) {
+            if (deadlineTick - currentTick >= maxTicks) {
+                throw new IllegalArgumentException("Delay exceeds the timing wheel's range");
+            }
+            // Never land in the slot of the tick already being processed
+            timeout = new Timeout(Math.max(deadlineTick, currentTick + 1), task);
+            place(timeout);
+        }
+        return timeout;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        if (ticker != null) {
+            ticker.interrupt();
+        }
+    }
+
+    private void place(Timeout timeout) {
+        long remaining = timeout.deadlineTick - currentTick;
+        for (int level = 0; level < wheels.size(); level++) {
+            if (remaining < 1L << ((level + 1) * SLOT_BITS)) {
+                int slot = (int) ((timeout.deadlineTick >>> (level * SLOT_BITS)) & SLOT_MASK);
+                wheels.get(level).get(slot).add(timeout);
+                return;
+            }
+        }
+    }
+
+    /** Advances one tick: cascades higher slots that just came due, then empties the current slot. */
+    private List<Timeout> advance() {
+        List<Timeout> due = new ArrayList<>();
+        synchronized (this) {
+            currentTick++;
+            for (int level = 1; level < wheels.size(); level++) {
+                if ((currentTick & ((1L << (level * SLOT_BITS)) - 1)) != 0) {
+                    break;
+                }
+                int slot = (int) ((currentTick >>> (level * SLOT_BITS)) & SLOT_MASK);
+                ArrayDeque<Timeout> cascading = wheels.get(level).get(slot);
+                while (!cascading.isEmpty()) {
+                    Timeout timeout = cascading.poll();
+                    if (!timeout.cancelled) {
+                        place(timeout);
+                    }
+                }
+            }
+            ArrayDeque<Timeout> current = wheels.get(0).get((int) (currentTick & SLOT_MASK));
+            while (!current.isEmpty()) {
+                Timeout timeout = current.poll();
+                if (!timeout.cancelled) {
+                    due.add(timeout);
+                }
+            }
+        }
+        return due;
+    }
+
+    private void run() {
+        while (running) {
+            long wait = nextTickAt() - clock.getAsLong();
+            if (wait > 0) {
+                try {
+                    Thread.sleep(wait);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                continue;
+            }
+            runDue();
+        }
+    }
+
+    /** Advances through every tick the clock has reached and runs the timeouts that came due. */
+    void runDue() {
+        while (nextTickAt() <= clock.getAsLong()) {
+            for (Timeout timeout : advance()) {
+                try {
+                    timeout.task.run();
+                } catch (RuntimeException e) {
+                    log.warn("Timing wheel task failed", e);
+                }
+            }
+        }
+    }
+
+    private synchronized long nextTickAt() {
+        return startMillis + (currentTick + 1) * tickMillis;
+    }
+
+    public static final class Timeout {
+        private final long deadlineTick;
+        private final Runnable task;
+        private volatile boolean cancelled;
+
+        private Timeout(long deadlineTick, Runnable task) {
+            this.deadlineTick = deadlineTick;
+            this.task = task;
+        }
+
+        /** Cancelled timeouts are dropped lazily when their slot is reached. */
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+}
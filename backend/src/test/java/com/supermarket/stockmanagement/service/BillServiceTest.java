@@ -0,0 +1,108 @@
+package com.supermarket.stockmanagement.service;
+
+import com.supermarket.stockmanagement.dto.BillDTO;
+import com.supermarket.stockmanagement.dto.CheckoutItemDTO;
+import com.supermarket.stockmanagement.dto.CheckoutRequest;
+import com.supermarket.stockmanagement.exception.InsufficientStockException;
+import com.supermarket.stockmanagement.model.Product;
+import com.supermarket.stockmanagement.model.Transaction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyString;
+import static org.mockito.Mockito.doAnswer;
+
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+class BillServiceTest {
+
+    @Container
+    private static final MongoDBContainer MONGO = new MongoDBContainer("mongo:6.0");
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> MONGO.getReplicaSetUrl("bill-test"));
+    }
+
+    @Autowired
+    private BillService billService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @SpyBean
+    private ReservationService reservationService;
+
+    @BeforeEach
+    void freshProducts() {
+        mongoTemplate.remove(new Query(), Transaction.class);
+        mongoTemplate.remove(new Query(), Product.class);
+        mongoTemplate.insert(product("plenty", 10));
+        mongoTemplate.insert(product("scarce", 5));
+    }
+
+    @Test
+    void billWithinStockDecrementsEveryLine() {
+        BillDTO bill = billService.checkout(new CheckoutRequest("R-1", null, List.of(
+            new CheckoutItemDTO("plenty", 3, null, null),
+            new CheckoutItemDTO("scarce", 2, null, null))));
+
+        assertEquals(7L, stock("plenty"));
+        assertEquals(3L, stock("scarce"));
+        assertEquals(2L, mongoTemplate.count(Query.query(Criteria.where("billId").is(bill.getBillId())), Transaction.class));
+    }
+
+    @Test
+    void stockConflictMidBillRestoresTheLinesAlreadyWritten() {
+        // Another till sells most of "scarce" after this bill's stock check passed
+        doAnswer(invocation -> {
+            if ("scarce".equals(invocation.getArgument(0))) {
+                mongoTemplate.updateFirst(Query.query(Criteria.where("_id").is("scarce")),
+                    new Update().set("currentStock", 1), Product.class);
+            }
+            return invocation.callRealMethod();
+        }).when(reservationService).heldByOthers(anyString(), any());
+
+        InsufficientStockException e = assertThrows(InsufficientStockException.class,
+            () -> billService.checkout(new CheckoutRequest("R-2", null, List.of(
+                new CheckoutItemDTO("plenty", 3, null, null),
+                new CheckoutItemDTO("scarce", 2, null, null)))));
+
+        assertEquals("scarce", e.getProductId());
+        assertEquals(1L, (long) e.getAvailableStock());
+        assertEquals(10L, stock("plenty"));
+        assertEquals(1L, stock("scarce"));
+        assertEquals(0L, mongoTemplate.count(new Query(), Transaction.class));
+    }
+
+    private long stock(String productId) {
+        return mongoTemplate.findById(productId, Product.class).getCurrentStock();
+    }
+
+    private static Product product(String id, int stock) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(id);
+        product.setSellingPrice(2.0);
+        product.setCurrentStock(stock);
+        product.setStockVersion(0L);
+        return product;
+    }
+}
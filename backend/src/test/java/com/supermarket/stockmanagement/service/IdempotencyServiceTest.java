@@ -0,0 +1,124 @@
+package com.supermarket.stockmanagement.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.supermarket.stockmanagement.dto.BillDTO;
+import com.supermarket.stockmanagement.exception.IdempotencyMismatchException;
+import com.supermarket.stockmanagement.model.IdempotencyRecord;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Testcontainers(disabledWithoutDocker = true)
+class IdempotencyServiceTest {
+
+    @Container
+    private static final MongoDBContainer MONGO = new MongoDBContainer("mongo:6.0");
+
+    private static MongoClient client;
+    private MongoTemplate mongoTemplate;
+    private final List<IdempotencyService> nodes = new ArrayList<>();
+    private final AtomicInteger runs = new AtomicInteger();
+
+    @BeforeAll
+    static void connect() {
+        client = MongoClients.create(MONGO.getConnectionString());
+    }
+
+    @AfterAll
+    static void disconnect() {
+        client.close();
+    }
+
+    @BeforeEach
+    void freshDatabase() {
+        mongoTemplate = new MongoTemplate(client, "idempotency-test");
+        mongoTemplate.dropCollection(IdempotencyRecord.class);
+    }
+
+    @AfterEach
+    void stopNodes() {
+        nodes.forEach(IdempotencyService::shutdown);
+    }
+
+    @Test
+    void sameKeyReplaysTheFirstResponseInsteadOfRunningAgain() {
+        IdempotencyService service = node();
+
+        IdempotencyService.Outcome<BillDTO> first = service.execute("bills", "key-1", request(10), BillDTO.class, checkout());
+        IdempotencyService.Outcome<BillDTO> second = service.execute("bills", "key-1", request(10), BillDTO.class, checkout());
+
+        assertFalse(first.replayed());
+        assertTrue(second.replayed());
+        assertEquals("BILL-1", second.response().getBillId());
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void sameKeyOnAnotherNodeReplaysTheStoredResponse() {
+        node().execute("bills", "key-1", request(10), BillDTO.class, checkout());
+
+        IdempotencyService.Outcome<BillDTO> retried = node().execute("bills", "key-1", request(10), BillDTO.class, checkout());
+
+        assertTrue(retried.replayed());
+        assertEquals("BILL-1", retried.response().getBillId());
+        assertEquals(20.0, retried.response().getTotalAmount(), 0.0);
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void keyReusedWithAnotherRequestIsRejected() {
+        IdempotencyService service = node();
+        service.execute("bills", "key-1", request(10), BillDTO.class, checkout());
+
+        assertThrows(IdempotencyMismatchException.class,
+            () -> service.execute("bills", "key-1", request(11), BillDTO.class, checkout()));
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    void failedAttemptRunsAgainWhenRetried() {
+        IdempotencyService service = node();
+        assertThrows(IllegalStateException.class, () -> service.execute("bills", "key-1", request(10), BillDTO.class,
+            () -> {
+                throw new IllegalStateException("till offline");
+            }));
+
+        IdempotencyService.Outcome<BillDTO> retried = service.execute("bills", "key-1", request(10), BillDTO.class, checkout());
+
+        assertFalse(retried.replayed());
+        assertEquals(1, runs.get());
+    }
+
+    private IdempotencyService node() {
+        IdempotencyService service = new IdempotencyService(mongoTemplate, new ObjectMapper(), 100, 24, 120, 5);
+        nodes.add(service);
+        return service;
+    }
+
+    private Supplier<BillDTO> checkout() {
+        return () -> new BillDTO("BILL-" + runs.incrementAndGet(), null, 2, 20.0, List.of());
+    }
+
+    private static Map<String, Object> request(int quantity) {
+        return Map.of("productId", "product-1", "quantity", quantity);
+    }
+}
@@ -0,0 +1,97 @@
+package com.supermarket.stockmanagement.service;
+
+import com.supermarket.stockmanagement.dto.TransactionBatchItemDTO;
+import com.supermarket.stockmanagement.dto.TransactionBatchResultDTO;
+import com.supermarket.stockmanagement.model.Product;
+import com.supermarket.stockmanagement.model.Transaction;
+import com.supermarket.stockmanagement.model.Transaction.TransactionType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+@Testcontainers(disabledWithoutDocker = true)
+class TransactionBatchServiceTest {
+
+    @Container
+    private static final MongoDBContainer MONGO = new MongoDBContainer("mongo:6.0");
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> MONGO.getReplicaSetUrl("batch-test"));
+    }
+
+    @Autowired
+    private TransactionBatchService transactionBatchService;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeEach
+    void freshProducts() {
+        mongoTemplate.remove(new Query(), Transaction.class);
+        mongoTemplate.remove(new Query(), Product.class);
+        mongoTemplate.insert(product("shelf", 5));
+        mongoTemplate.insert(product("backroom", 0));
+    }
+
+    @Test
+    void overdrawnRowIsRejectedAloneAndTheRestApplies() {
+        TransactionBatchResultDTO result = transactionBatchService.createBatch(List.of(
+            row("shelf", TransactionType.SALE, 3),
+            row("shelf", TransactionType.SALE, 4), // only 2 left after the row before
+            row("shelf", TransactionType.SALE, 1),
+            row("backroom", TransactionType.PURCHASE, 6)));
+
+        assertEquals(3L, (long) result.getCreated());
+        assertEquals(1L, (long) result.getRejected());
+        List<TransactionBatchItemDTO> rows = result.getResults();
+        for (int i = 0; i < rows.size(); i++) {
+            TransactionBatchItemDTO item = rows.get(i);
+            if (i == 1) {
+                assertEquals("REJECTED", item.getStatus());
+                assertNull(item.getTransactionId());
+                assertTrue(item.getError().startsWith("Insufficient stock"), item.getError());
+            } else {
+                assertEquals("CREATED", item.getStatus(), "row " + i);
+                assertNotNull(item.getTransactionId());
+            }
+        }
+        assertEquals(1L, stock("shelf"));
+        assertEquals(6L, stock("backroom"));
+        assertEquals(3L, mongoTemplate.count(new Query(), Transaction.class));
+    }
+
+    private long stock(String productId) {
+        return mongoTemplate.findById(productId, Product.class).getCurrentStock();
+    }
+
+    private static Transaction row(String productId, TransactionType type, int quantity) {
+        return new Transaction(null, productId, type, quantity, 2.0, null, null, null, null, null);
+    }
+
+    private static Product product(String id, int stock) {
+        Product product = new Product();
+        product.setId(id);
+        product.setName(id);
+        product.setPurchasePrice(1.0);
+        product.setCurrentStock(stock);
+        product.setStockVersion(0L);
+        return product;
+    }
+}
@@ -0,0 +1,113 @@
+package com.supermarket.stockmanagement.service;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import com.supermarket.stockmanagement.dto.IndexStatusDTO;
+import com.supermarket.stockmanagement.dto.QueryPlanDTO;
+import com.supermarket.stockmanagement.model.Transaction;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.index.IndexInfo;
+import org.testcontainers.containers.MongoDBContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Testcontainers(disabledWithoutDocker = true)
+class TransactionIndexManagerTest {
+
+    @Container
+    private static final MongoDBContainer MONGO = new MongoDBContainer("mongo:6.0");
+
+    private static MongoClient client;
+    private MongoTemplate mongoTemplate;
+
+    @BeforeAll
+    static void connect() {
+        client = MongoClients.create(MONGO.getConnectionString());
+    }
+
+    @AfterAll
+    static void disconnect() {
+        client.close();
+    }
+
+    @BeforeEach
+    void freshDatabase() {
+        mongoTemplate = new MongoTemplate(client, "index-test");
+        mongoTemplate.dropCollection(Transaction.class);
+        List<Transaction> transactions = new ArrayList<>();
+        LocalDateTime start = LocalDateTime.now().minusDays(60);
+        for (int i = 0; i < 2_000; i++) {
+            Transaction.TransactionType type = Transaction.TransactionType.values()[i % 3];
+            transactions.add(new Transaction(null, "product-" + (i % 50), type, 1, 2.0, 2.0, null,
+                type == Transaction.TransactionType.SALE ? "BILL-" + (i / 5) : null, null, start.plusMinutes(i * 30L)));
+        }
+        mongoTemplate.insertAll(transactions);
+    }
+
+    @Test
+    void mainQueryPathsUseAnIndexOnceTheCatalogueIsBuilt() throws InterruptedException {
+        TransactionIndexManager manager = new TransactionIndexManager(mongoTemplate);
+        manager.ensureIndexes();
+        awaitReady(manager);
+
+        List<QueryPlanDTO> plans = manager.explainQueryPaths();
+
+        assertEquals(5, plans.size());
+        for (QueryPlanDTO plan : plans) {
+            assertFalse(plan.getCollectionScan(), plan.getQueryPath() + " ran " + plan.getStages());
+            assertTrue(plan.getStages().contains("IXSCAN"), plan.getQueryPath() + " ran " + plan.getStages());
+        }
+    }
+
+    @Test
+    void queryPathsReportACollectionScanWithoutTheCatalogue() {
+        TransactionIndexManager manager = new TransactionIndexManager(mongoTemplate);
+
+        List<QueryPlanDTO> plans = manager.explainQueryPaths();
+
+        assertTrue(plans.stream().allMatch(QueryPlanDTO::getCollectionScan));
+    }
+
+    @Test
+    void indexUnderAnEarlierNameCountsAsBuilt() throws InterruptedException {
+        mongoTemplate.indexOps(Transaction.class).ensureIndex(new Index().on("billId", Sort.Direction.ASC).named("billId_1"));
+        TransactionIndexManager manager = new TransactionIndexManager(mongoTemplate);
+
+        manager.ensureIndexes();
+        awaitReady(manager);
+
+        List<String> names = mongoTemplate.indexOps(Transaction.class).getIndexInfo().stream()
+            .map(IndexInfo::getName)
+            .toList();
+        assertTrue(names.contains("billId_1"));
+        assertFalse(names.contains("billId"));
+        for (IndexStatusDTO status : manager.getStatus()) {
+            assertNull(status.getError(), status.getName());
+        }
+    }
+
+    private static void awaitReady(TransactionIndexManager manager) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 60_000;
+        while (!manager.getStatus().stream().allMatch(status -> "READY".equals(status.getState()))) {
+            assertTrue(System.currentTimeMillis() < deadline, "indexes not built: " + manager.getStatus());
+            assertTrue(manager.getStatus().stream().noneMatch(status -> "FAILED".equals(status.getState())),
+                "index build failed: " + manager.getStatus());
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.supermarket.stockmanagement.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CountMinSketchTest {
+
+    @Test
+    void estimatesNeverUndercountAndStayWithinTheErrorBound() {
+        CountMinSketch sketch = new CountMinSketch(0.001, 0.01);
+        Map<String, Long> exact = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 50_000; i++) {
+            String key = "product-" + random.nextInt(5_000);
+            long count = 1 + random.nextInt(20);
+            sketch.add(key, count);
+            exact.merge(key, count, Long::sum);
+        }
+
+        int outsideBound = 0;
+        for (Map.Entry<String, Long> entry : exact.entrySet()) {
+            long estimate = sketch.estimate(entry.getKey());
+            assertTrue(estimate >= entry.getValue(), "undercounted " + entry.getKey());
+            if (estimate - entry.getValue() > sketch.getErrorBound()) {
+                outsideBound++;
+            }
+        }
+        // The bound holds per key with probability 1 - delta
+        assertTrue(outsideBound <= exact.size() * 0.01, outsideBound + " keys exceeded the bound");
+    }
+
+    @Test
+    void mergeEqualsAddingEverythingToOneSketch() {
+        CountMinSketch left = new CountMinSketch(0.01, 0.01);
+        CountMinSketch right = new CountMinSketch(0.01, 0.01);
+        CountMinSketch combined = new CountMinSketch(0.01, 0.01);
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            String key = "k" + random.nextInt(1_000);
+            (i % 2 == 0 ? left : right).add(key, 3);
+            combined.add(key, 3);
+        }
+
+        left.merge(right);
+
+        assertEquals(combined.getTotal(), left.getTotal());
+        assertArrayEquals(combined.toBytes(), left.toBytes());
+    }
+
+    @Test
+    void mergeRejectsSketchesOfDifferentDimensions() {
+        CountMinSketch sketch = new CountMinSketch(0.01, 0.01);
+        assertThrows(IllegalArgumentException.class, () -> sketch.merge(new CountMinSketch(0.001, 0.01)));
+    }
+
+    @Test
+    void bytesRoundTripKeepsEveryCounter() {
+        CountMinSketch sketch = new CountMinSketch(0.005, 0.001);
+        for (int i = 0; i < 2_000; i++) {
+            sketch.add("key-" + (i % 300), i);
+        }
+
+        CountMinSketch restored = CountMinSketch.fromBytes(sketch.toBytes());
+
+        assertEquals(sketch.getTotal(), restored.getTotal());
+        assertEquals(sketch.getErrorBound(), restored.getErrorBound(), 0.0);
+        for (int i = 0; i < 300; i++) {
+            assertEquals(sketch.estimate("key-" + i), restored.estimate("key-" + i));
+        }
+        assertArrayEquals(sketch.toBytes(), restored.toBytes());
+    }
+
+    @Test
+    void negativeCountsTakeBackEarlierAdds() {
+        CountMinSketch sketch = new CountMinSketch(0.01, 0.01);
+        sketch.add("apple", 10);
+        sketch.add("pear", 4);
+        sketch.add("apple", -10);
+
+        assertEquals(4, sketch.getTotal());
+        assertEquals(0, sketch.estimate("apple"));
+        assertEquals(4, sketch.estimate("pear"));
+    }
+}
@@ -0,0 +1,85 @@
+package com.supermarket.stockmanagement.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeavyHittersTest {
+
+    private static HeavyHitters newHeavyHitters() {
+        return new HeavyHitters(new CountMinSketch(0.001, 0.001), 20);
+    }
+
+    @Test
+    void findsTheLargestKeysAmongManySmallOnes() {
+        HeavyHitters heavyHitters = newHeavyHitters();
+        Random random = new Random(1);
+        for (int i = 0; i < 20_000; i++) {
+            heavyHitters.add("tail-" + random.nextInt(2_000), 1 + random.nextInt(5));
+            if (i % 10 == 0) {
+                heavyHitters.add("heavy-" + random.nextInt(5), 50);
+            }
+        }
+
+        Set<String> top = keys(heavyHitters.top(5));
+
+        assertEquals(Set.of("heavy-0", "heavy-1", "heavy-2", "heavy-3", "heavy-4"), top);
+    }
+
+    @Test
+    void topIsOrderedLargestFirstWithinTheErrorBound() {
+        HeavyHitters heavyHitters = newHeavyHitters();
+        for (int i = 1; i <= 10; i++) {
+            heavyHitters.add("key-" + i, i * 1_000L);
+        }
+
+        List<Map.Entry<String, Long>> top = heavyHitters.top(3);
+
+        assertEquals(List.of("key-10", "key-9", "key-8"), top.stream().map(Map.Entry::getKey).toList());
+        double bound = heavyHitters.getSketch().getErrorBound();
+        assertTrue(top.get(0).getValue() >= 10_000 && top.get(0).getValue() <= 10_000 + bound);
+    }
+
+    @Test
+    void mergeKeepsTheLeadersOfBothSides() {
+        HeavyHitters left = newHeavyHitters();
+        HeavyHitters right = newHeavyHitters();
+        for (int i = 0; i < 100; i++) {
+            left.add("left-small-" + i, 1);
+            right.add("right-small-" + i, 1);
+        }
+        left.add("left-leader", 5_000);
+        right.add("right-leader", 8_000);
+
+        left.merge(right);
+
+        assertEquals(List.of("right-leader", "left-leader"),
+            left.top(2).stream().map(Map.Entry::getKey).toList());
+        assertTrue(left.estimate("right-leader") >= 8_000);
+    }
+
+    @Test
+    void restoreFromBytesAndCandidatesReproducesTheLeaders() {
+        HeavyHitters heavyHitters = newHeavyHitters();
+        Random random = new Random(3);
+        for (int i = 0; i < 5_000; i++) {
+            heavyHitters.add("key-" + random.nextInt(100), random.nextInt(100));
+        }
+
+        HeavyHitters restored = HeavyHitters.restore(
+            CountMinSketch.fromBytes(heavyHitters.getSketch().toBytes()), 20, heavyHitters.getCandidates());
+
+        assertEquals(heavyHitters.top(10), restored.top(10));
+    }
+
+    private static Set<String> keys(List<Map.Entry<String, Long>> entries) {
+        return entries.stream().map(Map.Entry::getKey).collect(Collectors.toSet());
+    }
+}
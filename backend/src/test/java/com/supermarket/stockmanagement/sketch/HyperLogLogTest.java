@@ -0,0 +1,81 @@
+package com.supermarket.stockmanagement.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HyperLogLogTest {
+
+    @Test
+    void estimateIsWithinThreeStandardErrors() {
+        HyperLogLog hll = new HyperLogLog(14);
+        int distinct = 200_000;
+        for (int i = 0; i < distinct; i++) {
+            hll.add("bill-" + i);
+        }
+
+        double relativeError = Math.abs(hll.estimate() - distinct) / (double) distinct;
+
+        assertTrue(relativeError <= 3 * hll.getRelativeError(), "relative error " + relativeError);
+    }
+
+    @Test
+    void repeatedValuesAreCountedOnce() {
+        HyperLogLog hll = new HyperLogLog(14);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 1_000; i++) {
+                hll.add("product-" + i);
+            }
+        }
+
+        assertEquals(1_000, hll.estimate(), 1_000 * 3 * hll.getRelativeError());
+    }
+
+    @Test
+    void mergeEqualsTheSketchOfTheUnion() {
+        HyperLogLog left = new HyperLogLog(12);
+        HyperLogLog right = new HyperLogLog(12);
+        HyperLogLog union = new HyperLogLog(12);
+        for (int i = 0; i < 30_000; i++) {
+            left.add("v" + i);
+            union.add("v" + i);
+        }
+        for (int i = 20_000; i < 50_000; i++) {
+            right.add("v" + i);
+            union.add("v" + i);
+        }
+
+        left.merge(right);
+
+        assertArrayEquals(union.toBytes(), left.toBytes());
+        assertEquals(50_000, left.estimate(), 50_000 * 3 * left.getRelativeError());
+    }
+
+    @Test
+    void mergeRejectsDifferentPrecision() {
+        HyperLogLog hll = new HyperLogLog(12);
+        assertThrows(IllegalArgumentException.class, () -> hll.merge(new HyperLogLog(14)));
+    }
+
+    @Test
+    void precisionOutsideSupportedRangeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(3));
+        assertThrows(IllegalArgumentException.class, () -> new HyperLogLog(19));
+    }
+
+    @Test
+    void bytesRoundTripKeepsEveryRegister() {
+        HyperLogLog hll = new HyperLogLog(10);
+        for (int i = 0; i < 5_000; i++) {
+            hll.add("x" + i);
+        }
+
+        HyperLogLog restored = HyperLogLog.fromBytes(hll.toBytes());
+
+        assertEquals(hll.estimate(), restored.estimate());
+        assertArrayEquals(hll.toBytes(), restored.toBytes());
+    }
+}
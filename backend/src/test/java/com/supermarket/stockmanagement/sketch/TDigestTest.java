@@ -0,0 +1,99 @@
+package com.supermarket.stockmanagement.sketch;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TDigestTest {
+    private static final double[] QUANTILES = {0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99};
+
+    @Test
+    void quantilesAreWithinOnePercentOfRank() {
+        TDigest digest = new TDigest(100);
+        double[] values = randomValues(100_000, 11);
+        for (double value : values) {
+            digest.add(value);
+        }
+
+        assertQuantilesMatch(digest, sorted(values));
+        assertEquals(values.length, digest.size());
+    }
+
+    @Test
+    void mergedDigestMatchesTheCombinedData() {
+        TDigest left = new TDigest(100);
+        TDigest right = new TDigest(100);
+        double[] values = randomValues(60_000, 12);
+        for (int i = 0; i < values.length; i++) {
+            // Skewed halves, so the merge has to interleave the two sides
+            (values[i] < 40 ? left : right).add(values[i]);
+        }
+
+        left.merge(right);
+
+        assertEquals(values.length, left.size());
+        assertQuantilesMatch(left, sorted(values));
+    }
+
+    @Test
+    void bytesRoundTripKeepsTheSameQuantiles() {
+        TDigest digest = new TDigest(100);
+        for (double value : randomValues(20_000, 13)) {
+            digest.add(value);
+        }
+
+        TDigest restored = TDigest.fromBytes(digest.toBytes());
+
+        assertEquals(digest.size(), restored.size());
+        for (double q : QUANTILES) {
+            assertEquals(digest.quantile(q), restored.quantile(q), 0.0);
+        }
+    }
+
+    @Test
+    void emptyDigestHasNoQuantiles() {
+        TDigest digest = new TDigest(100);
+
+        assertEquals(0, digest.size());
+        assertTrue(Double.isNaN(digest.quantile(0.5)));
+    }
+
+    @Test
+    void singleValueIsEveryQuantile() {
+        TDigest digest = new TDigest(100);
+        digest.add(42.5);
+
+        assertEquals(42.5, digest.quantile(0.01), 0.0);
+        assertEquals(42.5, digest.quantile(0.99), 0.0);
+    }
+
+    /** Basket-like values: mostly small, with a long tail. */
+    private static double[] randomValues(int count, long seed) {
+        Random random = new Random(seed);
+        double[] values = new double[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = -Math.log(1 - random.nextDouble()) * 40;
+        }
+        return values;
+    }
+
+    private static double[] sorted(double[] values) {
+        double[] copy = values.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+
+    private static void assertQuantilesMatch(TDigest digest, double[] sorted) {
+        for (double q : QUANTILES) {
+            double estimate = digest.quantile(q);
+            // Rank of the estimate in the exact data, compared with the requested rank
+            int rank = Arrays.binarySearch(sorted, estimate);
+            double actualQ = (rank >= 0 ? rank : -rank - 1) / (double) sorted.length;
+            assertEquals(q, actualQ, 0.01, "quantile " + q);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package com.supermarket.stockmanagement.timer;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HierarchicalTimingWheelTest {
+    private static final long TICK = 10;
+
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+    private final HierarchicalTimingWheel wheel = new HierarchicalTimingWheel(TICK, 3, clock::get);
+
+    @Test
+    void timeoutFiresOnTheTickOfItsDeadline() {
+        List<Long> firedAt = new ArrayList<>();
+        wheel.schedule(() -> firedAt.add(clock.get()), 25);
+
+        advanceBy(20);
+        assertTrue(firedAt.isEmpty());
+
+        advanceBy(10);
+        assertEquals(List.of(clock.get()), firedAt);
+    }
+
+    @Test
+    void timeoutsOnHigherLevelsCascadeDownAndFireOnTime() {
+        Map<Long, Long> firedAtTick = new HashMap<>();
+        // One per level: inside the first wheel, the second, and the third
+        long[] delays = {40 * TICK, 64 * TICK + 5 * TICK, 64 * 64 * TICK + 123 * TICK};
+        for (long delay : delays) {
+            wheel.schedule(() -> firedAtTick.put(delay, ticksElapsed()), delay);
+        }
+
+        advanceTickByTick(64 * 64 + 200);
+
+        for (long delay : delays) {
+            assertEquals(Long.valueOf(delay / TICK), firedAtTick.get(delay), "delay " + delay);
+        }
+    }
+
+    @Test
+    void randomDeadlinesAcrossAllLevelsFireExactlyOnceAtTheirTick() {
+        Random random = new Random(5);
+        Map<Integer, Long> expected = new HashMap<>();
+        Map<Integer, List<Long>> fired = new HashMap<>();
+        for (int i = 0; i < 2_000; i++) {
+            int id = i;
+            long ticks = 1 + random.nextInt(20_000);
+            expected.put(id, ticks);
+            wheel.schedule(() -> fired.computeIfAbsent(id, k -> new ArrayList<>()).add(ticksElapsed()), ticks * TICK);
+        }
+
+        advanceTickByTick(20_001);
+
+        assertEquals(expected.size(), fired.size());
+        expected.forEach((id, ticks) -> assertEquals(List.of(ticks), fired.get(id), "timeout " + id));
+    }
+
+    @Test
+    void jumpingTheClockRunsEveryTickItSkipped() {
+        List<Long> fired = new ArrayList<>();
+        wheel.schedule(() -> fired.add(1L), 5 * TICK);
+        wheel.schedule(() -> fired.add(2L), 64 * 64 * TICK + 7 * TICK);
+
+        clock.addAndGet(64 * 64 * TICK + 10 * TICK);
+        wheel.runDue();
+
+        assertEquals(List.of(1L, 2L), fired);
+    }
+
+    @Test
+    void cancelledTimeoutsNeverFireEvenAfterCascading() {
+        List<String> fired = new ArrayList<>();
+        HierarchicalTimingWheel.Timeout near = wheel.schedule(() -> fired.add("near"), 3 * TICK);
+        HierarchicalTimingWheel.Timeout far = wheel.schedule(() -> fired.add("far"), 64 * 64 * TICK + TICK);
+        wheel.schedule(() -> fired.add("kept"), 64 * 64 * TICK + TICK);
+
+        near.cancel();
+        advanceTickByTick(64 * 10);
+        far.cancel();
+        advanceTickByTick(64 * 64 + 10);
+
+        assertEquals(List.of("kept"), fired);
+    }
+
+    @Test
+    void timeoutScheduledInThePastFiresOnTheNextTick() {
+        advanceTickByTick(5);
+        List<Long> firedAt = new ArrayList<>();
+        wheel.schedule(() -> firedAt.add(ticksElapsed()), 0);
+
+        advanceTickByTick(1);
+
+        assertEquals(List.of(6L), firedAt);
+    }
+
+    @Test
+    void failingTaskDoesNotStopLaterTimeouts() {
+        List<String> fired = new ArrayList<>();
+        wheel.schedule(() -> {
+            throw new IllegalStateException("boom");
+        }, TICK);
+        wheel.schedule(() -> fired.add("after"), TICK);
+
+        advanceBy(TICK);
+
+        assertEquals(List.of("after"), fired);
+    }
+
+    @Test
+    void delayBeyondTheWheelsRangeIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> wheel.schedule(() -> { }, 64L * 64 * 64 * TICK));
+    }
+
+    private long ticksElapsed() {
+        return (clock.get() - 1_000_000) / TICK;
+    }
+
+    private void advanceBy(long millis) {
+        clock.addAndGet(millis);
+        wheel.runDue();
+    }
+
+    private void advanceTickByTick(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            advanceBy(TICK);
+        }
+    }
+}
@@ -22,7 +22,7 @@ import { Bill } from '../../models/bill.model';
         </div>
 
         <div class="bills-list">
-          <div *ngFor="let bill of paginatedBills" class="bill-row" (click)="viewBillDetails(bill.billId)">
+          <div *ngFor="let bill of bills" class="bill-row" (click)="viewBillDetails(bill.billId)">
             <div class="bill-cell bill-number">
               <i class="fas fa-receipt"></i>
               {{ bill.billId }}
@@ -56,8 +56,7 @@ import { Bill } from '../../models/bill.model';
         <div class="pagination-container" *ngIf="bills.length > 0">
           <div class="pagination-info">
             <span>Showing {{ (currentPage - 1) * itemsPerPage + 1 }} - 
-                  {{ Math.min(currentPage * itemsPerPage, bills.length) }} 
-                  of {{ bills.length }} bills</span>
+                  {{ (currentPage - 1) * itemsPerPage + bills.length }} bills</span>
             
             <div class="items-per-page">
               <label>Items per page:</label>
@@ -75,14 +74,11 @@ import { Bill } from '../../models/bill.model';
               <i class="fas fa-chevron-left"></i>
             </button>
             
-            <button *ngFor="let page of getPageNumbers()" 
-                    class="page-btn" 
-                    [class.active]="page === currentPage"
-                    (click)="goToPage(page)">
-              {{ page }}
+            <button class="page-btn active">
+              {{ currentPage }}
             </button>
             
-            <button class="page-btn" (click)="nextPage()" [disabled]="currentPage === totalPages">
+            <button class="page-btn" (click)="nextPage()" [disabled]="!nextCursor">
               <i class="fas fa-chevron-right"></i>
             </button>
           </div>
@@ -370,15 +366,13 @@ import { Bill } from '../../models/bill.model';
 })
 export class BillsListComponent implements OnInit {
   bills: Bill[] = [];
-  paginatedBills: Bill[] = [];
   
-  // Pagination properties
+  // Pagination properties: the server pages by cursor, so earlier pages are
+  // revisited through the cursors that opened them
   currentPage: number = 1;
   itemsPerPage: number = 10;
-  totalPages: number = 0;
-
-  // Make Math available in template
-  Math = Math;
+  nextCursor?: string;
+  private pageCursors: (string | undefined)[] = [undefined];
 
   constructor(
     private billService: BillService,
@@ -390,10 +384,10 @@ export class BillsListComponent implements OnInit {
   }
 
   loadBills() {
-    this.billService.getAllBills().subscribe(
-      bills => {
-        this.bills = bills;
-        this.updatePagination();
+    this.billService.getBillPage(this.itemsPerPage, this.pageCursors[this.currentPage - 1]).subscribe(
+      page => {
+        this.bills = page.bills;
+        this.nextCursor = page.nextCursor;
       },
       error => {
         console.error('Error loading bills:', error);
@@ -401,51 +395,25 @@ export class BillsListComponent implements OnInit {
     );
   }
 
-  updatePagination() {
-    this.totalPages = Math.ceil(this.bills.length / this.itemsPerPage);
-    this.goToPage(1);
-  }
-
-  goToPage(page: number) {
-    if (page < 1 || page > this.totalPages) return;
-    
-    this.currentPage = page;
-    const startIndex = (page - 1) * this.itemsPerPage;
-    const endIndex = startIndex + this.itemsPerPage;
-    this.paginatedBills = this.bills.slice(startIndex, endIndex);
-  }
-
   previousPage() {
     if (this.currentPage > 1) {
-      this.goToPage(this.currentPage - 1);
+      this.currentPage--;
+      this.loadBills();
     }
   }
 
   nextPage() {
-    if (this.currentPage < this.totalPages) {
-      this.goToPage(this.currentPage + 1);
+    if (this.nextCursor) {
+      this.pageCursors[this.currentPage] = this.nextCursor;
+      this.currentPage++;
+      this.loadBills();
     }
   }
 
-  getPageNumbers(): number[] {
-    const pages: number[] = [];
-    const maxPagesToShow = 5;
-    let startPage = Math.max(1, this.currentPage - Math.floor(maxPagesToShow / 2));
-    let endPage = Math.min(this.totalPages, startPage + maxPagesToShow - 1);
-    
-    if (endPage - startPage + 1 < maxPagesToShow) {
-      startPage = Math.max(1, endPage - maxPagesToShow + 1);
-    }
-    
-    for (let i = startPage; i <= endPage; i++) {
-      pages.push(i);
-    }
-    
-    return pages;
-  }
-
   onItemsPerPageChange() {
-    this.updatePagination();
+    this.currentPage = 1;
+    this.pageCursors = [undefined];
+    this.loadBills();
   }
 
   viewBillDetails(billId: string) {
@@ -1,10 +1,11 @@
-import { Component, OnInit } from '@angular/core';
+import { Component, OnDestroy, OnInit } from '@angular/core';
 import { Router } from '@angular/router';
-import { ProductService } from '../../services/product.service';
+import { LowStockEvent, ProductService } from '../../services/product.service';
 import { CategoryService } from '../../services/category.service';
 import { SupplierService } from '../../services/supplier.service';
 import { TransactionService } from '../../services/transaction.service';
 import { Product } from '../../models/product.model';
+import { Subscription } from 'rxjs';
 
 @Component({
   selector: 'app-dashboard',
@@ -90,11 +91,13 @@ import { Product } from '../../models/product.model';
     }
   `]
 })
-export class DashboardComponent implements OnInit {
+export class DashboardComponent implements OnInit, OnDestroy {
   totalProducts = 0;
   totalCategories = 0;
   totalSuppliers = 0;
   lowStockProducts: Product[] = [];
+  private lowStockEvents?: Subscription;
+  private lowStockSnapshotSeen = false;
 
   constructor(
     private productService: ProductService,
@@ -106,6 +109,23 @@ export class DashboardComponent implements OnInit {
 
   ngOnInit(): void {
     this.loadDashboardData();
+    this.lowStockEvents = this.productService.lowStockEvents().subscribe(event => {
+      if (event.type === 'SNAPSHOT') {
+        // Arrives on every reconnect too, covering crossings missed while disconnected
+        this.replaceLowStock(event.entries);
+        return;
+      }
+      this.lowStockProducts = this.lowStockProducts.filter(p => p.id !== event.productId);
+      if (event.type === 'ENTERED') {
+        this.productService.getProductById(event.productId).subscribe(product => {
+          this.lowStockProducts = [...this.lowStockProducts.filter(p => p.id !== product.id), product];
+        });
+      }
+    });
+  }
+
+  ngOnDestroy(): void {
+    this.lowStockEvents?.unsubscribe();
   }
 
   loadDashboardData(): void {
@@ -122,7 +142,26 @@ export class DashboardComponent implements OnInit {
     });
 
     this.productService.getLowStockProducts().subscribe(products => {
-      this.lowStockProducts = products;
+      // The stream's snapshot is newer when it arrived first
+      if (!this.lowStockSnapshotSeen) {
+        this.lowStockProducts = products;
+      }
+    });
+  }
+
+  private replaceLowStock(entries: LowStockEvent[]): void {
+    this.lowStockSnapshotSeen = true;
+    const known = new Map(this.lowStockProducts.map(p => [p.id, p]));
+    this.lowStockProducts = [];
+    entries.forEach(entry => {
+      const product = known.get(entry.productId);
+      if (product) {
+        this.lowStockProducts.push({ ...product, currentStock: entry.currentStock, minStockLevel: entry.minStockLevel });
+        return;
+      }
+      this.productService.getProductById(entry.productId).subscribe(loaded => {
+        this.lowStockProducts = [...this.lowStockProducts.filter(p => p.id !== loaded.id), loaded];
+      });
     });
   }
 
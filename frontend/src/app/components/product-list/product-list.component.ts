@@ -1,14 +1,16 @@
-import { Component, OnInit } from '@angular/core';
+import { Component, OnDestroy, OnInit } from '@angular/core';
 import { Router } from '@angular/router';
 import { ProductService } from '../../services/product.service';
 import { CategoryService } from '../../services/category.service';
 import { SupplierService } from '../../services/supplier.service';
 import { ProductSupplierService } from '../../services/product-supplier.service';
 import { NotificationService } from '../../services/notification.service';
+import { StockEventService } from '../../services/stock-event.service';
 import { Product } from '../../models/product.model';
 import { Category } from '../../models/category.model';
 import { Supplier } from '../../models/supplier.model';
 import { ProductSupplier } from '../../models/product-supplier.model';
+import { Subscription } from 'rxjs';
 
 @Component({
   selector: 'app-product-list',
@@ -334,7 +336,7 @@ import { ProductSupplier } from '../../models/product-supplier.model';
     }
   `]
 })
-export class ProductListComponent implements OnInit {
+export class ProductListComponent implements OnInit, OnDestroy {
   products: Product[] = [];
   filteredProducts: Product[] = [];
   paginatedProducts: Product[] = [];
@@ -350,6 +352,7 @@ export class ProductListComponent implements OnInit {
   availableSuppliers: Supplier[] = [];
   newProductSupplier: ProductSupplier = this.initializeProductSupplier();
   productSuppliers: ProductSupplier[] = [];
+  private stockEvents?: Subscription;
   
   // Pagination
   currentPage = 1;
@@ -362,6 +365,7 @@ export class ProductListComponent implements OnInit {
     private supplierService: SupplierService,
     private productSupplierService: ProductSupplierService,
     private notificationService: NotificationService,
+    private stockEventService: StockEventService,
     private router: Router
   ) { }
 
@@ -370,6 +374,15 @@ export class ProductListComponent implements OnInit {
     this.loadCategories();
     this.loadSuppliers();
     this.loadProductSuppliers();
+    this.stockEvents = this.stockEventService.messages$.subscribe(message => {
+      if (StockEventService.applyTo(this.products, message)) {
+        this.loadProducts();
+      }
+    });
+  }
+
+  ngOnDestroy(): void {
+    this.stockEvents?.unsubscribe();
   }
 
   initializeProduct(): Product {
@@ -401,8 +414,8 @@ export class ProductListComponent implements OnInit {
 
   loadProducts(): void {
     this.productService.getAllProducts().subscribe(products => {
-      this.products = products;
-      this.filteredProducts = products;
+      this.products = StockEventService.keepNewerStock(this.products, products);
+      this.filteredProducts = this.products;
       this.updatePagination();
     });
   }
@@ -1,11 +1,13 @@
-import { Component, OnInit, ViewChild, ElementRef, AfterViewInit, ChangeDetectorRef, AfterViewChecked } from '@angular/core';
+import { Component, OnInit, OnDestroy, ViewChild, ElementRef, AfterViewInit, ChangeDetectorRef, AfterViewChecked } from '@angular/core';
 import { Router } from '@angular/router';
 import { ProductService } from '../../services/product.service';
-import { TransactionService } from '../../services/transaction.service';
 import { NotificationService } from '../../services/notification.service';
 import { BillService } from '../../services/bill.service';
+import { ReservationService } from '../../services/reservation.service';
+import { StockEventService } from '../../services/stock-event.service';
 import { Product } from '../../models/product.model';
-import { Transaction, TransactionType } from '../../models/transaction.model';
+import { CheckoutRequest } from '../../models/bill.model';
+import { Subscription } from 'rxjs';
 
 interface CartItem {
   product: Product;
@@ -1035,7 +1037,7 @@ interface ProductSuggestion {
     }
   `]
 })
-export class SalesComponent implements OnInit, AfterViewInit, AfterViewChecked {
+export class SalesComponent implements OnInit, OnDestroy, AfterViewInit, AfterViewChecked {
   @ViewChild('searchInput') searchInput!: ElementRef;
   
   products: Product[] = [];
@@ -1054,18 +1056,37 @@ export class SalesComponent implements OnInit, AfterViewInit, AfterViewChecked {
   stockError: any = null;
   showStockErrorModal: boolean = false;
 
+  // Reused when the same cart is submitted again after a lost response
+  private checkoutKey?: string;
+
+  // Stock scanned into this cart is held for it on the server until checkout
+  private cartId: string = crypto.randomUUID();
+
+  // Stock figures are kept current from the server's stock-change stream
+  private stockEvents?: Subscription;
+
   constructor(
     private productService: ProductService,
-    private transactionService: TransactionService,
     private router: Router,
     private cdr: ChangeDetectorRef,
     private notificationService: NotificationService,
-    private billService: BillService
+    private billService: BillService,
+    private reservationService: ReservationService,
+    private stockEventService: StockEventService
   ) {}
 
   ngOnInit(): void {
     this.loadProducts();
     this.generateBillNumber();
+    this.stockEvents = this.stockEventService.messages$.subscribe(message => {
+      if (StockEventService.applyTo(this.products, message)) {
+        this.loadProducts();
+      }
+    });
+  }
+
+  ngOnDestroy(): void {
+    this.stockEvents?.unsubscribe();
   }
 
   ngAfterViewInit(): void {
@@ -1086,7 +1107,7 @@ export class SalesComponent implements OnInit, AfterViewInit, AfterViewChecked {
 
   loadProducts(): void {
     this.productService.getAllProducts().subscribe(products => {
-      this.products = products;
+      this.products = StockEventService.keepNewerStock(this.products, products);
     });
   }
 
@@ -1156,7 +1177,7 @@ export class SalesComponent implements OnInit, AfterViewInit, AfterViewChecked {
 
     // Search by barcode
     const codeMatches = this.products
-      .filter(p => p.barcode.toLowerCase().includes(query))
+      .filter(p => (p.barcode ?? '').toLowerCase().includes(query))
       .map(p => ({ product: p, matchType: 'code' as const }));
 
     // Combine and remove duplicates
@@ -1169,8 +1190,8 @@ export class SalesComponent implements OnInit, AfterViewInit, AfterViewChecked {
 
     // Sort by relevance (exact matches first)
     this.filteredSuggestions = allMatches.sort((a, b) => {
-      const aExact = a.product.name.toLowerCase() === query || a.product.barcode.toLowerCase() === query;
-      const bExact = b.product.name.toLowerCase() === query || b.product.barcode.toLowerCase() === query;
+      const aExact = a.product.name.toLowerCase() === query || (a.product.barcode ?? '').toLowerCase() === query;
+      const bExact = b.product.name.toLowerCase() === query || (b.product.barcode ?? '').toLowerCase() === query;
       
       if (aExact && !bExact) return -1;
       if (!aExact && bExact) return 1;
@@ -1235,6 +1256,7 @@ export class SalesComponent implements OnInit, AfterViewInit, AfterViewChecked {
         totalPrice: product.sellingPrice
       });
     }
+    this.syncHold(product.id || '', currentInCart + 1);
 
     // Clear search and reset
     this.searchQuery = '';
@@ -1267,6 +1289,7 @@ export class SalesComponent implements OnInit, AfterViewInit, AfterViewChecked {
     if (item.quantity < item.product.currentStock) {
       item.quantity++;
       item.totalPrice = item.quantity * item.product.sellingPrice;
+      this.syncHold(item.product.id || '', item.quantity);
     }
   }
 
@@ -1275,6 +1298,7 @@ export class SalesComponent implements OnInit, AfterViewInit, AfterViewChecked {
     if (item.quantity > 1) {
       item.quantity--;
       item.totalPrice = item.quantity * item.product.sellingPrice;
+      this.syncHold(item.product.id || '', item.quantity);
     }
   }
 
@@ -1290,10 +1314,25 @@ export class SalesComponent implements OnInit, AfterViewInit, AfterViewChecked {
     }
     
     item.totalPrice = item.quantity * item.product.sellingPrice;
+    this.syncHold(item.product.id || '', item.quantity);
   }
 
   removeFromCart(index: number): void {
-    this.cart.splice(index, 1);
+    const [removed] = this.cart.splice(index, 1);
+    this.syncHold(removed.product.id || '', 0);
+  }
+
+  private syncHold(productId: string, quantity: number): void {
+    // Every cart edit passes through here; an edited cart is a new checkout with a new key
+    this.checkoutKey = undefined;
+    this.reservationService.hold(this.cartId, productId, quantity).subscribe({
+      error: error => {
+        if (error.error && error.error.error === 'INSUFFICIENT_STOCK') {
+          // Other tills hold the rest of this product's stock
+          this.showStockError(error.error);
+        }
+      }
+    });
   }
 
   clearCart(showConfirmation: boolean = true): void {
@@ -1301,6 +1340,11 @@ export class SalesComponent implements OnInit, AfterViewInit, AfterViewChecked {
     
     if (!showConfirmation || confirm('Are you sure you want to clear all items from the cart?')) {
       this.cart = [];
+      this.checkoutKey = undefined;
+      if (showConfirmation) {
+        this.reservationService.releaseCart(this.cartId).subscribe();
+      }
+      this.cartId = crypto.randomUUID();
       this.searchQuery = '';
       this.showSuggestions = false;
       
@@ -1339,45 +1383,43 @@ export class SalesComponent implements OnInit, AfterViewInit, AfterViewChecked {
   generateBill(): void {
     if (this.cart.length === 0) return;
 
-    // Generate a new bill ID
-    this.billService.generateBillId().subscribe(billId => {
-      // Create transactions for each item with the same billId
-      const transactionPromises = this.cart.map(item => {
-        const transaction: Transaction = {
-          productId: item.product.id || '',
-          type: TransactionType.SALE,
-          quantity: item.quantity,
-          unitPrice: item.product.sellingPrice,
-          totalAmount: item.totalPrice,
-          reference: this.billNumber,
-          billId: billId,  // Add billId to group transactions
-          notes: `Sale - ${item.product.name}`
-        };
-        return this.transactionService.createTransaction(transaction).toPromise();
-      });
-
-      // Wait for all transactions to complete
-      Promise.all(transactionPromises).then(() => {
+    // The server validates stock for the whole basket and assigns the bill ID
+    const request: CheckoutRequest = {
+      reference: this.billNumber,
+      cartId: this.cartId,
+      items: this.cart.map(item => ({
+        productId: item.product.id || '',
+        quantity: item.quantity,
+        unitPrice: item.product.sellingPrice,
+        notes: `Sale - ${item.product.name}`
+      }))
+    };
+
+    this.checkoutKey = this.checkoutKey || crypto.randomUUID();
+    this.billService.checkout(request, this.checkoutKey).subscribe({
+      next: bill => {
+        this.checkoutKey = undefined;
         // Clear cart without confirmation and navigate to bill details
         this.clearCart(false);
         this.generateBillNumber(); // Generate new bill number for next sale
         this.notificationService.showSuccess('Bill generated successfully!');
         
         // Navigate to bill details page
-        this.router.navigate(['/bills', billId]);
-      }).catch(error => {
-      console.error('Error creating transactions:', error);
-      
-      // Check if it's an insufficient stock error
-      if (error.error && error.error.error === 'INSUFFICIENT_STOCK') {
-        const stockError = error.error;
-        this.showStockError(stockError);
-      } else if (error.message) {
-        this.notificationService.showError(`Error: ${error.message}`);
-      } else {
-        this.notificationService.showError('Error processing sale. Please try again.');
+        this.router.navigate(['/bills', bill.billId]);
+      },
+      error: error => {
+        console.error('Error creating bill:', error);
+        
+        // Check if it's an insufficient stock error
+        if (error.error && error.error.error === 'INSUFFICIENT_STOCK') {
+          const stockError = error.error;
+          this.showStockError(stockError);
+        } else if (error.message) {
+          this.notificationService.showError(`Error: ${error.message}`);
+        } else {
+          this.notificationService.showError('Error processing sale. Please try again.');
+        }
       }
-      });
     });
   }
 
@@ -14,3 +14,22 @@ export interface BillItem {
     unitPrice: number;
     totalPrice: number;
 }
+
+export interface BillPage {
+    bills: Bill[];
+    nextCursor?: string;
+    hasMore: boolean;
+}
+
+export interface CheckoutItem {
+    productId: string;
+    quantity: number;
+    unitPrice?: number;
+    notes?: string;
+}
+
+export interface CheckoutRequest {
+    reference?: string;
+    cartId?: string;
+    items: CheckoutItem[];
+}
@@ -8,6 +8,7 @@ export interface Product {
   purchasePrice: number;
   sellingPrice: number;
   currentStock: number;
+  stockVersion?: number;
   minStockLevel: number;
   unit: string;
   createdAt?: Date;
@@ -1,7 +1,7 @@
 import { Injectable } from '@angular/core';
-import { HttpClient } from '@angular/common/http';
+import { HttpClient, HttpHeaders, HttpParams } from '@angular/common/http';
 import { Observable } from 'rxjs';
-import { Bill } from '../models/bill.model';
+import { Bill, BillPage, CheckoutRequest } from '../models/bill.model';
 
 @Injectable({
   providedIn: 'root'
@@ -15,10 +15,24 @@ export class BillService {
     return this.http.get<Bill[]>(this.apiUrl);
   }
 
+  getBillPage(limit: number, cursor?: string): Observable<BillPage> {
+    let params = new HttpParams().set('limit', limit);
+    if (cursor) {
+      params = params.set('cursor', cursor);
+    }
+    return this.http.get<BillPage>(`${this.apiUrl}/page`, { params });
+  }
+
   getBillDetails(billId: string): Observable<Bill> {
     return this.http.get<Bill>(`${this.apiUrl}/${billId}`);
   }
 
+  checkout(request: CheckoutRequest, idempotencyKey: string): Observable<Bill> {
+    // Resending with the same key returns the original bill instead of selling twice
+    const headers = new HttpHeaders().set('Idempotency-Key', idempotencyKey);
+    return this.http.post<Bill>(this.apiUrl, request, { headers });
+  }
+
   generateBillId(): Observable<string> {
     return this.http.get(`${this.apiUrl}/generate-id`, { responseType: 'text' });
   }
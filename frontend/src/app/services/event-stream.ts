@@ -0,0 +1,55 @@
+import { Observable, Subscription } from 'rxjs';
+
+const RETRY_MIN_MS = 1000;
+const RETRY_MAX_MS = 30000;
+
+// Opens an EventSource with a single-use stream ticket, since EventSource cannot send the
+// access token in a header. A reconnect by the browser would reuse the spent ticket, so on
+// any error the source is closed and reopened here with a fresh ticket, backing off while
+// that fails. Returns a function that stops the stream.
+export function openEventStream(
+  ticket: () => Observable<string>,
+  url: (ticket: string) => string,
+  attach: (source: EventSource) => void
+): () => void {
+  let source: EventSource | undefined;
+  let ticketRequest: Subscription | undefined;
+  let retry: ReturnType<typeof setTimeout> | undefined;
+  let retryDelay = RETRY_MIN_MS;
+  let stopped = false;
+
+  const reconnectLater = () => {
+    if (!stopped) {
+      retry = setTimeout(connect, retryDelay);
+      retryDelay = Math.min(retryDelay * 2, RETRY_MAX_MS);
+    }
+  };
+
+  const connect = () => {
+    // An expired access token fails here, where the HTTP interceptor signs the user out
+    ticketRequest = ticket().subscribe({
+      next: value => {
+        if (stopped) {
+          return;
+        }
+        const opened = new EventSource(url(value));
+        source = opened;
+        opened.addEventListener('open', () => retryDelay = RETRY_MIN_MS);
+        opened.addEventListener('error', () => {
+          opened.close();
+          reconnectLater();
+        });
+        attach(opened);
+      },
+      error: () => reconnectLater()
+    });
+  };
+
+  connect();
+  return () => {
+    stopped = true;
+    clearTimeout(retry);
+    ticketRequest?.unsubscribe();
+    source?.close();
+  };
+}
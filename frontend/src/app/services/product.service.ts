@@ -1,7 +1,23 @@
 import { Injectable } from '@angular/core';
 import { HttpClient } from '@angular/common/http';
-import { Observable } from 'rxjs';
+import { Observable, map } from 'rxjs';
 import { Product } from '../models/product.model';
+import { openEventStream } from './event-stream';
+
+export interface LowStockEvent {
+  type: 'ENTERED' | 'CLEARED' | 'LOW';
+  productId: string;
+  productName: string;
+  currentStock: number;
+  minStockLevel: number;
+  occurredAt: string;
+}
+
+// Sent first on every (re)connect: the whole low-stock set at that moment
+export interface LowStockSnapshot {
+  type: 'SNAPSHOT';
+  entries: LowStockEvent[];
+}
 
 @Injectable({
   providedIn: 'root'
@@ -31,6 +47,29 @@ export class ProductService {
     return this.http.get<Product[]>(`${this.apiUrl}/low-stock`);
   }
 
+  // Single-use ticket that opens one event stream in place of the access token
+  streamTicket(): Observable<string> {
+    return this.http.post<{ ticket: string }>(`${this.apiUrl}/stream-ticket`, {}).pipe(
+      map(response => response.ticket)
+    );
+  }
+
+  // Pushed low-stock crossings; every (re)connect starts with a fresh snapshot
+  lowStockEvents(): Observable<LowStockEvent | LowStockSnapshot> {
+    return new Observable<LowStockEvent | LowStockSnapshot>(observer => openEventStream(
+      () => this.streamTicket(),
+      ticket => `${this.apiUrl}/low-stock/stream?ticket=${encodeURIComponent(ticket)}`,
+      source => {
+        source.addEventListener('snapshot', event => {
+          observer.next({ type: 'SNAPSHOT', entries: JSON.parse((event as MessageEvent).data) });
+        });
+        source.addEventListener('low-stock', event => {
+          observer.next(JSON.parse((event as MessageEvent).data));
+        });
+      }
+    ));
+  }
+
   createProduct(product: Product): Observable<Product> {
     return this.http.post<Product>(this.apiUrl, product);
   }
@@ -0,0 +1,28 @@
+import { Injectable } from '@angular/core';
+import { HttpClient } from '@angular/common/http';
+import { Observable } from 'rxjs';
+
+export interface StockHold {
+  cartId: string;
+  productId: string;
+  quantity: number;
+  expiresAt?: string;
+  available: number;
+}
+
+@Injectable({
+  providedIn: 'root'
+})
+export class ReservationService {
+  private apiUrl = 'http://localhost:8080/api/reservations';
+
+  constructor(private http: HttpClient) { }
+
+  hold(cartId: string, productId: string, quantity: number): Observable<StockHold> {
+    return this.http.put<StockHold>(this.apiUrl, { cartId, productId, quantity });
+  }
+
+  releaseCart(cartId: string): Observable<void> {
+    return this.http.delete<void>(`${this.apiUrl}/cart/${cartId}`);
+  }
+}
@@ -0,0 +1,92 @@
+import { Injectable } from '@angular/core';
+import { Observable, share } from 'rxjs';
+import { Product } from '../models/product.model';
+import { ProductService } from './product.service';
+import { openEventStream } from './event-stream';
+
+export interface StockChangeEvent {
+  sequence: number;
+  productId: string;
+  newStock: number | null;
+  stockVersion: number | null;
+  delta: number | null;
+  cause: string;
+  occurredAt: string;
+}
+
+export type StockStreamMessage =
+  | { kind: 'change'; event: StockChangeEvent }
+  | { kind: 'reset' };
+
+@Injectable({
+  providedIn: 'root'
+})
+export class StockEventService {
+  private apiUrl = 'http://localhost:8080/api/products/stock-events';
+
+  // One EventSource per tab, shared by every subscriber. Each reconnect passes the last
+  // event id, so the server replays whatever was missed in between or asks for a reload.
+  readonly messages$: Observable<StockStreamMessage>;
+
+  constructor(private productService: ProductService) {
+    this.messages$ = new Observable<StockStreamMessage>(observer => {
+      let lastEventId = '';
+      return openEventStream(
+        () => this.productService.streamTicket(),
+        ticket => {
+          const resume = lastEventId ? `&lastEventId=${encodeURIComponent(lastEventId)}` : '';
+          return `${this.apiUrl}?ticket=${encodeURIComponent(ticket)}${resume}`;
+        },
+        source => {
+          source.addEventListener('open', () => {
+            if (!lastEventId) {
+              // Nothing to resume from, so changes made before the stream opened were not seen
+              observer.next({ kind: 'reset' });
+            }
+          });
+          source.addEventListener('stock', event => {
+            lastEventId = (event as MessageEvent).lastEventId;
+            observer.next({ kind: 'change', event: JSON.parse((event as MessageEvent).data) });
+          });
+          source.addEventListener('reset', () => observer.next({ kind: 'reset' }));
+        }
+      );
+    }).pipe(share());
+  }
+
+  // Patches stock figures in place; returns true when the list has to be reloaded instead.
+  // Events can arrive out of order, so one older than the version already shown is ignored.
+  static applyTo(products: Product[], message: StockStreamMessage): boolean {
+    if (message.kind === 'reset') {
+      return true;
+    }
+    const event = message.event;
+    const product = products.find(p => p.id === event.productId);
+    if (!product) {
+      return event.cause === 'PRODUCT_CREATED';
+    }
+    if (event.newStock === null) {
+      return true;
+    }
+    if (event.stockVersion !== null && product.stockVersion != null && event.stockVersion <= product.stockVersion) {
+      return false;
+    }
+    product.currentStock = event.newStock;
+    product.stockVersion = event.stockVersion ?? undefined;
+    return false;
+  }
+
+  // A reload may have been read before events already applied to the list it replaces;
+  // stock shown at a newer version is carried over into the reloaded products
+  static keepNewerStock(shown: Product[], loaded: Product[]): Product[] {
+    const byId = new Map(shown.map(p => [p.id, p]));
+    for (const product of loaded) {
+      const current = byId.get(product.id);
+      if (current?.stockVersion != null && (product.stockVersion == null || current.stockVersion > product.stockVersion)) {
+        product.currentStock = current.currentStock;
+        product.stockVersion = current.stockVersion;
+      }
+    }
+    return loaded;
+  }
+}